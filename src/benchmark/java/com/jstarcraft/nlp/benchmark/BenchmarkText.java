@@ -0,0 +1,79 @@
+package com.jstarcraft.nlp.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准文本
+ *
+ * <pre>
+ * 从测试资源的维基百科文本(de,fr,it)截取指定长度的片段.
+ * 片段从单词边界开始与结束,不同片段轮流使用,避免基准只测量同一个输入.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public enum BenchmarkText {
+
+    /** 短文本(不超过shortTextAlgorithm的50个字符) */
+    SHORT(50),
+
+    /** 中等文本 */
+    MEDIUM(500),
+
+    /** 长文本 */
+    LONG(5000);
+
+    private final static String[] PATHS = { "/texts/de-wikipedia-Deutschland.txt", "/texts/fr-wikipedia-France.txt", "/texts/it-wikipedia-Italia.txt" };
+
+    /** 片段长度上限 */
+    private final int length;
+
+    BenchmarkText(int length) {
+        this.length = length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 获取片段
+     *
+     * @return
+     */
+    public String[] getTexts() {
+        List<String> texts = new ArrayList<>();
+        for (String path : PATHS) {
+            String content = readText(path).replaceAll("\\s+", " ").trim();
+            // 每个文件至少一个片段
+            int step = Math.max(1, Math.min(length, content.length() - length));
+            for (int from = 0; from == 0 || from + length <= content.length(); from += step) {
+                String text = content.substring(from, Math.min(from + length, content.length()));
+                int begin = from == 0 ? 0 : text.indexOf(' ') + 1;
+                int end = from + length >= content.length() ? text.length() : text.lastIndexOf(' ');
+                texts.add(text.substring(begin, Math.max(begin, end)).trim());
+            }
+        }
+        return texts.toArray(new String[texts.size()]);
+    }
+
+    private static String readText(String path) {
+        try (InputStream stream = BenchmarkText.class.getResourceAsStream(path)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[8192];
+            for (int size = stream.read(data); size >= 0; size = stream.read(data)) {
+                buffer.write(data, 0, size);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.jstarcraft.nlp.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jstarcraft.nlp.detection.DetectionLanguage;
+import com.jstarcraft.nlp.detection.DetectionModel;
+import com.jstarcraft.nlp.detection.LanguageDetector;
+
+/**
+ * 检测规则的语言检测器({@link LanguageDetector})基准
+ *
+ * <pre>
+ * 检测:按层级(82,187,406)与文本长度(SHORT,MEDIUM,LONG)测量吞吐量与平均延迟.
+ * 构建:按层级测量从JSON编译模型,从二进制装载模型与构建检测器的时间.
+ *
+ * 运行(分配速率由-prof gc统计):
+ * mvn -P benchmark test-compile exec:exec -Djmh.arguments="DetectionBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectionBenchmark {
+
+    private static DetectionModel getModel(String tier) {
+        switch (tier) {
+        case "82":
+            return DetectionModel.getLanguage82();
+        case "187":
+            return DetectionModel.getLanguage187();
+        case "406":
+            return DetectionModel.getLanguage406();
+        default:
+            throw new IllegalArgumentException(tier);
+        }
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream stream = DetectionModel.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[8192];
+            for (int size = stream.read(data); size >= 0; size = stream.read(data)) {
+                buffer.write(data, 0, size);
+            }
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * 检测状态
+     */
+    @State(Scope.Thread)
+    public static class DetectorState {
+
+        @Param({ "82", "187", "406" })
+        public String tier;
+
+        @Param({ "SHORT", "MEDIUM", "LONG" })
+        public BenchmarkText length;
+
+        private LanguageDetector detector;
+
+        private String[] texts;
+
+        private int cursor;
+
+        @Setup
+        public void prepare() {
+            detector = new LanguageDetector(getModel(tier));
+            texts = length.getTexts();
+        }
+
+        private String nextText() {
+            String text = texts[cursor];
+            cursor = cursor + 1 == texts.length ? 0 : cursor + 1;
+            return text;
+        }
+
+    }
+
+    /**
+     * 模型状态
+     */
+    @State(Scope.Benchmark)
+    public static class ModelState {
+
+        @Param({ "82", "187", "406" })
+        public String tier;
+
+        private byte[] regulation;
+
+        private byte[] dictionary;
+
+        private byte[] binary;
+
+        private DetectionModel model;
+
+        @Setup
+        public void prepare() throws IOException {
+            regulation = readResource("regulation-" + tier + ".json");
+            dictionary = readResource("dictionary-" + tier + ".json");
+            model = getModel(tier);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            model.storeModel(buffer);
+            binary = buffer.toByteArray();
+        }
+
+    }
+
+    @Benchmark
+    public DetectionLanguage detectLanguage(DetectorState state) {
+        return state.detector.detectLanguage(state.nextText());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public DetectionModel compileModel(ModelState state) throws IOException {
+        try (InputStream regulation = new ByteArrayInputStream(state.regulation); InputStream dictionary = new ByteArrayInputStream(state.dictionary)) {
+            return DetectionModel.compileModel(regulation, dictionary);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public DetectionModel loadModel(ModelState state) {
+        return DetectionModel.loadModel(ByteBuffer.wrap(state.binary));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LanguageDetector constructDetector(ModelState state) {
+        return new LanguageDetector(state.model);
+    }
+
+}
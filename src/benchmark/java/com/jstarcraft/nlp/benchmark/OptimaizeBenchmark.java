@@ -0,0 +1,158 @@
+package com.jstarcraft.nlp.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import com.optimaize.langdetect.LanguageDetector;
+import com.optimaize.langdetect.LanguageDetectorBuilder;
+import com.optimaize.langdetect.ngram.NgramExtractors;
+import com.optimaize.langdetect.profiles.BuiltInLanguages;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.TextObjectFactory;
+
+/**
+ * 概率模型的语言检测器({@link LanguageDetector})基准
+ *
+ * <pre>
+ * 检测:按档案(languages,languages.shorttext),存储(packed)与文本长度(SHORT,MEDIUM,LONG)测量吞吐量与平均延迟.
+ * 文本对象在准备阶段创建,只测量检测.
+ * 构建:按档案测量装载档案与构建检测器的时间.
+ *
+ * 运行(分配速率由-prof gc统计):
+ * mvn -P benchmark test-compile exec:exec -Djmh.arguments="OptimaizeBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimaizeBenchmark {
+
+    /** 与shortTextAlgorithm保持一致 */
+    private final static int SHORT_TEXT = 50;
+
+    private static List<LanguageProfile> loadProfiles(String profiles) throws IOException {
+        LanguageProfileReader reader = new LanguageProfileReader();
+        switch (profiles) {
+        case "languages":
+            return reader.readAllBuiltIn();
+        case "languages.shorttext":
+            return reader.read(profiles, BuiltInLanguages.getShortTextLanguages());
+        default:
+            throw new IllegalArgumentException(profiles);
+        }
+    }
+
+    private static LanguageDetector createDetector(List<LanguageProfile> profiles, boolean packed) {
+        return LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(SHORT_TEXT).packed(packed).withProfiles(profiles).build();
+    }
+
+    /**
+     * 检测状态
+     */
+    @State(Scope.Thread)
+    public static class DetectorState {
+
+        @Param({ "languages", "languages.shorttext" })
+        public String profiles;
+
+        @Param({ "false", "true" })
+        public boolean packed;
+
+        @Param({ "SHORT", "MEDIUM", "LONG" })
+        public BenchmarkText length;
+
+        private LanguageDetector detector;
+
+        private CharSequence[] texts;
+
+        private int cursor;
+
+        @Setup
+        public void prepare() throws IOException {
+            detector = createDetector(loadProfiles(profiles), packed);
+            TextObjectFactory factory = CommonTextObjectFactories.forDetectingOnLargeText();
+            String[] contents = length.getTexts();
+            texts = new CharSequence[contents.length];
+            for (int index = 0; index < contents.length; index++) {
+                texts[index] = factory.forText(contents[index]);
+            }
+        }
+
+        private CharSequence nextText() {
+            CharSequence text = texts[cursor];
+            cursor = cursor + 1 == texts.length ? 0 : cursor + 1;
+            return text;
+        }
+
+    }
+
+    /**
+     * 档案状态
+     */
+    @State(Scope.Benchmark)
+    public static class ProfileState {
+
+        @Param({ "languages", "languages.shorttext" })
+        public String profiles;
+
+        private List<LanguageProfile> languageProfiles;
+
+        @Setup
+        public void prepare() throws IOException {
+            languageProfiles = loadProfiles(profiles);
+        }
+
+    }
+
+    /**
+     * 构建状态
+     */
+    @State(Scope.Benchmark)
+    public static class BuilderState {
+
+        @Param({ "false", "true" })
+        public boolean packed;
+
+    }
+
+    @Benchmark
+    public List<DetectedLanguage> getProbabilities(DetectorState state) {
+        return state.detector.getProbabilities(state.nextText());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<LanguageProfile> readProfiles(ProfileState state) throws IOException {
+        return loadProfiles(state.profiles);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LanguageDetector buildDetector(ProfileState state, BuilderState builder) {
+        return createDetector(state.languageProfiles, builder.packed);
+    }
+
+}
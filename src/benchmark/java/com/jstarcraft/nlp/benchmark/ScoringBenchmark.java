@@ -0,0 +1,93 @@
+package com.jstarcraft.nlp.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import com.optimaize.langdetect.LanguageDetector;
+import com.optimaize.langdetect.LanguageDetectorBuilder;
+import com.optimaize.langdetect.ngram.NgramExtractors;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.TextObjectFactory;
+
+/**
+ * 打分算法基准
+ *
+ * <pre>
+ * 比较概率模型的随机采样打分与确定性的对数空间打分(deterministic),使用所有内置档案.
+ * 关闭短文本算法,使所有长度都经过对应的打分算法.
+ * 准确率与确定性由单元测试保证,这里只测量速度.
+ *
+ * 运行:
+ * mvn -P benchmark test-compile exec:exec -Djmh.arguments="ScoringBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    /**
+     * 检测状态
+     */
+    @State(Scope.Thread)
+    public static class DetectorState {
+
+        @Param({ "false", "true" })
+        public boolean deterministic;
+
+        @Param({ "SHORT", "MEDIUM", "LONG" })
+        public BenchmarkText length;
+
+        private LanguageDetector detector;
+
+        private CharSequence[] texts;
+
+        private int cursor;
+
+        @Setup
+        public void prepare() throws IOException {
+            List<LanguageProfile> profiles = new LanguageProfileReader().readAllBuiltIn();
+            detector = LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(0).deterministic(deterministic).withProfiles(profiles).build();
+            TextObjectFactory factory = CommonTextObjectFactories.forDetectingOnLargeText();
+            String[] contents = length.getTexts();
+            texts = new CharSequence[contents.length];
+            for (int index = 0; index < contents.length; index++) {
+                texts[index] = factory.forText(contents[index]);
+            }
+        }
+
+        private CharSequence nextText() {
+            CharSequence text = texts[cursor];
+            cursor = cursor + 1 == texts.length ? 0 : cursor + 1;
+            return text;
+        }
+
+    }
+
+    @Benchmark
+    public List<DetectedLanguage> getProbabilities(DetectorState state) {
+        return state.detector.getProbabilities(state.nextText());
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import java.util.Random;
+
+import com.jstarcraft.nlp.bloomfilter.bit.AtomicMap;
+
+/**
+ * 线程安全的布隆过滤器(不需要加锁)
+ * 
+ * @author Birdy
+ *
+ */
+public class AtomicBloomFilter extends LocalBloomFilter {
+
+    public AtomicBloomFilter(int bitSize, StringHashFamily hashFamily, int hashSize, Random random) {
+        super(new AtomicMap(bitSize), getFunctions(hashFamily, hashSize, random));
+    }
+
+}
@@ -0,0 +1,234 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分块布隆过滤器
+ *
+ * <pre>
+ * 位按512位(8个long,一条64字节缓存行)分块,每个数据的所有探测位置都在同一块内,所以每次get/put只访问一次内存.
+ * 每个数据只计算一次128位哈希({@link MurmurHash128}):h1的高32位通过multiply-shift选择块,
+ * 块内的k个位置依次取序列x(0) = h2, x(i+1) = x(i) * φ + h1的高9位(φ为黄金比例常数).
+ * 块只有512位,等差的双重哈希位置之间相关性明显(p=1%时实际误判率约1.13%),该序列的实际误判率与下面的公式一致.
+ *
+ * 代价是块之间负载不均匀,同样的位数与数据量下误判率高于标准布隆过滤器,需要稍多的位:
+ * p=1%时每个数据约9.9位(标准约9.6位),p=0.1%时约15.5位(标准约14.4位),p=0.01%时约21.9位(标准约19.2位).
+ * 所以请使用本类的{@link #optimalBits(long, float)}与{@link #optimalHashs(long, long)}而不是{@link LocalBloomFilter}的公式.
+ *
+ * 容量最多约2^37位(16GB).位通过CAS修改,可以被多个线程同时put/get.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class BlockedBloomFilter implements BloomFilter {
+
+    /** 每块的位数 */
+    public final static int BLOCK_BITS = 512;
+
+    /** 每块的long数量 */
+    private final static int BLOCK_WORDS = BLOCK_BITS / Long.SIZE;
+
+    /** 块数量上限(long数量不超过Integer.MAX_VALUE) */
+    private final static int MAXIMUM_BLOCKS = Integer.MAX_VALUE / BLOCK_WORDS;
+
+    /** 黄金比例常数 */
+    private final static long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLongArray words;
+
+    /** 块数量 */
+    private final int blocks;
+
+    /** 哈希函数数量 */
+    private final int hashSize;
+
+    private final long seed;
+
+    private final MurmurHash128.Probe getter = this::contain;
+
+    private final MurmurHash128.Probe setter = this::insert;
+
+    /**
+     * @param bitSize 位数(向上取整为块的整数倍)
+     * @param hashSize 哈希函数数量
+     * @param seed 哈希种子
+     */
+    public BlockedBloomFilter(long bitSize, int hashSize, long seed) {
+        if (bitSize <= 0L) {
+            throw new IllegalArgumentException("位数必须为正数:" + bitSize);
+        }
+        if (hashSize <= 0 || hashSize > BLOCK_BITS) {
+            throw new IllegalArgumentException("哈希函数数量必须在[1, " + BLOCK_BITS + "]之间:" + hashSize);
+        }
+        long blocks = (bitSize + BLOCK_BITS - 1) / BLOCK_BITS;
+        if (blocks > MAXIMUM_BLOCKS) {
+            throw new IllegalArgumentException("位数不能超过" + (long) MAXIMUM_BLOCKS * BLOCK_BITS + ":" + bitSize);
+        }
+        this.blocks = (int) blocks;
+        this.words = new AtomicLongArray(this.blocks * BLOCK_WORDS);
+        this.hashSize = hashSize;
+        this.seed = seed;
+    }
+
+    @Override
+    public boolean get(String data) {
+        return MurmurHash128.hash(data, seed, getter);
+    }
+
+    @Override
+    public void put(String data) {
+        MurmurHash128.hash(data, seed, setter);
+    }
+
+    private boolean contain(long h1, long h2) {
+        int base = getBlock(h1) * BLOCK_WORDS;
+        long hash = h2;
+        for (int count = 0; count < hashSize; count++) {
+            int position = (int) (hash >>> 55);
+            hash = hash * GOLDEN + h1;
+            long mask = 1L << position;
+            if ((words.get(base + ((position >>> 6) & (BLOCK_WORDS - 1))) & mask) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean insert(long h1, long h2) {
+        int base = getBlock(h1) * BLOCK_WORDS;
+        long hash = h2;
+        for (int count = 0; count < hashSize; count++) {
+            int position = (int) (hash >>> 55);
+            hash = hash * GOLDEN + h1;
+            int index = base + ((position >>> 6) & (BLOCK_WORDS - 1));
+            long mask = 1L << position;
+            long current = words.get(index);
+            while ((current & mask) == 0L && !words.compareAndSet(index, current, current | mask)) {
+                current = words.get(index);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * h1的高32位映射到[0, blocks)
+     */
+    private int getBlock(long h1) {
+        return (int) (((h1 >>> 32) * blocks) >>> 32);
+    }
+
+    /**
+     * 位数
+     *
+     * @return
+     */
+    public long getBitSize() {
+        return (long) blocks * BLOCK_BITS;
+    }
+
+    public int getHashSize() {
+        return hashSize;
+    }
+
+    /**
+     * 计算误判率
+     *
+     * <pre>
+     * 每块的数据量近似服从均值为B*n/m的泊松分布,误判率为各个数据量下块内标准布隆过滤器误判率的期望(Putze, Sanders, Singler. Cache-, Hash- and Space-Efficient Bloom Filters).
+     * </pre>
+     *
+     * @param m 位数
+     * @param n 数据量
+     * @param k 哈希函数数量
+     * @return
+     */
+    public static float optimalProbability(long m, long n, int k) {
+        if (n <= 0L) {
+            return 0F;
+        }
+        double mean = (double) BLOCK_BITS * n / m;
+        double logMean = Math.log(mean);
+        double logEmpty = Math.log1p(-1D / BLOCK_BITS);
+        // 从均值开始向两侧累加,直到概率可以忽略
+        int center = (int) mean;
+        double logCenter = -mean + center * logMean - logFactorial(center);
+        double probability = 0D;
+        double logPoisson = logCenter;
+        for (int count = center; count >= 0; count--) {
+            double poisson = Math.exp(logPoisson);
+            probability += poisson * Math.pow(-Math.expm1(count * k * logEmpty), k);
+            if (poisson < 1E-20 && count < center) {
+                break;
+            }
+            logPoisson -= logMean - Math.log(count);
+        }
+        logPoisson = logCenter;
+        for (int count = center + 1;; count++) {
+            logPoisson += logMean - Math.log(count);
+            double poisson = Math.exp(logPoisson);
+            probability += poisson * Math.pow(-Math.expm1(count * k * logEmpty), k);
+            if (poisson < 1E-20) {
+                break;
+            }
+        }
+        return (float) probability;
+    }
+
+    /**
+     * 计算误判率最低的哈希函数数量
+     *
+     * @param m 位数
+     * @param n 数据量
+     * @return
+     */
+    public static int optimalHashs(long m, long n) {
+        int optimal = 1;
+        float minimum = optimalProbability(m, n, 1);
+        for (int k = 2; k <= 32; k++) {
+            float probability = optimalProbability(m, n, k);
+            if (probability < minimum) {
+                minimum = probability;
+                optimal = k;
+            } else {
+                break;
+            }
+        }
+        return optimal;
+    }
+
+    /**
+     * 计算误判率不超过p所需的最少位数(块的整数倍,使用{@link #optimalHashs(long, long)})
+     *
+     * @param n 数据量
+     * @param p 误判率
+     * @return
+     */
+    public static long optimalBits(long n, float p) {
+        // 分块的位数不少于标准布隆过滤器
+        long low = Math.max(1L, (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)) / BLOCK_BITS));
+        long high = low;
+        while (optimalProbability(high * BLOCK_BITS, n, optimalHashs(high * BLOCK_BITS, n)) > p) {
+            low = high + 1;
+            high *= 2;
+        }
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (optimalProbability(middle * BLOCK_BITS, n, optimalHashs(middle * BLOCK_BITS, n)) > p) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return high * BLOCK_BITS;
+    }
+
+    private static double logFactorial(int number) {
+        double value = 0D;
+        for (int index = 2; index <= number; index++) {
+            value += Math.log(index);
+        }
+        return value;
+    }
+
+}
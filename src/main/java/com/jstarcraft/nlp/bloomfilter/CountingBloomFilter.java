@@ -0,0 +1,99 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import com.jstarcraft.nlp.bloomfilter.bit.CounterMap;
+
+/**
+ * 计数布隆过滤器
+ *
+ * <pre>
+ * 用4位计数代替位,put增加k个计数,{@link #remove(String)}减少k个计数,删除数据不需要重建过滤器.
+ * 探测位置与{@link DoubleHashBloomFilter}相同(一次128位哈希,双重哈希,multiply-shift),所以计数数量与哈希函数数量可以使用{@link LocalBloomFilter#optimalBits(int, float)}与{@link LocalBloomFilter#optimalHashs(int, int)},内存是位图的4倍.
+ * 饱和(达到15)的计数不再减少,只会让误判率略微升高,不会产生假阴性.
+ * 只能删除已经put过的数据:删除从未put过(但是误判存在)的数据会减少其它数据的计数,导致假阴性.
+ * 线程安全取决于计数图({@link com.jstarcraft.nlp.bloomfilter.bit.AtomicCounterMap}可以被多个线程同时修改).
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class CountingBloomFilter implements BloomFilter {
+
+    private final CounterMap counters;
+
+    /** 哈希函数数量 */
+    private final int hashSize;
+
+    private final long seed;
+
+    private final MurmurHash128.Probe getter = this::contain;
+
+    private final MurmurHash128.Probe setter = this::insert;
+
+    private final MurmurHash128.Probe remover = this::delete;
+
+    public CountingBloomFilter(CounterMap counters, int hashSize, long seed) {
+        if (hashSize <= 0) {
+            throw new IllegalArgumentException("哈希函数数量必须为正数:" + hashSize);
+        }
+        this.counters = counters;
+        this.hashSize = hashSize;
+        this.seed = seed;
+    }
+
+    @Override
+    public boolean get(String data) {
+        return MurmurHash128.hash(data, seed, getter);
+    }
+
+    @Override
+    public void put(String data) {
+        MurmurHash128.hash(data, seed, setter);
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param data 已经put过的数据
+     * @return 是否删除(数据不存在时为false)
+     */
+    public boolean remove(String data) {
+        return MurmurHash128.hash(data, seed, remover);
+    }
+
+    private boolean contain(long h1, long h2) {
+        long capacity = counters.capacity();
+        long hash = h1;
+        for (int count = 0; count < hashSize; count++) {
+            if (counters.get(MurmurHash128.reduce(hash, capacity)) == 0) {
+                return false;
+            }
+            hash += h2;
+        }
+        return true;
+    }
+
+    private boolean insert(long h1, long h2) {
+        long capacity = counters.capacity();
+        long hash = h1;
+        for (int count = 0; count < hashSize; count++) {
+            counters.increment(MurmurHash128.reduce(hash, capacity));
+            hash += h2;
+        }
+        return true;
+    }
+
+    private boolean delete(long h1, long h2) {
+        // 确定不存在的数据不修改计数
+        if (!contain(h1, h2)) {
+            return false;
+        }
+        long capacity = counters.capacity();
+        long hash = h1;
+        for (int count = 0; count < hashSize; count++) {
+            counters.decrement(MurmurHash128.reduce(hash, capacity));
+            hash += h2;
+        }
+        return true;
+    }
+
+}
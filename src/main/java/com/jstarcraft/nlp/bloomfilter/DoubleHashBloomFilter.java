@@ -0,0 +1,69 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import com.jstarcraft.nlp.bloomfilter.bit.BitMap;
+
+/**
+ * 双重哈希布隆过滤器
+ *
+ * <pre>
+ * 每个数据只计算一次128位哈希({@link MurmurHash128}),
+ * 拆分为h1与h2后由g(i) = h1 + i * h2得到所有探测位置(Kirsch-Mitzenmacher),哈希代价不再随哈希函数数量线性增长.
+ * 位置取g(i)乘以容量的高64位(multiply-shift),避免取模的除法与{@link Math#abs(int)}在Integer.MIN_VALUE的偏差.
+ * 位置按long寻址,所以可以使用超过2^31位的位图(如{@link com.jstarcraft.nlp.bloomfilter.bit.MappedMap}).
+ * 线程安全取决于位图.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class DoubleHashBloomFilter extends LocalBloomFilter {
+
+    /** 哈希函数数量 */
+    private final int hashSize;
+
+    private final long seed;
+
+    private final MurmurHash128.Probe getter = this::contain;
+
+    private final MurmurHash128.Probe setter = this::insert;
+
+    public DoubleHashBloomFilter(BitMap bits, int hashSize, long seed) {
+        super(bits);
+        assert hashSize > 0;
+        this.hashSize = hashSize;
+        this.seed = seed;
+    }
+
+    @Override
+    public boolean get(String data) {
+        return MurmurHash128.hash(data, seed, getter);
+    }
+
+    @Override
+    public void put(String data) {
+        MurmurHash128.hash(data, seed, setter);
+    }
+
+    private boolean contain(long h1, long h2) {
+        long capacity = bits.longCapacity();
+        long hash = h1;
+        for (int count = 0; count < hashSize; count++) {
+            if (!bits.get(MurmurHash128.reduce(hash, capacity))) {
+                return false;
+            }
+            hash += h2;
+        }
+        return true;
+    }
+
+    private boolean insert(long h1, long h2) {
+        long capacity = bits.longCapacity();
+        long hash = h1;
+        for (int count = 0; count < hashSize; count++) {
+            bits.set(MurmurHash128.reduce(hash, capacity));
+            hash += h2;
+        }
+        return true;
+    }
+
+}
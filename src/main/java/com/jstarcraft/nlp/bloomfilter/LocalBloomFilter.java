@@ -5,11 +5,22 @@ import java.util.Random;
 import com.jstarcraft.core.common.hash.StringHashFunction;
 import com.jstarcraft.nlp.bloomfilter.bit.BitMap;
 
+/**
+ * 本地布隆过滤器
+ * 
+ * <pre>
+ * 线程安全取决于位图:{@link com.jstarcraft.nlp.bloomfilter.bit.AtomicMap}可以被多个线程同时put/get,其它位图需要外部同步.
+ * 32位哈希函数只能访问位图的前Integer.MAX_VALUE位,更大的位图需要使用按long寻址的{@link DoubleHashBloomFilter}.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
 public abstract class LocalBloomFilter implements BloomFilter {
 
-    protected BitMap bits;
+    protected final BitMap bits;
 
-    protected StringHashFunction[] functions;
+    protected final StringHashFunction[] functions;
 
     protected static StringHashFunction[] getFunctions(StringHashFamily hashFamily, int hashSize, Random random) {
         StringHashFunction[] functions = new StringHashFunction[hashSize];
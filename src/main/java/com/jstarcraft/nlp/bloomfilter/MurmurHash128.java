@@ -0,0 +1,131 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+/**
+ * 128位字符串哈希
+ *
+ * <pre>
+ * MurmurHash3 x64_128,按UTF-16字符(小端序)计算,不需要编码字符串,与Guava的murmur3_128(seed).hashUnencodedChars一致.
+ * 结果的两个64位交给{@link Probe},避免每次哈希创建对象.
+ * {@link #reduce(long, long)}将哈希映射为探测位置.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+final class MurmurHash128 {
+
+    private final static long C1 = 0x87C37B91114253D5L;
+
+    private final static long C2 = 0x4CF5AD432745937FL;
+
+    /**
+     * 探测
+     */
+    @FunctionalInterface
+    interface Probe {
+
+        boolean probe(long h1, long h2);
+
+    }
+
+    private MurmurHash128() {
+    }
+
+    static boolean hash(String data, long seed, Probe probe) {
+        long h1 = seed;
+        long h2 = seed;
+        int length = data.length();
+        int index = 0;
+        // 每块8个字符(16字节)
+        for (; index + 8 <= length; index += 8) {
+            long k1 = getLong(data, index);
+            long k2 = getLong(data, index + 4);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+        long k1 = 0L;
+        long k2 = 0L;
+        switch (length - index) {
+        case 7:
+            k2 ^= ((long) data.charAt(index + 6)) << 32;
+        case 6:
+            k2 ^= ((long) data.charAt(index + 5)) << 16;
+        case 5:
+            k2 ^= data.charAt(index + 4);
+        case 4:
+            k1 ^= ((long) data.charAt(index + 3)) << 48;
+        case 3:
+            k1 ^= ((long) data.charAt(index + 2)) << 32;
+        case 2:
+            k1 ^= ((long) data.charAt(index + 1)) << 16;
+        case 1:
+            k1 ^= data.charAt(index);
+        }
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+        h1 ^= length * 2L;
+        h2 ^= length * 2L;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return probe.probe(h1, h2);
+    }
+
+    /**
+     * 将哈希映射到[0, range)(multiply-shift:无符号的hash * range的高64位)
+     *
+     * @param hash
+     * @param range 正数
+     * @return
+     */
+    static long reduce(long hash, long range) {
+        long hashLow = hash & 0xFFFFFFFFL;
+        long hashHigh = hash >>> 32;
+        long rangeLow = range & 0xFFFFFFFFL;
+        long rangeHigh = range >>> 32;
+        long low = hashLow * rangeLow;
+        long middle = hashHigh * rangeLow + (low >>> 32);
+        long cross = (middle & 0xFFFFFFFFL) + hashLow * rangeHigh;
+        return hashHigh * rangeHigh + (middle >>> 32) + (cross >>> 32);
+    }
+
+    /**
+     * 按小端序读取4个字符
+     */
+    private static long getLong(String data, int index) {
+        return data.charAt(index) | ((long) data.charAt(index + 1)) << 16 | ((long) data.charAt(index + 2)) << 32 | ((long) data.charAt(index + 3)) << 48;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+}
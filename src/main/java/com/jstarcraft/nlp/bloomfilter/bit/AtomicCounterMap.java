@@ -0,0 +1,71 @@
+package com.jstarcraft.nlp.bloomfilter.bit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的计数图(每个long包含16个计数)
+ * 
+ * <pre>
+ * 计数保存在{@link AtomicLongArray},通过CAS修改,不需要加锁.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class AtomicCounterMap implements CounterMap {
+
+    private final AtomicLongArray counters;
+
+    private final long capacity;
+
+    public AtomicCounterMap(long capacity) {
+        if (capacity <= 0L || capacity > (long) Integer.MAX_VALUE * 16L) {
+            throw new IllegalArgumentException("计数器容量必须在[1, " + (long) Integer.MAX_VALUE * 16L + "]之间:" + capacity);
+        }
+        this.counters = new AtomicLongArray((int) ((capacity + 15L) / 16L));
+        this.capacity = capacity;
+    }
+
+    @Override
+    public int get(long index) {
+        return (int) (counters.get((int) (index >>> 4)) >>> ((index & 15L) << 2)) & 15;
+    }
+
+    @Override
+    public boolean increment(long index) {
+        int row = (int) (index >>> 4);
+        int column = (int) (index & 15L) << 2;
+        while (true) {
+            long current = counters.get(row);
+            long count = (current >>> column) & 15L;
+            if (count == MAXIMUM) {
+                return false;
+            }
+            if (counters.compareAndSet(row, current, current + (1L << column))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean decrement(long index) {
+        int row = (int) (index >>> 4);
+        int column = (int) (index & 15L) << 2;
+        while (true) {
+            long current = counters.get(row);
+            long count = (current >>> column) & 15L;
+            if (count == 0L || count == MAXIMUM) {
+                return false;
+            }
+            if (counters.compareAndSet(row, current, current - (1L << column))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.jstarcraft.nlp.bloomfilter.bit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的位图
+ *
+ * <pre>
+ * 位保存在{@link AtomicLongArray},通过CAS修改,不需要加锁.
+ * 只有真正改变了位的线程才会更新数量,数量由{@link LongAdder}分段累计,避免多个线程竞争同一个计数.
+ * 并发修改期间{@link #size()}是近似值.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class AtomicMap implements BitMap {
+
+    private final AtomicLongArray bits;
+
+    private final int capacity;
+
+    private final LongAdder size;
+
+    public AtomicMap(int capacity) {
+        assert capacity > 0;
+        int elements = capacity % Long.SIZE == 0 ? capacity / Long.SIZE : capacity / Long.SIZE + 1;
+        this.bits = new AtomicLongArray(elements);
+        this.capacity = capacity;
+        this.size = new LongAdder();
+    }
+
+    @Override
+    public boolean get(int index) {
+        int row = index / Long.SIZE;
+        int column = index % Long.SIZE;
+        return ((bits.get(row) >>> column) & 1L) == 1L;
+    }
+
+    @Override
+    public boolean set(int index) {
+        int row = index / Long.SIZE;
+        long mask = 1L << (index % Long.SIZE);
+        while (true) {
+            long current = bits.get(row);
+            if ((current & mask) != 0L) {
+                return false;
+            }
+            if (bits.compareAndSet(row, current, current | mask)) {
+                size.increment();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean unset(int index) {
+        int row = index / Long.SIZE;
+        long mask = 1L << (index % Long.SIZE);
+        while (true) {
+            long current = bits.get(row);
+            if ((current & mask) == 0L) {
+                return false;
+            }
+            if (bits.compareAndSet(row, current, current & ~mask)) {
+                size.decrement();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+}
@@ -1,6 +1,12 @@
 package com.jstarcraft.nlp.bloomfilter.bit;
 
 /**
+ * 位图
+ * 
+ * <pre>
+ * 按int寻址的位图最多2^31位,按long寻址的方法默认委托给按int寻址的方法.
+ * 超过int范围的位图(如{@link MappedMap})需要重写按long寻址的方法,按int寻址时只能访问前Integer.MAX_VALUE位.
+ * </pre>
  * 
  * @author Birdy
  *
@@ -10,12 +16,60 @@ public interface BitMap {
 
     boolean get(int index);
 
-    void set(int index);
+    /**
+     * 设置位
+     * 
+     * @param index
+     * @return 位之前是否未设置
+     */
+    boolean set(int index);
 
-    void unset(int index);
+    /**
+     * 清除位
+     * 
+     * @param index
+     * @return 位之前是否已设置
+     */
+    boolean unset(int index);
 
     int capacity();
 
     int size();
 
+    default boolean get(long index) {
+        return get((int) index);
+    }
+
+    /**
+     * @see #set(int)
+     */
+    default boolean set(long index) {
+        return set((int) index);
+    }
+
+    /**
+     * @see #unset(int)
+     */
+    default boolean unset(long index) {
+        return unset((int) index);
+    }
+
+    /**
+     * 容量(按long寻址)
+     * 
+     * @return
+     */
+    default long longCapacity() {
+        return capacity();
+    }
+
+    /**
+     * 数量(按long寻址)
+     * 
+     * @return
+     */
+    default long longSize() {
+        return size();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.jstarcraft.nlp.bloomfilter.bit;
+
+/**
+ * 计数图
+ * 
+ * <pre>
+ * 每个计数4位,取值[0, 15].
+ * 计数达到15之后饱和,不再增加也不再减少,避免溢出之后删除导致的假阴性.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public interface CounterMap {
+
+    /** 计数上限 */
+    int MAXIMUM = 15;
+
+    int get(long index);
+
+    /**
+     * 增加计数
+     * 
+     * @param index
+     * @return 是否改变(已经饱和时不改变)
+     */
+    boolean increment(long index);
+
+    /**
+     * 减少计数
+     * 
+     * @param index
+     * @return 是否改变(为0或者已经饱和时不改变)
+     */
+    boolean decrement(long index);
+
+    long capacity();
+
+}
@@ -29,23 +29,27 @@ public class IntegerMap implements BitMap {
     }
 
     @Override
-    public void set(int index) {
+    public boolean set(int index) {
         int row = index / Integer.SIZE;
         int column = index % Integer.SIZE;
         if (((bits[row] >>> column) & 1) == 0) {
             bits[row] |= (1 << column);
             size++;
+            return true;
         }
+        return false;
     }
 
     @Override
-    public void unset(int index) {
+    public boolean unset(int index) {
         int row = index / Integer.SIZE;
         int column = index % Integer.SIZE;
         if (((bits[row] >>> column) & 1) == 1) {
             bits[row] &= ~(1 << column);
             size--;
+            return true;
         }
+        return false;
     }
 
     @Override
@@ -29,23 +29,27 @@ public class LongMap implements BitMap {
     }
 
     @Override
-    public void set(int index) {
+    public boolean set(int index) {
         int row = index / Long.SIZE;
         int column = index % Long.SIZE;
         if (((bits[row] >>> column) & 1L) == 0L) {
             bits[row] |= (1L << column);
             size++;
+            return true;
         }
+        return false;
     }
 
     @Override
-    public void unset(int index) {
+    public boolean unset(int index) {
         int row = index / Long.SIZE;
         int column = index % Long.SIZE;
         if (((bits[row] >>> column) & 1L) == 1L) {
             bits[row] &= ~(1L << column);
             size--;
+            return true;
         }
+        return false;
     }
 
     @Override
@@ -0,0 +1,239 @@
+package com.jstarcraft.nlp.bloomfilter.bit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射位图
+ *
+ * <pre>
+ * 按long寻址,位保存在内存映射文件(按1GB分段映射),不占用堆内存,也不会增加GC停顿.
+ * 文件由头部(魔数,版本,容量,数量)与按小端序排列的long组成,重新打开时直接映射,不需要重建.
+ * 数量在{@link #flush()}与{@link #close()}时写入头部;进程异常退出时位仍然在页缓存中,但是数量可能落后.
+ * 非线程安全,多个线程修改时需要外部同步.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class MappedMap implements BitMap, Closeable {
+
+    /** 魔数(JSBM) */
+    private final static int MAGIC = 0x4A53424D;
+
+    /** 版本 */
+    private final static int VERSION = 1;
+
+    /** 头部字节数(位从此处开始,保持8字节对齐) */
+    private final static int HEADER = 64;
+
+    /** 每段的long数量(1GB) */
+    private final static int SEGMENT_SHIFT = 27;
+
+    private final static long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1L;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer header;
+
+    private final MappedByteBuffer[] buffers;
+
+    private final LongBuffer[] segments;
+
+    private final long capacity;
+
+    private long size;
+
+    private MappedMap(FileChannel channel, long capacity, long size) throws IOException {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.size = size;
+        this.header = channel.map(MapMode.READ_WRITE, 0L, HEADER);
+        this.header.order(ByteOrder.LITTLE_ENDIAN);
+        long words = getWords(capacity);
+        int number = (int) ((words + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.buffers = new MappedByteBuffer[number];
+        this.segments = new LongBuffer[number];
+        for (int index = 0; index < number; index++) {
+            long from = (long) index << SEGMENT_SHIFT;
+            long length = Math.min(words - from, 1L << SEGMENT_SHIFT);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, HEADER + from * Long.BYTES, length * Long.BYTES);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.buffers[index] = buffer;
+            this.segments[index] = buffer.asLongBuffer();
+        }
+    }
+
+    private static long getWords(long capacity) {
+        return capacity % Long.SIZE == 0 ? capacity / Long.SIZE : capacity / Long.SIZE + 1;
+    }
+
+    /**
+     * 创建位图(已经存在的文件会被清空)
+     *
+     * @param path
+     * @param capacity 容量
+     * @return
+     */
+    public static MappedMap create(Path path, long capacity) {
+        if (capacity <= 0L) {
+            throw new IllegalArgumentException("位图容量必须为正数:" + capacity);
+        }
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                MappedMap bits = new MappedMap(channel, capacity, 0L);
+                bits.header.putInt(0, MAGIC);
+                bits.header.putInt(4, VERSION);
+                bits.header.putLong(8, capacity);
+                bits.header.putLong(16, 0L);
+                return bits;
+            } catch (IOException | RuntimeException exception) {
+                channel.close();
+                throw exception;
+            }
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * 打开位图
+     *
+     * @param path
+     * @return
+     */
+    public static MappedMap open(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (channel.size() < HEADER) {
+                    throw new IllegalArgumentException("位图格式不正确");
+                }
+                MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0L, HEADER);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IllegalArgumentException("位图格式不正确");
+                }
+                if (header.getInt(4) != VERSION) {
+                    throw new IllegalArgumentException("位图版本不一致");
+                }
+                long capacity = header.getLong(8);
+                if (channel.size() < HEADER + getWords(capacity) * Long.BYTES) {
+                    throw new IllegalArgumentException("位图文件不完整");
+                }
+                return new MappedMap(channel, capacity, header.getLong(16));
+            } catch (IOException | RuntimeException exception) {
+                channel.close();
+                throw exception;
+            }
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    @Override
+    public boolean get(int index) {
+        return get((long) index);
+    }
+
+    @Override
+    public boolean set(int index) {
+        return set((long) index);
+    }
+
+    @Override
+    public boolean unset(int index) {
+        return unset((long) index);
+    }
+
+    @Override
+    public boolean get(long index) {
+        long row = index >>> 6;
+        return (segments[(int) (row >>> SEGMENT_SHIFT)].get((int) (row & SEGMENT_MASK)) & (1L << index)) != 0L;
+    }
+
+    @Override
+    public boolean set(long index) {
+        long row = index >>> 6;
+        LongBuffer segment = segments[(int) (row >>> SEGMENT_SHIFT)];
+        int offset = (int) (row & SEGMENT_MASK);
+        long word = segment.get(offset);
+        long mask = 1L << index;
+        if ((word & mask) == 0L) {
+            segment.put(offset, word | mask);
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean unset(long index) {
+        long row = index >>> 6;
+        LongBuffer segment = segments[(int) (row >>> SEGMENT_SHIFT)];
+        int offset = (int) (row & SEGMENT_MASK);
+        long word = segment.get(offset);
+        long mask = 1L << index;
+        if ((word & mask) != 0L) {
+            segment.put(offset, word & ~mask);
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 容量(超过int范围时为Integer.MAX_VALUE)
+     */
+    @Override
+    public int capacity() {
+        return (int) Math.min(capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 数量(超过int范围时为Integer.MAX_VALUE)
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long longCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long longSize() {
+        return size;
+    }
+
+    /**
+     * 写入数量并且将修改同步到磁盘
+     */
+    public void flush() {
+        header.putLong(16, size);
+        header.force();
+        for (MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * 关闭位图(映射在缓冲区被回收时解除)
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.jstarcraft.nlp.bloomfilter.bit;
+
+/**
+ * 打包的计数图(每个long包含16个计数)
+ * 
+ * <pre>
+ * 非线程安全,多个线程修改时需要外部同步或者使用{@link AtomicCounterMap}.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class PackedCounterMap implements CounterMap {
+
+    private final long[] counters;
+
+    private final long capacity;
+
+    public PackedCounterMap(long capacity) {
+        if (capacity <= 0L || capacity > (long) Integer.MAX_VALUE * 16L) {
+            throw new IllegalArgumentException("计数器容量必须在[1, " + (long) Integer.MAX_VALUE * 16L + "]之间:" + capacity);
+        }
+        this.counters = new long[(int) ((capacity + 15L) / 16L)];
+        this.capacity = capacity;
+    }
+
+    @Override
+    public int get(long index) {
+        return (int) (counters[(int) (index >>> 4)] >>> ((index & 15L) << 2)) & 15;
+    }
+
+    @Override
+    public boolean increment(long index) {
+        int row = (int) (index >>> 4);
+        int column = (int) (index & 15L) << 2;
+        long count = (counters[row] >>> column) & 15L;
+        if (count == MAXIMUM) {
+            return false;
+        }
+        counters[row] += 1L << column;
+        return true;
+    }
+
+    @Override
+    public boolean decrement(long index) {
+        int row = (int) (index >>> 4);
+        int column = (int) (index & 15L) << 2;
+        long count = (counters[row] >>> column) & 15L;
+        if (count == 0L || count == MAXIMUM) {
+            return false;
+        }
+        counters[row] -= 1L << column;
+        return true;
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+}
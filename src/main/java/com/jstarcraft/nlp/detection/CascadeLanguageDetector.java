@@ -0,0 +1,153 @@
+package com.jstarcraft.nlp.detection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import com.optimaize.langdetect.LanguageDetectorBuilder;
+import com.optimaize.langdetect.ngram.NgramExtractors;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.TextObjectFactory;
+
+/**
+ * 级联语言检测器
+ *
+ * <pre>
+ * 先用检测文字确定出现次数最多的文字,文字只对应一种语言(如cmn,jpn,kor,tha,ell)时直接返回,不再计算N-Gram.
+ * 文字对应多种语言(如Latin,Cyrillic,Arabic)时,才使用只包含该文字候选语言的概率模型({@link com.optimaize.langdetect.LanguageDetector}),避免所有语言参与概率更新.
+ * 候选语言中不足两种有概率模型,或者概率模型没有结果时,退化为{@link LanguageDetector}.
+ * 长度限制与{@link LanguageDetector}一致:短于最小长度的文本没有结果,超过最大长度的文本只检测前面部分.
+ * 结果的语言名称与检测模型一致(ISO 639-3).
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class CascadeLanguageDetector {
+
+    /** 概率模型的宏语言 => 检测模型的个体语言 */
+    private final static Map<String, String> ALIASES = new HashMap<>();
+
+    static {
+        ALIASES.put("ara", "arb");
+        ALIASES.put("msa", "zlm");
+        ALIASES.put("swa", "swh");
+    }
+
+    private final static TextObjectFactory FACTORY = CommonTextObjectFactories.forDetectingOnLargeText();
+
+    /** 检测文字 */
+    private DetectionScript script;
+
+    /** 检测索引 */
+    private DetectionIndex index;
+
+    /** 检测模型的语言检测器 */
+    private LanguageDetector fallback;
+
+    /** 文字 => 候选语言的概率模型 */
+    private Map<String, com.optimaize.langdetect.LanguageDetector> detectors;
+
+    /** 概率模型的语言区域 => 检测模型的语言名称 */
+    private Map<Locale, String> names;
+
+    private int minimum;
+
+    private int maximum;
+
+    public CascadeLanguageDetector(DetectionModel model, Collection<LanguageProfile> profiles) {
+        this(model, profiles, LanguageDetector.DEFAULT_MINIMUM, LanguageDetector.DEFAULT_MAXIMUM);
+    }
+
+    public CascadeLanguageDetector(DetectionModel model, Collection<LanguageProfile> profiles, int minimum, int maximum) {
+        this(model, profiles, (candidates) -> LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(50).packed(true).withProfiles(candidates).build(), minimum, maximum);
+    }
+
+    public CascadeLanguageDetector(DetectionModel model, Collection<LanguageProfile> profiles, Function<List<LanguageProfile>, com.optimaize.langdetect.LanguageDetector> factory) {
+        this(model, profiles, factory, LanguageDetector.DEFAULT_MINIMUM, LanguageDetector.DEFAULT_MAXIMUM);
+    }
+
+    /**
+     * @param model 检测模型
+     * @param profiles 概率模型的语言档案
+     * @param factory 根据候选语言的档案构建概率模型
+     * @param minimum 最小长度
+     * @param maximum 最大长度
+     */
+    public CascadeLanguageDetector(DetectionModel model, Collection<LanguageProfile> profiles, Function<List<LanguageProfile>, com.optimaize.langdetect.LanguageDetector> factory, int minimum, int maximum) {
+        this.script = model.getScript();
+        this.index = model.getIndex();
+        this.fallback = new LanguageDetector(model, minimum, maximum);
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.detectors = new HashMap<>();
+        this.names = new HashMap<>();
+
+        Map<String, LanguageProfile> codes = new HashMap<>();
+        for (LanguageProfile profile : profiles) {
+            String code = profile.getLocale().getISO3Language();
+            codes.put(ALIASES.getOrDefault(code, code), profile);
+        }
+        for (String name : script.getNames()) {
+            String[] languages = index.getLanguages(name);
+            if (languages == null) {
+                continue;
+            }
+            List<LanguageProfile> candidates = new ArrayList<>(languages.length);
+            for (String language : languages) {
+                LanguageProfile profile = codes.get(language);
+                // 同一种语言可能属于多种文字(如srp),概率模型的档案只有一份
+                if (profile != null && !candidates.contains(profile)) {
+                    candidates.add(profile);
+                    names.put(profile.getLocale(), language);
+                }
+            }
+            if (candidates.size() > 1) {
+                detectors.put(name, factory.apply(candidates));
+            }
+        }
+    }
+
+    /**
+     * 检测语言
+     *
+     * @param text
+     * @return 得分为概率(单一语言的文字为1),不存在时为null
+     */
+    public DetectionLanguage detectLanguage(String text) {
+        // 最小长度限制
+        int size = text.length();
+        if (size < minimum) {
+            return null;
+        }
+        // 最大长度限制
+        if (size > maximum) {
+            text = text.substring(0, maximum);
+        }
+        String name = script.detectScript(text);
+        if (name == null) {
+            return null;
+        }
+        // 文字只对应一种语言
+        if (index.getLanguages(name) == null) {
+            return new DetectionLanguage(Locale.forLanguageTag(name), 1D);
+        }
+        com.optimaize.langdetect.LanguageDetector detector = detectors.get(name);
+        if (detector == null) {
+            return fallback.detectLanguage(text);
+        }
+        List<DetectedLanguage> probabilities = detector.getProbabilities(FACTORY.forText(text));
+        if (probabilities.isEmpty()) {
+            return fallback.detectLanguage(text);
+        }
+        DetectedLanguage best = probabilities.get(0);
+        return new DetectionLanguage(Locale.forLanguageTag(names.get(best.getLocale())), best.getProbability());
+    }
+
+}
@@ -0,0 +1,514 @@
+package com.jstarcraft.nlp.detection;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 检测缓存
+ *
+ * <pre>
+ * 以文本为键缓存检测结果,适用于重复率高的短文本(如搜索词,商品标题).
+ * 默认不归一化({@link #IDENTITY}),缓存的结果与直接检测一致.
+ * 指定{@link #NORMALIZER}时转换小写,去掉首尾空白并合并连续空白,所以"Foo","foo"与"foo "共用一个条目.
+ * 注意检测方法看到的是归一化之后的文本,所以结果可能与直接检测不同(例如optimaize会忽略全大写的单词,转换小写之后就不再忽略).
+ * {@link LanguageDetector}本身会转换小写与合并空白,可以使用{@link #NORMALIZER}.
+ * 可以包装任意检测方法,如{@link LanguageDetector#detectLanguage(String)},{@link CascadeLanguageDetector#detectLanguage(String)}或者{@link com.optimaize.langdetect.LanguageDetector#getProbabilities(CharSequence)}.
+ *
+ * 淘汰策略为W-TinyLFU:
+ * 新条目先进入窗口(LRU,1%容量),离开窗口时与主区(SLRU,保护区占80%)的淘汰候选比较访问频率,频率更高者留下.
+ * 访问频率由Count-Min Sketch估计(每个计数4位,累计次数达到容量的10倍时减半),所以只出现一次的文本不会挤掉热点文本.
+ *
+ * 按文本哈希分段加锁,检测在锁外执行(同一文本并发未命中时可能重复检测).
+ * 超过长度上限的文本(归一化之后)不缓存,直接检测并计为未命中.
+ * 过期按写入时刻与当前时刻之差判断,过期时间很长(如按天或者Long.MAX_VALUE)时也不会溢出.
+ * 结果会被共享,调用方不能修改.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ * @param <V> 检测结果(允许为null)
+ */
+public class DetectionCache<V> {
+
+    /** 不归一化 */
+    public final static Function<String, String> IDENTITY = Function.identity();
+
+    /** 转换小写,去掉首尾空白并合并连续空白为一个空格 */
+    public final static Function<String, String> NORMALIZER = DetectionCache::normalize;
+
+    /** 每段的最小容量 */
+    private final static int MINIMUM_SEGMENT = 64;
+
+    private final static byte WINDOW = 0;
+
+    private final static byte PROBATION = 1;
+
+    private final static byte PROTECT = 2;
+
+    /** 检测方法 */
+    private final Function<String, V> detector;
+
+    /** 归一化方法 */
+    private final Function<String, String> normalizer;
+
+    /** 文本长度上限 */
+    private final int length;
+
+    /** 过期时间(纳秒,0表示不过期) */
+    private final long expiration;
+
+    private final Segment<V>[] segments;
+
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param detector 检测方法
+     * @param capacity 容量
+     * @param length 文本长度上限
+     */
+    public DetectionCache(Function<String, V> detector, int capacity, int length) {
+        this(detector, IDENTITY, capacity, length, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param detector 检测方法
+     * @param normalizer 归一化方法
+     * @param capacity 容量
+     * @param length 文本长度上限
+     */
+    public DetectionCache(Function<String, V> detector, Function<String, String> normalizer, int capacity, int length) {
+        this(detector, normalizer, capacity, length, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param detector 检测方法
+     * @param capacity 容量
+     * @param length 文本长度上限
+     * @param expiration 写入之后的过期时间(重新装载语言档案时避免使用旧结果),0表示不过期
+     * @param unit 过期时间的单位
+     */
+    public DetectionCache(Function<String, V> detector, int capacity, int length, long expiration, TimeUnit unit) {
+        this(detector, IDENTITY, capacity, length, expiration, unit);
+    }
+
+    /**
+     * @param detector 检测方法
+     * @param normalizer 归一化方法
+     * @param capacity 容量
+     * @param length 文本长度上限
+     * @param expiration 写入之后的过期时间(重新装载语言档案时避免使用旧结果),0表示不过期
+     * @param unit 过期时间的单位
+     */
+    public DetectionCache(Function<String, V> detector, Function<String, String> normalizer, int capacity, int length, long expiration, TimeUnit unit) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("缓存容量必须为正数:" + capacity);
+        }
+        if (expiration < 0L) {
+            throw new IllegalArgumentException("过期时间不能为负数:" + expiration);
+        }
+        this.detector = detector;
+        this.normalizer = normalizer;
+        this.length = length;
+        this.expiration = unit.toNanos(expiration);
+        // 段数为2的幂,不超过处理器数量的4倍,并且每段不少于最小容量
+        int size = 1;
+        int maximum = Runtime.getRuntime().availableProcessors() * 4;
+        while (size * 2 <= maximum && capacity / (size * 2) >= MINIMUM_SEGMENT) {
+            size *= 2;
+        }
+        @SuppressWarnings("unchecked")
+        Segment<V>[] segments = (Segment<V>[]) new Segment<?>[size];
+        for (int index = 0; index < size; index++) {
+            segments[index] = new Segment<>((capacity + size - 1) / size, this.expiration);
+        }
+        this.segments = segments;
+        this.mask = size - 1;
+    }
+
+    /**
+     * 检测(命中时返回缓存的结果)
+     *
+     * @param text
+     * @return 归一化之后的文本的检测结果
+     */
+    public V detect(String text) {
+        text = normalizer.apply(text);
+        if (text.length() > length) {
+            misses.increment();
+            return detector.apply(text);
+        }
+        int hash = spread(text.hashCode());
+        Segment<V> segment = segments[hash & mask];
+        long now = expiration == 0L ? 0L : System.nanoTime();
+        synchronized (segment) {
+            Node<V> node = segment.getNode(text, hash, now);
+            if (node != null) {
+                hits.increment();
+                return node.value;
+            }
+        }
+        misses.increment();
+        V value = detector.apply(text);
+        // 从写入时开始计算过期
+        long written = expiration == 0L ? 0L : System.nanoTime();
+        synchronized (segment) {
+            int count = segment.putNode(text, hash, value, written);
+            if (count > 0) {
+                evictions.add(count);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 清空缓存(保留访问频率与计数)
+     */
+    public void invalidate() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * 获取条目数量
+     *
+     * @return
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.nodes.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 获取淘汰次数(不包含过期)
+     *
+     * @return
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * 归一化
+     *
+     * @param text
+     * @return
+     */
+    private static String normalize(String text) {
+        StringBuilder buffer = new StringBuilder(text.length());
+        boolean space = false;
+        for (int cursor = 0, size = text.length(); cursor < size;) {
+            int point = text.codePointAt(cursor);
+            cursor += Character.charCount(point);
+            if (Character.isWhitespace(point) || Character.isSpaceChar(point)) {
+                // 首部空白直接丢弃
+                space = buffer.length() > 0;
+                continue;
+            }
+            if (space) {
+                buffer.append(' ');
+                space = false;
+            }
+            buffer.appendCodePoint(Character.toLowerCase(point));
+        }
+        return buffer.toString();
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45D9F3B;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * 缓存条目(同时是队列的节点)
+     */
+    private static class Node<V> {
+
+        private String key;
+
+        private int hash;
+
+        private V value;
+
+        /** 写入时刻 */
+        private long written;
+
+        /** 所在队列 */
+        private byte queue;
+
+        private Node<V> previous, next;
+
+        /** 哨兵 */
+        private Node() {
+            this.previous = this;
+            this.next = this;
+        }
+
+        private Node(String key, int hash, V value, long written) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.written = written;
+        }
+
+        private void unlink() {
+            previous.next = next;
+            next.previous = previous;
+        }
+
+        /**
+         * 插入到哨兵之前(队尾)
+         */
+        private void linkBefore(Node<V> sentinel) {
+            previous = sentinel.previous;
+            next = sentinel;
+            previous.next = this;
+            sentinel.previous = this;
+        }
+
+    }
+
+    /**
+     * 缓存分段(访问需要持有分段的锁)
+     */
+    private static class Segment<V> {
+
+        private final HashMap<String, Node<V>> nodes = new HashMap<>();
+
+        /** 队列哨兵(队首为最久未访问) */
+        private final Node<V> window = new Node<>(), probation = new Node<>(), protect = new Node<>();
+
+        private int windowSize, probationSize, protectSize;
+
+        private final int windowCapacity, mainCapacity, protectCapacity;
+
+        private final FrequencySketch sketch;
+
+        /** 过期时间(纳秒,0表示不过期) */
+        private final long expiration;
+
+        private Segment(int capacity, long expiration) {
+            this.windowCapacity = Math.max(1, capacity / 100);
+            this.mainCapacity = Math.max(1, capacity - windowCapacity);
+            this.protectCapacity = mainCapacity * 4 / 5;
+            this.sketch = new FrequencySketch(capacity);
+            this.expiration = expiration;
+        }
+
+        private Node<V> getNode(String key, int hash, long now) {
+            sketch.increment(hash);
+            Node<V> node = nodes.get(key);
+            if (node == null) {
+                return null;
+            }
+            // System.nanoTime只能比较差值
+            if (expiration != 0L && now - node.written >= expiration) {
+                removeNode(node);
+                return null;
+            }
+            switch (node.queue) {
+            case WINDOW:
+                node.unlink();
+                node.linkBefore(window);
+                break;
+            case PROBATION:
+                // 再次访问时晋升到保护区
+                node.unlink();
+                probationSize--;
+                node.queue = PROTECT;
+                node.linkBefore(protect);
+                protectSize++;
+                while (protectSize > protectCapacity) {
+                    demote();
+                }
+                break;
+            default:
+                node.unlink();
+                node.linkBefore(protect);
+                break;
+            }
+            return node;
+        }
+
+        /**
+         * @return 淘汰数量
+         */
+        private int putNode(String key, int hash, V value, long written) {
+            Node<V> node = nodes.get(key);
+            if (node != null) {
+                node.value = value;
+                node.written = written;
+                return 0;
+            }
+            node = new Node<>(key, hash, value, written);
+            node.queue = WINDOW;
+            node.linkBefore(window);
+            windowSize++;
+            nodes.put(key, node);
+
+            int count = 0;
+            while (windowSize > windowCapacity) {
+                Node<V> candidate = window.next;
+                candidate.unlink();
+                windowSize--;
+                candidate.queue = PROBATION;
+                if (probationSize + protectSize < mainCapacity) {
+                    candidate.linkBefore(probation);
+                    probationSize++;
+                    continue;
+                }
+                if (probationSize == 0) {
+                    demote();
+                }
+                Node<V> victim = probation.next;
+                // 频率相同时保留主区的条目
+                if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                    removeNode(victim);
+                    candidate.linkBefore(probation);
+                    probationSize++;
+                } else {
+                    nodes.remove(candidate.key);
+                }
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * 保护区最久未访问的条目降级到试用区
+         */
+        private void demote() {
+            Node<V> node = protect.next;
+            node.unlink();
+            protectSize--;
+            node.queue = PROBATION;
+            node.linkBefore(probation);
+            probationSize++;
+        }
+
+        private void removeNode(Node<V> node) {
+            node.unlink();
+            switch (node.queue) {
+            case WINDOW:
+                windowSize--;
+                break;
+            case PROBATION:
+                probationSize--;
+                break;
+            default:
+                protectSize--;
+                break;
+            }
+            nodes.remove(node.key);
+        }
+
+        private void clear() {
+            nodes.clear();
+            window.previous = window;
+            window.next = window;
+            probation.previous = probation;
+            probation.next = probation;
+            protect.previous = protect;
+            protect.next = protect;
+            windowSize = 0;
+            probationSize = 0;
+            protectSize = 0;
+        }
+
+    }
+
+    /**
+     * 频率草图
+     *
+     * <pre>
+     * 每个long包含16个4位计数,每个哈希对应4个计数,频率为其中的最小值.
+     * </pre>
+     */
+    private static class FrequencySketch {
+
+        private final static long[] SEEDS = { 0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+
+        private final static long HALF = 0x7777777777777777L;
+
+        private final long[] table;
+
+        private final int mask;
+
+        /** 累计次数达到样本数量时减半 */
+        private final int sample;
+
+        private int size;
+
+        private FrequencySketch(int capacity) {
+            int length = 8;
+            while (length < capacity) {
+                length *= 2;
+            }
+            this.table = new long[length];
+            this.mask = length - 1;
+            this.sample = capacity * 10;
+        }
+
+        private static long mix(int hash, int seed) {
+            long value = (hash + SEEDS[seed]) * SEEDS[seed];
+            return value ^ (value >>> 32);
+        }
+
+        private void increment(int hash) {
+            boolean added = false;
+            for (int seed = 0; seed < SEEDS.length; seed++) {
+                long value = mix(hash, seed);
+                int index = (int) value & mask;
+                int offset = ((int) (value >>> 40) & 15) << 2;
+                if (((table[index] >>> offset) & 15L) < 15L) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size >= sample) {
+                for (int index = 0; index < table.length; index++) {
+                    table[index] = (table[index] >>> 1) & HALF;
+                }
+                size /= 2;
+            }
+        }
+
+        private int frequency(int hash) {
+            int frequency = 15;
+            for (int seed = 0; seed < SEEDS.length; seed++) {
+                long value = mix(hash, seed);
+                int index = (int) value & mask;
+                int offset = ((int) (value >>> 40) & 15) << 2;
+                frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 15L));
+            }
+            return frequency;
+        }
+
+    }
+
+}
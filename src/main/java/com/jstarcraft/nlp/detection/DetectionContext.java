@@ -0,0 +1,68 @@
+package com.jstarcraft.nlp.detection;
+
+/**
+ * 检测上下文
+ *
+ * <pre>
+ * 每个线程复用的缓冲区,避免批量检测时每次调用都分配数组.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+class DetectionContext {
+
+    /** 类别次数 */
+    int[] categories = new int[0];
+
+    /** 文字次数 */
+    int[] counts = new int[0];
+
+    /** 归一化文本 */
+    char[] characters = new char[0];
+
+    /** 所有N-Gram */
+    long[] grams = new long[0];
+
+    /** 去重N-Gram */
+    long[] keys = new long[0];
+
+    /** 去重N-Gram次数 */
+    int[] tuples = new int[0];
+
+    /** 语言得分 */
+    long[] sums = new long[0];
+
+    /** 最近一次检测的置信度 */
+    double confidence;
+
+    void ensureScripts(int categorySize, int scriptSize) {
+        if (categories.length < categorySize) {
+            categories = new int[categorySize];
+        }
+        if (counts.length < scriptSize) {
+            counts = new int[scriptSize];
+        }
+    }
+
+    void ensureCharacters(int size) {
+        if (characters.length < size) {
+            characters = new char[size];
+        }
+    }
+
+    void ensureGrams(int size) {
+        if (grams.length < size) {
+            grams = new long[size];
+            keys = new long[size];
+            tuples = new int[size];
+        }
+    }
+
+    void ensureLanguages(int size) {
+        if (sums.length < size) {
+            sums = new long[size];
+        }
+    }
+
+}
@@ -0,0 +1,414 @@
+package com.jstarcraft.nlp.detection;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.jstarcraft.core.common.conversion.json.JsonUtility;
+import com.jstarcraft.core.common.reflection.TypeUtility;
+import com.jstarcraft.core.utility.StringUtility;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+
+/**
+ * 检测索引
+ *
+ * <pre>
+ * 将N-Gram压缩为long作为键,倒排到(语言,排名)列表.
+ * 单次遍历文本的N-Gram即可为文字下的所有语言打分,与逐个语言查询{@link DetectionTrie}的得分一致.
+ * 所有数据保存在基本类型缓冲区,可以直接映射{@link DetectionModel}文件.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class DetectionIndex {
+
+    /** N-Gram最大长度 */
+    private final static int MAXIMUM_LENGTH = 3;
+
+    /** 哈希乘数 */
+    private final static long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /** 文字 => 语言编号范围[from, to) */
+    private Map<String, int[]> scripts;
+
+    /** 文字 => 语言名称 */
+    private Map<String, String[]> names;
+
+    /** 开放寻址哈希表的N-Gram(0表示空槽) */
+    private LongBuffer keys;
+
+    /** 开放寻址哈希表的倒排位置 */
+    private IntBuffer positions;
+
+    /** 倒排位置 => 倒排起点(最后一个元素为终点) */
+    private IntBuffer offsets;
+
+    /** 倒排语言编号(每个N-Gram内有序) */
+    private IntBuffer languages;
+
+    /** 倒排排名 */
+    private IntBuffer ranks;
+
+    DetectionIndex(Map<String, int[]> scripts, Map<String, String[]> names, LongBuffer keys, IntBuffer positions, IntBuffer offsets, IntBuffer languages, IntBuffer ranks) {
+        this.scripts = scripts;
+        this.names = names;
+        this.keys = keys;
+        this.positions = positions;
+        this.offsets = offsets;
+        this.languages = languages;
+        this.ranks = ranks;
+    }
+
+    /**
+     * 压缩N-Gram
+     *
+     * @param gram
+     * @return 超过最大长度时返回-1
+     */
+    static long getKey(CharSequence gram) {
+        int length = gram.length();
+        if (length > MAXIMUM_LENGTH) {
+            return -1L;
+        }
+        long key = length;
+        for (int index = 0; index < length; index++) {
+            key = (key << Character.SIZE) | gram.charAt(index);
+        }
+        return key;
+    }
+
+    /**
+     * 压缩N-Gram
+     *
+     * @param characters
+     * @param offset
+     * @param length
+     * @return 超过最大长度时返回-1
+     */
+    static long getKey(char[] characters, int offset, int length) {
+        if (length > MAXIMUM_LENGTH) {
+            return -1L;
+        }
+        long key = length;
+        for (int index = 0; index < length; index++) {
+            key = (key << Character.SIZE) | characters[offset + index];
+        }
+        return key;
+    }
+
+    private static int getSlot(long key, int mask) {
+        return (int) ((key * HASH_MULTIPLIER) >>> Integer.SIZE) & mask;
+    }
+
+    /**
+     * 获取倒排位置
+     *
+     * @param key
+     * @return 不存在时返回-1
+     */
+    private int getPosition(long key) {
+        int mask = keys.limit() - 1;
+        for (int slot = getSlot(key, mask);; slot = (slot + 1) & mask) {
+            long current = keys.get(slot);
+            if (current == key) {
+                return positions.get(slot);
+            }
+            if (current == 0L) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 获取文字下的语言
+     *
+     * @param script
+     * @return 文字只有单一语言时返回null(只读)
+     */
+    public String[] getLanguages(String script) {
+        return names.get(script);
+    }
+
+    /**
+     * 获取所有文字
+     *
+     * @return
+     */
+    public Set<String> getScripts() {
+        return names.keySet();
+    }
+
+    /**
+     * 为文字下的所有语言打分
+     *
+     * @param script
+     * @param tuples N-Gram => 出现次数
+     * @param difference N-Gram不存在时的差异
+     * @param scores 得分(与{@link #getLanguages(String)}对应)
+     */
+    public void scoreLanguages(String script, Object2IntMap<CharSequence> tuples, int difference, double[] scores) {
+        int size = tuples.size();
+        long[] keys = new long[size];
+        int[] counts = new int[size];
+        int index = 0;
+        for (Object2IntMap.Entry<CharSequence> tuple : tuples.object2IntEntrySet()) {
+            keys[index] = getKey(tuple.getKey());
+            counts[index] = tuple.getIntValue();
+            index++;
+        }
+        long[] sums = new long[names.get(script).length];
+        scoreLanguages(script, keys, counts, size, difference, sums);
+        for (index = 0; index < sums.length; index++) {
+            scores[index] = sums[index];
+        }
+    }
+
+    /**
+     * 为文字下的所有语言打分
+     *
+     * @param script
+     * @param keys 压缩的N-Gram(负数表示不可能命中)
+     * @param counts 出现次数
+     * @param size N-Gram数量
+     * @param difference N-Gram不存在时的差异
+     * @param sums 得分(与{@link #getLanguages(String)}对应)
+     */
+    void scoreLanguages(String script, long[] keys, int[] counts, int size, int difference, long[] sums) {
+        int[] range = scripts.get(script);
+        int from = range[0], to = range[1];
+        long base = (long) size * difference;
+        for (int index = 0; index < to - from; index++) {
+            sums[index] = base;
+        }
+        for (int index = 0; index < size; index++) {
+            long key = keys[index];
+            int position = key < 0L ? -1 : getPosition(key);
+            if (position < 0) {
+                continue;
+            }
+            int count = counts[index];
+            for (int cursor = offsets.get(position), end = offsets.get(position + 1); cursor < end; cursor++) {
+                int language = languages.get(cursor);
+                if (language < from) {
+                    continue;
+                }
+                if (language >= to) {
+                    break;
+                }
+                int distance = count - ranks.get(cursor) - 1;
+                if (distance < 0) {
+                    distance = -distance;
+                }
+                // 命中时以实际差异替换默认差异
+                sums[language - from] += distance - difference;
+            }
+        }
+    }
+
+    /**
+     * 获取文字下的语言编号范围
+     *
+     * @param script
+     * @return [from, to)
+     */
+    int[] getRange(String script) {
+        return scripts.get(script);
+    }
+
+    /**
+     * 获取语言数量
+     *
+     * @return
+     */
+    int getLanguageSize() {
+        int size = 0;
+        for (int[] range : scripts.values()) {
+            size = Math.max(size, range[1]);
+        }
+        return size;
+    }
+
+    /**
+     * 根据N-Gram出现次数的变化增量更新所有语言的得分
+     *
+     * <pre>
+     * sums只记录命中时实际差异与默认差异之差,语言的得分为(N-Gram数量 * 默认差异 + sums[语言编号]).
+     * </pre>
+     *
+     * @param key 压缩的N-Gram
+     * @param before 原出现次数(0表示不存在)
+     * @param after 新出现次数(0表示不存在)
+     * @param difference N-Gram不存在时的差异
+     * @param sums 得分差(按语言编号,长度为{@link #getLanguageSize()})
+     */
+    void updateLanguages(long key, int before, int after, int difference, long[] sums) {
+        int position = getPosition(key);
+        if (position < 0) {
+            return;
+        }
+        for (int cursor = offsets.get(position), end = offsets.get(position + 1); cursor < end; cursor++) {
+            int rank = ranks.get(cursor);
+            long change = 0L;
+            if (before > 0) {
+                change -= Math.abs(before - rank - 1) - difference;
+            }
+            if (after > 0) {
+                change += Math.abs(after - rank - 1) - difference;
+            }
+            sums[languages.get(cursor)] += change;
+        }
+    }
+
+    void storeIndex(DataOutputStream stream) throws IOException {
+        stream.writeInt(scripts.size());
+        for (Entry<String, int[]> term : scripts.entrySet()) {
+            DetectionModel.writeString(stream, term.getKey());
+            DetectionModel.writeInts(stream, term.getValue());
+            String[] languages = names.get(term.getKey());
+            stream.writeInt(languages.length);
+            for (String language : languages) {
+                DetectionModel.writeString(stream, language);
+            }
+        }
+        DetectionModel.writeLongs(stream, keys);
+        DetectionModel.writeInts(stream, positions);
+        DetectionModel.writeInts(stream, offsets);
+        DetectionModel.writeInts(stream, languages);
+        DetectionModel.writeInts(stream, ranks);
+    }
+
+    static DetectionIndex loadIndex(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        Map<String, int[]> scripts = new HashMap<>();
+        Map<String, String[]> names = new HashMap<>();
+        for (int index = 0; index < size; index++) {
+            String script = DetectionModel.readString(buffer);
+            IntBuffer range = DetectionModel.readInts(buffer);
+            scripts.put(script, new int[] { range.get(0), range.get(1) });
+            String[] languages = new String[buffer.getInt()];
+            for (int cursor = 0; cursor < languages.length; cursor++) {
+                languages[cursor] = DetectionModel.readString(buffer);
+            }
+            names.put(script, languages);
+        }
+        LongBuffer keys = DetectionModel.readLongs(buffer);
+        IntBuffer positions = DetectionModel.readInts(buffer);
+        IntBuffer offsets = DetectionModel.readInts(buffer);
+        IntBuffer languages = DetectionModel.readInts(buffer);
+        IntBuffer ranks = DetectionModel.readInts(buffer);
+        return new DetectionIndex(Collections.unmodifiableMap(scripts), Collections.unmodifiableMap(names), keys, positions, offsets, languages, ranks);
+    }
+
+    /**
+     * 装载词典
+     *
+     * @param stream
+     * @return 文字 => 语言 => 以'|'分隔的N-Gram(按排名)
+     */
+    static LinkedHashMap<String, LinkedHashMap<String, String>> loadDictionaries(InputStream stream) {
+        try (DataInputStream buffer = new DataInputStream(stream)) {
+            byte[] data = new byte[buffer.available()];
+            buffer.readFully(data);
+            String json = new String(data, StringUtility.CHARSET);
+            // 兼容\x转义ASCII字符
+            json = StringUtility.unescapeJava(json);
+            Type type = TypeUtility.parameterize(LinkedHashMap.class, String.class, LinkedHashMap.class);
+            return JsonUtility.string2Object(json, type);
+        } catch (Exception exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    public static final DetectionIndex loadIndex(InputStream stream) {
+        try {
+            LinkedHashMap<String, LinkedHashMap<String, String>> dictionaries = loadDictionaries(stream);
+            Map<String, int[]> scripts = new HashMap<>();
+            Map<String, String[]> names = new HashMap<>();
+            // N-Gram => (语言,排名)
+            Long2IntMap indexes = new Long2IntOpenHashMap();
+            indexes.defaultReturnValue(-1);
+            List<IntArrayList> postings = new ArrayList<>();
+            int language = 0;
+            for (Entry<String, LinkedHashMap<String, String>> scriptTerm : dictionaries.entrySet()) {
+                String script = scriptTerm.getKey();
+                LinkedHashMap<String, String> languages = scriptTerm.getValue();
+                int from = language;
+                for (Entry<String, String> languageTerm : languages.entrySet()) {
+                    // 与DetectionTrie保持一致,重复的N-Gram以最后的排名为准
+                    Long2IntMap dictionary = new Long2IntOpenHashMap();
+                    int weight = 0;
+                    for (String word : languageTerm.getValue().split("\\|")) {
+                        long key = getKey(word);
+                        if (key < 0L) {
+                            throw new IllegalArgumentException("N-Gram长度超过" + MAXIMUM_LENGTH + ":" + word);
+                        }
+                        dictionary.put(key, weight++);
+                    }
+                    for (Long2IntMap.Entry term : dictionary.long2IntEntrySet()) {
+                        int position = indexes.get(term.getLongKey());
+                        if (position < 0) {
+                            position = postings.size();
+                            indexes.put(term.getLongKey(), position);
+                            postings.add(new IntArrayList());
+                        }
+                        IntArrayList posting = postings.get(position);
+                        posting.add(language);
+                        posting.add(term.getIntValue());
+                    }
+                    language++;
+                }
+                scripts.put(script, new int[] { from, language });
+                names.put(script, languages.keySet().toArray(new String[languages.size()]));
+            }
+
+            int size = postings.size();
+            // 装载因子不超过0.5
+            int capacity = Integer.highestOneBit(Math.max(size, 1)) << 2;
+            long[] keys = new long[capacity];
+            int[] positions = new int[capacity];
+            for (Long2IntMap.Entry term : indexes.long2IntEntrySet()) {
+                int slot = getSlot(term.getLongKey(), capacity - 1);
+                while (keys[slot] != 0L) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = term.getLongKey();
+                positions[slot] = term.getIntValue();
+            }
+            int[] offsets = new int[size + 1];
+            for (int position = 0; position < size; position++) {
+                offsets[position + 1] = offsets[position] + postings.get(position).size() / 2;
+            }
+            int[] languages = new int[offsets[size]];
+            int[] ranks = new int[offsets[size]];
+            for (int position = 0; position < size; position++) {
+                IntArrayList posting = postings.get(position);
+                for (int index = 0, cursor = offsets[position]; index < posting.size(); index += 2, cursor++) {
+                    languages[cursor] = posting.getInt(index);
+                    ranks[cursor] = posting.getInt(index + 1);
+                }
+            }
+            return new DetectionIndex(Collections.unmodifiableMap(scripts), Collections.unmodifiableMap(names), LongBuffer.wrap(keys), IntBuffer.wrap(positions), IntBuffer.wrap(offsets), IntBuffer.wrap(languages), IntBuffer.wrap(ranks));
+        } catch (Exception exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+package com.jstarcraft.nlp.detection;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.jstarcraft.core.common.conversion.json.JsonUtility;
+import com.jstarcraft.core.common.reflection.TypeUtility;
+import com.jstarcraft.core.utility.StringUtility;
+
+/**
+ * 检测模型
+ *
+ * <pre>
+ * 由{@link DetectionScript}与{@link DetectionIndex}组成的预编译二进制模型.
+ * 构建时通过{@link #main(String[])}编译为model-*.bin,运行时按层级延迟装载,不需要解析JSON与构建双数组字典树.
+ * 只有文件系统中的模型会被内存映射,jar中的模型无法映射,会被完整读入堆内存.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class DetectionModel {
+
+    /** 魔数(JSDM) */
+    private final static int MAGIC = 0x4A53444D;
+
+    /** 版本 */
+    private final static int VERSION = 1;
+
+    /** 层级 */
+    private final static String[] TIERS = { "82", "187", "406" };
+
+    private static class Language82 {
+
+        private final static DetectionModel MODEL = loadModel(TIERS[0]);
+
+    }
+
+    private static class Language187 {
+
+        private final static DetectionModel MODEL = loadModel(TIERS[1]);
+
+    }
+
+    private static class Language406 {
+
+        private final static DetectionModel MODEL = loadModel(TIERS[2]);
+
+    }
+
+    /** 检测文字 */
+    private DetectionScript script;
+
+    /** 检测索引 */
+    private DetectionIndex index;
+
+    public DetectionModel(DetectionScript script, DetectionIndex index) {
+        this.script = script;
+        this.index = index;
+    }
+
+    public DetectionScript getScript() {
+        return script;
+    }
+
+    public DetectionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 获取82种语言的模型(首次访问时装载)
+     *
+     * @return
+     */
+    public static DetectionModel getLanguage82() {
+        return Language82.MODEL;
+    }
+
+    /**
+     * 获取187种语言的模型(首次访问时装载)
+     *
+     * @return
+     */
+    public static DetectionModel getLanguage187() {
+        return Language187.MODEL;
+    }
+
+    /**
+     * 获取406种语言的模型(首次访问时装载)
+     *
+     * @return
+     */
+    public static DetectionModel getLanguage406() {
+        return Language406.MODEL;
+    }
+
+    /**
+     * 保存模型
+     *
+     * @param stream
+     */
+    public void storeModel(OutputStream stream) {
+        try {
+            DataOutputStream buffer = new DataOutputStream(new BufferedOutputStream(stream));
+            buffer.writeInt(MAGIC);
+            buffer.writeInt(VERSION);
+            script.storeScript(buffer);
+            index.storeIndex(buffer);
+            buffer.flush();
+        } catch (Exception exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    /**
+     * 装载模型
+     *
+     * @param buffer
+     * @return
+     */
+    public static DetectionModel loadModel(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("检测模型格式不正确");
+        }
+        if (buffer.getInt() != VERSION) {
+            throw new IllegalArgumentException("检测模型版本不一致");
+        }
+        DetectionScript script = DetectionScript.loadScript(buffer);
+        DetectionIndex index = DetectionIndex.loadIndex(buffer);
+        return new DetectionModel(script, index);
+    }
+
+    /**
+     * 装载模型(内存映射)
+     *
+     * @param path
+     * @return
+     */
+    public static DetectionModel loadModel(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return loadModel(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    /**
+     * 编译模型
+     *
+     * @param regulation 检测规则
+     * @param dictionary 检测词典
+     * @return
+     */
+    public static DetectionModel compileModel(InputStream regulation, InputStream dictionary) {
+        // 与DetectionPattern.loadPatterns保持一致的迭代顺序,但是不构造DetectionPattern,避免触发其静态初始化装载所有层级.
+        Map<String, String> regulations = new HashMap<>();
+        for (Entry<String, String> term : loadRegulations(regulation).entrySet()) {
+            regulations.put(term.getKey(), term.getValue());
+        }
+        int size = regulations.size();
+        DetectionScript script = new DetectionScript(regulations.keySet().toArray(new String[size]), regulations.values().toArray(new String[size]));
+        DetectionIndex index = DetectionIndex.loadIndex(dictionary);
+        return new DetectionModel(script, index);
+    }
+
+    private static DetectionModel loadModel(String tier) {
+        try {
+            URL url = DetectionModel.class.getResource("model-" + tier + ".bin");
+            if (url == null) {
+                // 预编译模型不存在时从规则与词典编译
+                try (InputStream regulation = DetectionModel.class.getResourceAsStream("regulation-" + tier + ".json"); InputStream dictionary = DetectionModel.class.getResourceAsStream("dictionary-" + tier + ".json")) {
+                    return compileModel(regulation, dictionary);
+                }
+            }
+            if ("file".equals(url.getProtocol())) {
+                return loadModel(Paths.get(url.toURI()));
+            }
+            // jar中的资源无法映射,只能读入堆内存
+            try (InputStream stream = url.openStream()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] data = new byte[8192];
+                for (int size = stream.read(data); size >= 0; size = stream.read(data)) {
+                    buffer.write(data, 0, size);
+                }
+                return loadModel(ByteBuffer.wrap(buffer.toByteArray()));
+            }
+        } catch (Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * 装载规则
+     *
+     * @param stream
+     * @return 文字 => 正则表达式
+     */
+    static LinkedHashMap<String, String> loadRegulations(InputStream stream) {
+        try (DataInputStream buffer = new DataInputStream(stream)) {
+            byte[] data = new byte[buffer.available()];
+            buffer.readFully(data);
+            String json = new String(data, StringUtility.CHARSET);
+            // 兼容\x转义ASCII字符
+            json = StringUtility.unescapeJava(json);
+            Type type = TypeUtility.parameterize(LinkedHashMap.class, String.class, String.class);
+            return JsonUtility.string2Object(json, type);
+        } catch (Exception exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    static void writeString(DataOutputStream stream, String string) throws IOException {
+        byte[] data = string.getBytes(StringUtility.CHARSET);
+        stream.writeInt(data.length);
+        stream.write(data);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        return new String(data, StringUtility.CHARSET);
+    }
+
+    static void writeInts(DataOutputStream stream, int[] values) throws IOException {
+        stream.writeInt(values.length);
+        for (int value : values) {
+            stream.writeInt(value);
+        }
+    }
+
+    static void writeInts(DataOutputStream stream, IntBuffer values) throws IOException {
+        int size = values.limit();
+        stream.writeInt(size);
+        for (int index = 0; index < size; index++) {
+            stream.writeInt(values.get(index));
+        }
+    }
+
+    static void writeLongs(DataOutputStream stream, LongBuffer values) throws IOException {
+        int size = values.limit();
+        stream.writeInt(size);
+        for (int index = 0; index < size; index++) {
+            stream.writeLong(values.get(index));
+        }
+    }
+
+    static void writeChars(DataOutputStream stream, CharBuffer values) throws IOException {
+        int size = values.limit();
+        stream.writeInt(size);
+        for (int index = 0; index < size; index++) {
+            stream.writeChar(values.get(index));
+        }
+    }
+
+    /**
+     * 截取缓冲区(不复制数据)
+     *
+     * @param buffer
+     * @param bytes
+     * @return
+     */
+    private static ByteBuffer sliceBuffer(ByteBuffer buffer, int bytes) {
+        ByteBuffer slice = buffer.slice().order(buffer.order());
+        slice.limit(bytes);
+        buffer.position(buffer.position() + bytes);
+        return slice;
+    }
+
+    static IntBuffer readInts(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        return sliceBuffer(buffer, size * Integer.BYTES).asIntBuffer();
+    }
+
+    static LongBuffer readLongs(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        return sliceBuffer(buffer, size * Long.BYTES).asLongBuffer();
+    }
+
+    static CharBuffer readChars(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        return sliceBuffer(buffer, size * Character.BYTES).asCharBuffer();
+    }
+
+    /**
+     * 编译所有层级的模型
+     *
+     * @param arguments 输出目录
+     */
+    public static void main(String[] arguments) throws Exception {
+        Path directory = Paths.get(arguments[0]);
+        Files.createDirectories(directory);
+        for (String tier : TIERS) {
+            try (InputStream regulation = DetectionModel.class.getResourceAsStream("regulation-" + tier + ".json"); InputStream dictionary = DetectionModel.class.getResourceAsStream("dictionary-" + tier + ".json")) {
+                DetectionModel model = compileModel(regulation, dictionary);
+                try (OutputStream stream = Files.newOutputStream(directory.resolve("model-" + tier + ".bin"))) {
+                    model.storeModel(stream);
+                }
+            }
+        }
+    }
+
+}
@@ -1,8 +1,6 @@
 package com.jstarcraft.nlp.detection;
 
-import java.io.DataInputStream;
 import java.io.InputStream;
-import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -10,10 +8,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
-import com.jstarcraft.core.common.conversion.json.JsonUtility;
-import com.jstarcraft.core.common.reflection.TypeUtility;
-import com.jstarcraft.core.utility.StringUtility;
-
 /**
  * 检测规则
  * 
@@ -62,15 +56,9 @@ public class DetectionPattern {
     }
 
     public static final Map<String, DetectionPattern> loadPatterns(InputStream stream) {
-        try (DataInputStream buffer = new DataInputStream(stream)) {
+        try {
             Map<String, DetectionPattern> detections = new HashMap<>();
-            byte[] data = new byte[buffer.available()];
-            buffer.readFully(data);
-            String json = new String(data, StringUtility.CHARSET);
-            // 兼容\x转义ASCII字符
-            json = StringUtility.unescapeJava(json);
-            Type type = TypeUtility.parameterize(LinkedHashMap.class, String.class, String.class);
-            LinkedHashMap<String, String> regulations = JsonUtility.string2Object(json, type);
+            LinkedHashMap<String, String> regulations = DetectionModel.loadRegulations(stream);
 
             for (Entry<String, String> scriptTerm : regulations.entrySet()) {
                 String script = scriptTerm.getKey();
@@ -0,0 +1,337 @@
+package com.jstarcraft.nlp.detection;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 检测文字
+ *
+ * <pre>
+ * 将检测规则编译为码点到文字的查找表,单次遍历文本即可统计所有文字的出现次数.
+ * 结果与逐个规则执行{@link java.util.regex.Matcher#find()}一致.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class DetectionScript {
+
+    /** 分块位数 */
+    private final static int BLOCK_SHIFT = 8;
+
+    /** 分块大小 */
+    private final static int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /** 分块掩码 */
+    private final static int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /** 文字名称(与规则的迭代顺序一致) */
+    private String[] names;
+
+    /** 码点分块 => 类别分块 */
+    private CharBuffer blocks;
+
+    /** 码点 => 类别 */
+    private CharBuffer categories;
+
+    /** 类别 => 文字 */
+    private int[][] scripts;
+
+    DetectionScript(String[] names, CharBuffer blocks, CharBuffer categories, int[][] scripts) {
+        this.names = names;
+        this.blocks = blocks;
+        this.categories = categories;
+        this.scripts = scripts;
+    }
+
+    public DetectionScript(Map<String, DetectionPattern> patterns) {
+        this(patterns.values().stream().map(DetectionPattern::getName).toArray(String[]::new), patterns.values().stream().map((pattern) -> pattern.getPattern().pattern()).toArray(String[]::new));
+    }
+
+    /**
+     * 从正则表达式构建(不需要{@link DetectionPattern})
+     *
+     * @param names       文字名称
+     * @param regulations 正则表达式(与文字名称对应)
+     */
+    DetectionScript(String[] names, String[] regulations) {
+        int size = names.length;
+        this.names = names.clone();
+        BitSet[] points = new BitSet[size];
+        BitSet union = new BitSet(Character.MAX_CODE_POINT + 1);
+        int index = 0;
+        for (String regulation : regulations) {
+            points[index] = parsePattern(regulation);
+            union.or(points[index]);
+            index++;
+        }
+
+        // 相同文字组合的码点共享同一个类别,类别0表示不属于任何文字.
+        Map<BitSet, Character> indexes = new HashMap<>();
+        List<int[]> combinations = new ArrayList<>();
+        indexes.put(new BitSet(), (char) 0);
+        combinations.add(new int[0]);
+        char[] categories = new char[Character.MAX_CODE_POINT + 1];
+        for (int point = union.nextSetBit(0); point >= 0; point = union.nextSetBit(point + 1)) {
+            BitSet combination = new BitSet(size);
+            for (index = 0; index < size; index++) {
+                if (points[index].get(point)) {
+                    combination.set(index);
+                }
+            }
+            Character category = indexes.get(combination);
+            if (category == null) {
+                category = (char) combinations.size();
+                indexes.put(combination, category);
+                combinations.add(combination.stream().toArray());
+            }
+            categories[point] = category;
+        }
+        this.scripts = combinations.toArray(new int[combinations.size()][]);
+
+        // 两级查找表,内容相同的分块只保存一份.
+        int count = (Character.MAX_CODE_POINT + 1) >>> BLOCK_SHIFT;
+        char[] blocks = new char[count];
+        Map<String, Character> shares = new HashMap<>();
+        StringBuilder buffer = new StringBuilder();
+        for (int block = 0; block < count; block++) {
+            String key = new String(categories, block << BLOCK_SHIFT, BLOCK_SIZE);
+            Character share = shares.get(key);
+            if (share == null) {
+                share = (char) shares.size();
+                shares.put(key, share);
+                buffer.append(key);
+            }
+            blocks[block] = share;
+        }
+        this.blocks = CharBuffer.wrap(blocks);
+        this.categories = CharBuffer.wrap(buffer.toString().toCharArray());
+    }
+
+    /**
+     * 解析规则
+     *
+     * <pre>
+     * 规则由'|'分隔的若干分支组成,每个分支是字符类或者字面字符的序列.
+     * 由于正则表达式按码点匹配文本,由多个代理项组成的分支永远无法匹配,所以忽略.
+     * </pre>
+     *
+     * @param regulation
+     * @return
+     */
+    private static BitSet parsePattern(String regulation) {
+        BitSet points = new BitSet(Character.MAX_CODE_POINT + 1);
+        int[] codes = regulation.codePoints().toArray();
+        int cursor = 0;
+        while (cursor <= codes.length) {
+            List<BitSet> atoms = new ArrayList<>();
+            while (cursor < codes.length && codes[cursor] != '|') {
+                BitSet atom = new BitSet();
+                if (codes[cursor] == '[') {
+                    cursor++;
+                    while (codes[cursor] != ']') {
+                        int from = codes[cursor++];
+                        int to = from;
+                        if (codes[cursor] == '-' && codes[cursor + 1] != ']') {
+                            to = codes[cursor + 1];
+                            cursor += 2;
+                        }
+                        atom.set(from, to + 1);
+                    }
+                } else if (codes[cursor] == '\\' || codes[cursor] == '(' || codes[cursor] == ')' || codes[cursor] == '*' || codes[cursor] == '+' || codes[cursor] == '?' || codes[cursor] == '{' || codes[cursor] == '.' || codes[cursor] == '^' || codes[cursor] == '$') {
+                    throw new IllegalArgumentException("不支持的检测规则:" + regulation);
+                } else {
+                    atom.set(codes[cursor]);
+                }
+                cursor++;
+                atoms.add(atom);
+            }
+            if (atoms.size() == 1) {
+                points.or(atoms.get(0));
+            } else {
+                for (BitSet atom : atoms) {
+                    if (atom.nextSetBit(0) < Character.MIN_SURROGATE || atom.length() - 1 > Character.MAX_SURROGATE) {
+                        throw new IllegalArgumentException("不支持的检测规则:" + regulation);
+                    }
+                }
+            }
+            cursor++;
+        }
+        return points;
+    }
+
+    /**
+     * 获取文字名称
+     *
+     * @return
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * 获取类别数量
+     *
+     * @return
+     */
+    int getCategorySize() {
+        return scripts.length;
+    }
+
+    /**
+     * 获取文字数量
+     *
+     * @return
+     */
+    int getScriptSize() {
+        return names.length;
+    }
+
+    /**
+     * 获取码点的类别
+     *
+     * @param point
+     * @return 类别(0表示不属于任何文字)
+     */
+    int getCategory(int point) {
+        return this.categories.get((blocks.get(point >>> BLOCK_SHIFT) << BLOCK_SHIFT) | (point & BLOCK_MASK));
+    }
+
+    /**
+     * 统计文字
+     *
+     * @param text
+     * @param counts 每个文字的出现次数(与{@link #getNames()}对应)
+     */
+    public void countScripts(CharSequence text, int[] counts) {
+        countScripts(text, new int[scripts.length], counts);
+    }
+
+    /**
+     * 统计文字
+     *
+     * @param text
+     * @param categories 每个类别的出现次数(复用的缓冲区,长度为{@link #getCategorySize()})
+     * @param counts 每个文字的出现次数(与{@link #getNames()}对应)
+     */
+    void countScripts(CharSequence text, int[] categories, int[] counts) {
+        for (int category = 0; category < scripts.length; category++) {
+            categories[category] = 0;
+        }
+        for (int cursor = 0, size = text.length(); cursor < size;) {
+            int point = Character.codePointAt(text, cursor);
+            categories[getCategory(point)]++;
+            cursor += Character.charCount(point);
+        }
+        countScripts(categories, counts);
+    }
+
+    /**
+     * 根据类别次数统计文字
+     *
+     * @param categories 每个类别的出现次数
+     * @param counts 每个文字的出现次数(与{@link #getNames()}对应)
+     */
+    void countScripts(int[] categories, int[] counts) {
+        for (int index = 0; index < names.length; index++) {
+            counts[index] = 0;
+        }
+        for (int category = 1; category < scripts.length; category++) {
+            int count = categories[category];
+            if (count > 0) {
+                for (int script : scripts[category]) {
+                    counts[script] += count;
+                }
+            }
+        }
+    }
+
+    /**
+     * 检测出现次数最多的文字
+     *
+     * @param text
+     * @return 不存在任何文字时返回null
+     */
+    public String detectScript(CharSequence text) {
+        return detectScript(text, new int[scripts.length], new int[names.length]);
+    }
+
+    /**
+     * 检测出现次数最多的文字
+     *
+     * @param text
+     * @param categories 复用的缓冲区(长度为{@link #getCategorySize()})
+     * @param counts 复用的缓冲区(长度与{@link #getNames()}一致)
+     * @return 不存在任何文字时返回null
+     */
+    String detectScript(CharSequence text, int[] categories, int[] counts) {
+        countScripts(text, categories, counts);
+        return selectScript(counts);
+    }
+
+    /**
+     * 根据类别次数检测出现次数最多的文字
+     *
+     * <pre>
+     * 用于滑动窗口增量维护类别次数的场景.
+     * </pre>
+     *
+     * @param categories 每个类别的出现次数
+     * @param counts 复用的缓冲区(长度与{@link #getNames()}一致)
+     * @return 不存在任何文字时返回null
+     */
+    String detectScript(int[] categories, int[] counts) {
+        countScripts(categories, counts);
+        return selectScript(counts);
+    }
+
+    private String selectScript(int[] counts) {
+        int count = 0;
+        String script = null;
+        for (int index = 0; index < names.length; index++) {
+            if (counts[index] > count) {
+                count = counts[index];
+                script = names[index];
+            }
+        }
+        return script;
+    }
+
+    void storeScript(DataOutputStream stream) throws IOException {
+        stream.writeInt(names.length);
+        for (String name : names) {
+            DetectionModel.writeString(stream, name);
+        }
+        stream.writeInt(scripts.length);
+        for (int[] script : scripts) {
+            DetectionModel.writeInts(stream, script);
+        }
+        DetectionModel.writeChars(stream, blocks);
+        DetectionModel.writeChars(stream, categories);
+    }
+
+    static DetectionScript loadScript(ByteBuffer buffer) {
+        String[] names = new String[buffer.getInt()];
+        for (int index = 0; index < names.length; index++) {
+            names[index] = DetectionModel.readString(buffer);
+        }
+        int[][] scripts = new int[buffer.getInt()][];
+        for (int index = 0; index < scripts.length; index++) {
+            IntBuffer script = DetectionModel.readInts(buffer);
+            scripts[index] = new int[script.remaining()];
+            script.get(scripts[index]);
+        }
+        CharBuffer blocks = DetectionModel.readChars(buffer);
+        CharBuffer categories = DetectionModel.readChars(buffer);
+        return new DetectionScript(names, blocks, categories, scripts);
+    }
+
+}
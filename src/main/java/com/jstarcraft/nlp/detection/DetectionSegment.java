@@ -0,0 +1,71 @@
+package com.jstarcraft.nlp.detection;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 检测片段
+ * 
+ * <pre>
+ * 文本中连续属于同一种语言的区间[begin, end).
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class DetectionSegment {
+
+    private int begin;
+
+    private int end;
+
+    private Locale locale;
+
+    private double score;
+
+    DetectionSegment(int begin, int end, Locale locale, double score) {
+        this.begin = begin;
+        this.end = end;
+        this.locale = locale;
+        this.score = score;
+    }
+
+    public int getBegin() {
+        return begin;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionSegment [begin=" + begin + ", end=" + end + ", locale=" + locale.toLanguageTag() + ", score=" + score + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(begin, end, locale, score);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object)
+            return true;
+        if (object == null)
+            return false;
+        if (getClass() != object.getClass())
+            return false;
+        DetectionSegment that = (DetectionSegment) object;
+        return this.begin == that.begin && this.end == that.end && this.score == that.score && Objects.equals(this.locale, that.locale);
+    }
+
+}
@@ -1,8 +1,6 @@
 package com.jstarcraft.nlp.detection;
 
-import java.io.DataInputStream;
 import java.io.InputStream;
-import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -14,9 +12,6 @@ import java.util.TreeMap;
 
 import com.hankcs.hanlp.collection.trie.DoubleArrayTrie;
 import com.hankcs.hanlp.collection.trie.ITrie;
-import com.jstarcraft.core.common.conversion.json.JsonUtility;
-import com.jstarcraft.core.common.reflection.TypeUtility;
-import com.jstarcraft.core.utility.StringUtility;
 
 /**
  * 检测词典
@@ -66,16 +61,9 @@ public class DetectionTrie {
     }
 
     public static final Map<String, Set<DetectionTrie>> loadTries(InputStream stream) {
-        try (DataInputStream buffer = new DataInputStream(stream)) {
+        try {
             Map<String, Set<DetectionTrie>> detections = new HashMap<>();
-            byte[] data = new byte[buffer.available()];
-            buffer.readFully(data);
-            String json = new String(data, StringUtility.CHARSET);
-            // 兼容\x转义ASCII字符
-            json = StringUtility.unescapeJava(json);
-            Type type = TypeUtility.parameterize(LinkedHashMap.class, String.class, String.class);
-            type = TypeUtility.parameterize(LinkedHashMap.class, String.class, LinkedHashMap.class);
-            LinkedHashMap<String, LinkedHashMap<String, String>> dictionaries = JsonUtility.string2Object(json, type);
+            LinkedHashMap<String, LinkedHashMap<String, String>> dictionaries = DetectionIndex.loadDictionaries(stream);
 
             for (Entry<String, LinkedHashMap<String, String>> scriptTerm : dictionaries.entrySet()) {
                 Set<DetectionTrie> tries = new HashSet<>();
@@ -1,19 +1,32 @@
 package com.jstarcraft.nlp.detection;
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import com.hankcs.hanlp.collection.trie.ITrie;
 import com.jstarcraft.ai.math.algorithm.text.CharacterNgram;
 import com.jstarcraft.core.utility.StringUtility;
 
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2BooleanArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2BooleanMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
@@ -29,35 +42,141 @@ public class LanguageDetector {
 
     public final static DetectionLanguage UND = new DetectionLanguage(Locale.forLanguageTag(StringUtility.EMPTY), 1D);
 
-    private final static int DEFAULT_MINIMUM = 0;
+    final static int DEFAULT_MINIMUM = 0;
 
-    private final static int DEFAULT_MAXIMUM = 1024;
+    final static int DEFAULT_MAXIMUM = 1024;
 
     private final static int DEFAULT_DIFFERENCE = 300;
 
+    /** 提前终止时用于预估的N-Gram数量 */
+    private final static int DEFAULT_PREFIX = 16;
+
+    /** 检测片段时的窗口大小 */
+    private final static int DEFAULT_WINDOW = 64;
+
+    /** 检测片段时的步长 */
+    private final static int DEFAULT_STEP = 16;
+
     private final static Object2BooleanMap<String> DEFAULT_OPTIONS = new Object2BooleanArrayMap<>(0);
 
     private final static Pattern REPLACE = Pattern.compile("[\\u0021-\\u0040\\s]+");
 
+    /** 批量检测时每个任务的最大文本数量 */
+    private final static int BATCH_THRESHOLD = 128;
+
     /** 检测规则 */
     private Map<String, DetectionPattern> patterns;
 
+    /** 检测文字(存在时代替检测规则) */
+    private DetectionScript script;
+
     /** 检测词典 */
     private Map<String, Set<DetectionTrie>> tires;
 
+    /** 检测索引(存在时代替检测词典) */
+    private DetectionIndex index;
+
     private int minimum;
 
     private int maximum;
 
-    public LanguageDetector(Map<String, DetectionPattern> patterns, Map<String, Set<DetectionTrie>> tires) {
-        this(patterns, tires, DEFAULT_MINIMUM, DEFAULT_MAXIMUM);
-    }
+    /** 语言名称(批量检测结果的语言编号) */
+    private String[] languages;
 
-    public LanguageDetector(Map<String, DetectionPattern> patterns, Map<String, Set<DetectionTrie>> tires, int minimum, int maximum) {
+    /** 语言区域 */
+    private Locale[] locales;
+
+    /** 语言名称 => 语言编号 */
+    private Object2IntMap<String> indexes;
+
+    /** 文字 => 语言编号(与检测索引的语言顺序一致) */
+    private Map<String, int[]> mappings;
+
+    /** 线程复用的检测上下文 */
+    private ThreadLocal<DetectionContext> contexts = ThreadLocal.withInitial(DetectionContext::new);
+
+    private LanguageDetector(Map<String, DetectionPattern> patterns, DetectionScript script, Map<String, Set<DetectionTrie>> tires, DetectionIndex index, int minimum, int maximum) {
         this.patterns = patterns;
+        this.script = script;
         this.tires = tires;
+        this.index = index;
         this.minimum = minimum;
         this.maximum = maximum;
+
+        Set<String> languages = new LinkedHashSet<>();
+        Collection<String> scripts = script == null ? patterns.keySet() : Arrays.asList(script.getNames());
+        for (String name : scripts) {
+            if (index != null && index.getLanguages(name) != null) {
+                Collections.addAll(languages, index.getLanguages(name));
+            } else if (index == null && tires.get(name) != null) {
+                for (DetectionTrie trie : tires.get(name)) {
+                    languages.add(trie.getName());
+                }
+            } else {
+                languages.add(name);
+            }
+        }
+        this.languages = languages.toArray(new String[languages.size()]);
+        this.locales = new Locale[this.languages.length];
+        this.indexes = new Object2IntOpenHashMap<>();
+        this.indexes.defaultReturnValue(-1);
+        for (int language = 0; language < this.languages.length; language++) {
+            this.locales[language] = Locale.forLanguageTag(this.languages[language]);
+            this.indexes.put(this.languages[language], language);
+        }
+        this.mappings = new HashMap<>();
+        if (index != null) {
+            for (String name : scripts) {
+                String[] names = index.getLanguages(name);
+                if (names != null) {
+                    int[] mapping = new int[names.length];
+                    for (int cursor = 0; cursor < names.length; cursor++) {
+                        mapping[cursor] = indexes.getInt(names[cursor]);
+                    }
+                    mappings.put(name, mapping);
+                }
+            }
+        }
+    }
+
+    public LanguageDetector(Map<String, DetectionPattern> patterns, Map<String, Set<DetectionTrie>> tires) {
+        this(patterns, tires, DEFAULT_MINIMUM, DEFAULT_MAXIMUM);
+    }
+
+    public LanguageDetector(Map<String, DetectionPattern> patterns, Map<String, Set<DetectionTrie>> tires, int minimum, int maximum) {
+        this(patterns, null, tires, null, minimum, maximum);
+    }
+
+    public LanguageDetector(DetectionScript script, Map<String, Set<DetectionTrie>> tires) {
+        this(script, tires, DEFAULT_MINIMUM, DEFAULT_MAXIMUM);
+    }
+
+    public LanguageDetector(DetectionScript script, Map<String, Set<DetectionTrie>> tires, int minimum, int maximum) {
+        this(null, script, tires, null, minimum, maximum);
+    }
+
+    public LanguageDetector(Map<String, DetectionPattern> patterns, DetectionIndex index) {
+        this(patterns, index, DEFAULT_MINIMUM, DEFAULT_MAXIMUM);
+    }
+
+    public LanguageDetector(Map<String, DetectionPattern> patterns, DetectionIndex index, int minimum, int maximum) {
+        this(patterns, null, null, index, minimum, maximum);
+    }
+
+    public LanguageDetector(DetectionScript script, DetectionIndex index) {
+        this(script, index, DEFAULT_MINIMUM, DEFAULT_MAXIMUM);
+    }
+
+    public LanguageDetector(DetectionScript script, DetectionIndex index, int minimum, int maximum) {
+        this(null, script, null, index, minimum, maximum);
+    }
+
+    public LanguageDetector(DetectionModel model) {
+        this(model, DEFAULT_MINIMUM, DEFAULT_MAXIMUM);
+    }
+
+    public LanguageDetector(DetectionModel model, int minimum, int maximum) {
+        this(null, model.getScript(), null, model.getIndex(), minimum, maximum);
     }
 
     /**
@@ -78,7 +197,7 @@ public class LanguageDetector {
      * @return
      */
     public DetectionLanguage detectLanguage(String text, Object2BooleanMap<String> options) {
-        SortedSet<DetectionLanguage> locales = detectLanguages(text, options);
+        SortedSet<DetectionLanguage> locales = detectLanguages(text, options, 1);
         return locales.isEmpty() ? null : locales.first();
     }
 
@@ -100,24 +219,36 @@ public class LanguageDetector {
     /**
      * 获取得分
      * 
-     * @param tuples
+     * <pre>
+     * 每个N-Gram的差异都不小于0,所以部分得分是完整得分的下界.
+     * 部分得分超过上界时提前终止.
+     * </pre>
+     * 
+     * @param grams
+     * @param counts
      * @param trie
-     * @return
+     * @param from N-Gram起点
+     * @param to N-Gram终点
+     * @param score 起点之前的部分得分
+     * @param bound 上界
+     * @return 超过上界时返回部分得分
      */
-    private double getScore(Object2IntMap<CharSequence> tuples, ITrie<Integer> trie) {
-        double score = 0D;
+    private double getScore(String[] grams, int[] counts, ITrie<Integer> trie, int from, int to, double score, double bound) {
         Integer difference;
-        for (Object2IntMap.Entry<CharSequence> tuple : tuples.object2IntEntrySet()) {
-            difference = trie.get(tuple.getKey().toString());
+        for (int index = from; index < to; index++) {
+            difference = trie.get(grams[index]);
             if (difference == null) {
                 difference = DEFAULT_DIFFERENCE;
             } else {
-                difference = tuple.getIntValue() - difference - 1;
+                difference = counts[index] - difference - 1;
                 if (difference < 0) {
                     difference = -difference;
                 }
             }
             score += difference;
+            if (score > bound) {
+                return score;
+            }
         }
         return score;
     }
@@ -138,6 +269,70 @@ public class LanguageDetector {
         }
     }
 
+    /**
+     * 获取置信度
+     * 
+     * <pre>
+     * 最好语言与第二名语言的归一化得分之差,范围为[0, 1],越大越可靠.
+     * 按{@link #normalizeScores(String, SortedSet)}的方式计算第二名的归一化得分,保证与{@link #getConfidence(SortedSet)}一致.
+     * </pre>
+     * 
+     * @param length 归一化文本的长度
+     * @param best 最好语言的得分
+     * @param second 第二名语言的得分
+     * @return
+     */
+    private static double getConfidence(int length, double best, double second) {
+        double maximum = length * DEFAULT_DIFFERENCE - best;
+        double score = 1 - (second - best) / maximum;
+        return 1 - score;
+    }
+
+    /**
+     * 获取置信度
+     * 
+     * @param locales 按得分排序的语言(至少包含前两名)
+     * @return 没有语言时为0,只有一种语言时为1
+     */
+    private static double getConfidence(SortedSet<DetectionLanguage> locales) {
+        if (locales.isEmpty()) {
+            return 0D;
+        }
+        Iterator<DetectionLanguage> iterator = locales.iterator();
+        iterator.next();
+        return iterator.hasNext() ? 1 - iterator.next().getScore() : 1D;
+    }
+
+    /**
+     * 检测文字
+     * 
+     * @param text
+     * @return
+     */
+    private String detectScript(String text) {
+        if (this.script != null) {
+            return this.script.detectScript(text);
+        }
+        int count = -1;
+        String script = null;
+        for (DetectionPattern regulation : patterns.values()) {
+            Pattern pattern = regulation.getPattern();
+            Matcher matcher = pattern.matcher(text);
+            int match = 0;
+            while (matcher.find()) {
+                match++;
+            }
+            if (match > count) {
+                count = match;
+                script = regulation.getName();
+            }
+        }
+        if (script == null || count <= 0) {
+            return null;
+        }
+        return script;
+    }
+
     /**
      * 检测语言
      * 
@@ -156,6 +351,23 @@ public class LanguageDetector {
      * @return
      */
     public SortedSet<DetectionLanguage> detectLanguages(String text, Object2BooleanMap<String> options) {
+        return detectLanguages(text, options, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 检测语言
+     * 
+     * <pre>
+     * 只保留得分最好的若干语言,结果与{@link #detectLanguages(String, Object2BooleanMap)}的前若干个一致.
+     * 使用检测词典时,一旦某个语言的部分得分已经不可能进入前若干名就放弃该语言.
+     * </pre>
+     * 
+     * @param text
+     * @param options
+     * @param number 语言数量
+     * @return
+     */
+    public SortedSet<DetectionLanguage> detectLanguages(String text, Object2BooleanMap<String> options, int number) {
         SortedSet<DetectionLanguage> locales = new TreeSet<>();
 
         // 最小长度限制
@@ -183,27 +395,15 @@ public class LanguageDetector {
         /*
          * Get the script which characters occur the most in `value`.
          */
-        int count = -1;
-        String script = null;
-        for (DetectionPattern regulation : patterns.values()) {
-            Pattern pattern = regulation.getPattern();
-            Matcher matcher = pattern.matcher(text);
-            int match = 0;
-            while (matcher.find()) {
-                match++;
-            }
-            if (match > count) {
-                count = match;
-                script = regulation.getName();
-            }
-        }
-        if (script == null || count <= 0) {
+        String script = detectScript(text);
+        if (script == null) {
             return locales;
         }
 
         /* One languages exists for the most-used script. */
-        Set<DetectionTrie> dictionaries = tires.get(script);
-        if (dictionaries == null) {
+        Set<DetectionTrie> dictionaries = index == null ? tires.get(script) : null;
+        String[] languages = index == null ? null : index.getLanguages(script);
+        if (dictionaries == null && languages == null) {
             /*
              * If no matches occured, such as a digit only string, or because the language is ignored, exit with `und`.
              */
@@ -222,15 +422,86 @@ public class LanguageDetector {
         CharacterNgram ngram = new CharacterNgram(3, text);
         Object2IntMap<CharSequence> tuples = new Object2IntOpenHashMap<>();
         for (CharSequence character : ngram) {
-            count = tuples.getInt(character);
+            int count = tuples.getInt(character);
             tuples.put(character, count + 1);
         }
-        for (DetectionTrie dictionary : dictionaries) {
-            String language = dictionary.getName();
-            if (checkLanguage(language, writes, blacks)) {
-                double score = getScore(tuples, dictionary.getTrie());
-                DetectionLanguage locale = new DetectionLanguage(Locale.forLanguageTag(language), score);
-                locales.add(locale);
+        if (index == null) {
+            // 按出现次数降序处理N-Gram,使部分得分尽快逼近完整得分
+            int count = tuples.size();
+            long[] orders = new long[count];
+            String[] grams = new String[count];
+            int[] counts = new int[count];
+            int cursor = 0;
+            for (Object2IntMap.Entry<CharSequence> tuple : tuples.object2IntEntrySet()) {
+                grams[cursor] = tuple.getKey().toString();
+                counts[cursor] = tuple.getIntValue();
+                orders[cursor] = ((long) (Integer.MAX_VALUE - counts[cursor]) << Integer.SIZE) | cursor;
+                cursor++;
+            }
+            Arrays.sort(orders);
+            String[] sortGrams = new String[count];
+            int[] sortCounts = new int[count];
+            for (cursor = 0; cursor < count; cursor++) {
+                int order = (int) orders[cursor];
+                sortGrams[cursor] = grams[order];
+                sortCounts[cursor] = counts[order];
+            }
+            if (number >= dictionaries.size()) {
+                for (DetectionTrie dictionary : dictionaries) {
+                    String language = dictionary.getName();
+                    if (checkLanguage(language, writes, blacks)) {
+                        double score = getScore(sortGrams, sortCounts, dictionary.getTrie(), 0, count, 0D, Double.POSITIVE_INFINITY);
+                        DetectionLanguage locale = new DetectionLanguage(Locale.forLanguageTag(language), score);
+                        locales.add(locale);
+                    }
+                }
+            } else {
+                // 先用出现次数最多的N-Gram为所有语言预估,按预估得分由好到差完成打分,使上界尽快收紧
+                int prefix = Math.min(count, DEFAULT_PREFIX);
+                DetectionTrie[] candidates = new DetectionTrie[dictionaries.size()];
+                double[] partials = new double[candidates.length];
+                long[] sorts = new long[candidates.length];
+                int length = 0;
+                for (DetectionTrie dictionary : dictionaries) {
+                    if (checkLanguage(dictionary.getName(), writes, blacks)) {
+                        candidates[length] = dictionary;
+                        partials[length] = getScore(sortGrams, sortCounts, dictionary.getTrie(), 0, prefix, 0D, Double.POSITIVE_INFINITY);
+                        sorts[length] = ((long) partials[length] << Integer.SIZE) | length;
+                        length++;
+                    }
+                }
+                Arrays.sort(sorts, 0, length);
+                for (cursor = 0; cursor < length; cursor++) {
+                    int order = (int) sorts[cursor];
+                    // 部分得分超过第number名时不可能进入结果(同分时需要比较语言,所以不能放弃)
+                    double bound = locales.size() < number ? Double.POSITIVE_INFINITY : locales.last().getScore();
+                    if (partials[order] > bound) {
+                        // 剩余语言的部分得分只会更差
+                        break;
+                    }
+                    double score = getScore(sortGrams, sortCounts, candidates[order].getTrie(), prefix, count, partials[order], bound);
+                    if (score > bound) {
+                        continue;
+                    }
+                    DetectionLanguage locale = new DetectionLanguage(Locale.forLanguageTag(candidates[order].getName()), score);
+                    locales.add(locale);
+                    if (locales.size() > number) {
+                        locales.remove(locales.last());
+                    }
+                }
+            }
+        } else {
+            double[] scores = new double[languages.length];
+            index.scoreLanguages(script, tuples, DEFAULT_DIFFERENCE, scores);
+            for (int cursor = 0; cursor < languages.length; cursor++) {
+                String language = languages[cursor];
+                if (checkLanguage(language, writes, blacks)) {
+                    DetectionLanguage locale = new DetectionLanguage(Locale.forLanguageTag(language), scores[cursor]);
+                    locales.add(locale);
+                }
+            }
+            while (locales.size() > number) {
+                locales.remove(locales.last());
             }
         }
         if (!locales.isEmpty()) {
@@ -239,4 +510,599 @@ public class LanguageDetector {
         return locales;
     }
 
+    /**
+     * 获取语言区域(与批量检测结果的语言编号对应)
+     * 
+     * @return
+     */
+    public Locale[] getLocales() {
+        return locales.clone();
+    }
+
+    /**
+     * 获取许可
+     * 
+     * @param options
+     * @return 语言编号 => 是否许可
+     */
+    private boolean[] getPermissions(Object2BooleanMap<String> options) {
+        Set<String> writes = options.size() == 0 ? Collections.EMPTY_SET : new HashSet<>();
+        Set<String> blacks = options.size() == 0 ? Collections.EMPTY_SET : new HashSet<>();
+        for (Object2BooleanMap.Entry<String> option : options.object2BooleanEntrySet()) {
+            if (option.getBooleanValue()) {
+                writes.add(option.getKey());
+            } else {
+                blacks.add(option.getKey());
+            }
+        }
+        boolean[] permissions = new boolean[languages.length];
+        for (int language = 0; language < languages.length; language++) {
+            permissions[language] = checkLanguage(languages[language], writes, blacks);
+        }
+        return permissions;
+    }
+
+    /**
+     * 是否替换为空格(与{@link #REPLACE}一致)
+     * 
+     * @param point
+     * @return
+     */
+    private static boolean isReplace(int point) {
+        return (point >= 0x21 && point <= 0x40) || point == ' ' || point == '\t' || point == '\n' || point == 0x0B || point == '\f' || point == '\r';
+    }
+
+    /**
+     * 是否需要依赖上下文或者区域转换小写
+     * 
+     * @return
+     */
+    private static boolean isSpecial() {
+        String language = Locale.getDefault().getLanguage();
+        return "tr".equals(language) || "az".equals(language) || "lt".equals(language);
+    }
+
+    /**
+     * 检测语言(复用检测上下文)
+     * 
+     * <pre>
+     * 结果与{@link #detectLanguage(String, Object2BooleanMap)}一致,置信度(见{@link #getConfidence(SortedSet)})记录在检测上下文.
+     * 只有同时使用检测文字与检测索引时才复用缓冲区,否则退化为普通检测.
+     * </pre>
+     * 
+     * @param text
+     * @param options
+     * @param permissions
+     * @param context
+     * @return 语言编号,不存在时返回-1
+     */
+    private int detectLanguage(String text, Object2BooleanMap<String> options, boolean[] permissions, DetectionContext context) {
+        if (script == null || index == null || isSpecial()) {
+            return detectLanguage(text, options, context);
+        }
+        context.confidence = 0D;
+        // 最小长度限制
+        int size = text.length();
+        if (size < minimum) {
+            return -1;
+        }
+        // 最大长度限制
+        CharSequence sequence = text;
+        if (size > maximum) {
+            size = maximum;
+            sequence = CharBuffer.wrap(text, 0, size);
+        }
+
+        context.ensureScripts(script.getCategorySize(), script.getScriptSize());
+        String name = script.detectScript(sequence, context.categories, context.counts);
+        if (name == null) {
+            return -1;
+        }
+        int[] mapping = mappings.get(name);
+        if (mapping == null) {
+            int language = indexes.getInt(name);
+            if (!permissions[language]) {
+                return -1;
+            }
+            context.confidence = 1D;
+            return language;
+        }
+
+        // 前后补空格是为了N-Gram处理
+        context.ensureCharacters(size * 2 + 2);
+        char[] characters = context.characters;
+        int length = 0;
+        characters[length++] = ' ';
+        boolean replace = false;
+        for (int cursor = 0; cursor < size;) {
+            int point = Character.codePointAt(sequence, cursor);
+            cursor += Character.charCount(point);
+            if (isReplace(point)) {
+                if (!replace) {
+                    characters[length++] = ' ';
+                    replace = true;
+                }
+                continue;
+            }
+            replace = false;
+            if (point == '\u0130' || point == '\u03A3') {
+                // String.toLowerCase对这些字符需要特殊处理
+                return detectLanguage(text, options, context);
+            }
+            length += Character.toChars(Character.toLowerCase(point), characters, length);
+        }
+        characters[length++] = ' ';
+
+        // 统计N-Gram
+        int count = length - 2;
+        context.ensureGrams(count);
+        long[] grams = context.grams;
+        for (int cursor = 0; cursor < count; cursor++) {
+            grams[cursor] = DetectionIndex.getKey(characters, cursor, 3);
+        }
+        Arrays.sort(grams, 0, count);
+        long[] keys = context.keys;
+        int[] tuples = context.tuples;
+        int distinct = 0;
+        for (int cursor = 0; cursor < count; cursor++) {
+            if (distinct > 0 && keys[distinct - 1] == grams[cursor]) {
+                tuples[distinct - 1]++;
+            } else {
+                keys[distinct] = grams[cursor];
+                tuples[distinct] = 1;
+                distinct++;
+            }
+        }
+
+        // 得分越小越接近,同分时与DetectionLanguage的排序一致
+        context.ensureLanguages(mapping.length);
+        long[] sums = context.sums;
+        index.scoreLanguages(name, keys, tuples, distinct, DEFAULT_DIFFERENCE, sums);
+        int language = -1;
+        for (int cursor = 0; cursor < mapping.length; cursor++) {
+            int current = mapping[cursor];
+            if (!permissions[current]) {
+                continue;
+            }
+            if (language == -1 || sums[cursor] < sums[language] || (sums[cursor] == sums[language] && locales[mapping[cursor]].getLanguage().compareTo(locales[mapping[language]].getLanguage()) > 0)) {
+                language = cursor;
+            }
+        }
+        if (language == -1) {
+            return -1;
+        }
+        int second = -1;
+        for (int cursor = 0; cursor < mapping.length; cursor++) {
+            if (cursor != language && permissions[mapping[cursor]] && (second == -1 || sums[cursor] < sums[second])) {
+                second = cursor;
+            }
+        }
+        context.confidence = second == -1 ? 1D : getConfidence(length, sums[language], sums[second]);
+        return mapping[language];
+    }
+
+    /**
+     * 检测语言(不复用缓冲区)
+     * 
+     * @param text
+     * @param options
+     * @param context
+     * @return 语言编号,不存在时返回-1
+     */
+    private int detectLanguage(String text, Object2BooleanMap<String> options, DetectionContext context) {
+        // 置信度需要第二名
+        SortedSet<DetectionLanguage> locales = detectLanguages(text, options, 2);
+        context.confidence = getConfidence(locales);
+        return locales.isEmpty() ? -1 : getIndex(locales.first());
+    }
+
+    /**
+     * 获取语言编号
+     * 
+     * @param language
+     * @return 不存在时返回-1
+     */
+    private int getIndex(DetectionLanguage language) {
+        if (language == null) {
+            return -1;
+        }
+        for (int index = 0; index < locales.length; index++) {
+            if (locales[index].equals(language.getLocale())) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 检测片段
+     * 
+     * @param text
+     * @return
+     */
+    public List<DetectionSegment> detectSegments(String text) {
+        return detectSegments(text, DEFAULT_OPTIONS, DEFAULT_WINDOW, DEFAULT_STEP);
+    }
+
+    /**
+     * 检测片段
+     * 
+     * @param text
+     * @param options
+     * @return
+     */
+    public List<DetectionSegment> detectSegments(String text, Object2BooleanMap<String> options) {
+        return detectSegments(text, options, DEFAULT_WINDOW, DEFAULT_STEP);
+    }
+
+    /**
+     * 检测片段
+     * 
+     * <pre>
+     * 将替换与小写转换后的文本按step个字符划分为单元,每个单元以其为中心的window个字符检测语言,相邻且语言相同的单元合并为片段.
+     * 同时使用检测文字与检测索引时,窗口滑动只增量维护类别次数,N-Gram次数与语言得分,总代价与文本长度成线性;
+     * 否则每个窗口退化为{@link #detectLanguage(String, Object2BooleanMap)}.
+     * 窗口的得分为置信度(见{@link #getConfidence(SortedSet)}),无法检测语言的单元并入相邻片段,片段的得分为所含窗口得分的平均值.
+     * </pre>
+     * 
+     * @param text
+     * @param options
+     * @param window 窗口大小
+     * @param step 步长
+     * @return 按位置排序的片段(覆盖整个文本)
+     */
+    public List<DetectionSegment> detectSegments(String text, Object2BooleanMap<String> options, int window, int step) {
+        if (window <= 0 || step <= 0) {
+            throw new IllegalArgumentException("窗口与步长必须为正数");
+        }
+        // 替换与小写转换,并记录每个字符在原文的位置
+        int size = text.length();
+        char[] characters = new char[size * 2];
+        int[] offsets = new int[size * 2 + 1];
+        int length = 0;
+        boolean replace = false;
+        boolean special = isSpecial();
+        for (int cursor = 0; cursor < size;) {
+            int offset = cursor;
+            int point = text.codePointAt(cursor);
+            cursor += Character.charCount(point);
+            if (isReplace(point)) {
+                if (!replace) {
+                    offsets[length] = offset;
+                    characters[length++] = ' ';
+                    replace = true;
+                }
+                continue;
+            }
+            replace = false;
+            int from = length;
+            if (special || point == '\u0130' || point == '\u03A3') {
+                // 依赖区域的小写转换可能改变字符数量
+                for (char character : new String(Character.toChars(point)).toLowerCase().toCharArray()) {
+                    characters[length++] = character;
+                }
+            } else {
+                length += Character.toChars(Character.toLowerCase(point), characters, length);
+            }
+            for (; from < length; from++) {
+                offsets[from] = offset;
+            }
+        }
+        offsets[length] = size;
+
+        List<DetectionSegment> segments = new ArrayList<>();
+        DetectionSlider slider = script == null || index == null ? null : new DetectionSlider(text, characters, offsets, getPermissions(options));
+        Locale locale = null;
+        double score = 0D;
+        int count = 0;
+        int begin = 0;
+        for (int from = 0; from < length; from += step) {
+            // 以单元为中心的窗口,靠近文本两端时贴边
+            int left = Math.max(0, Math.min(from + step / 2 - window / 2, length - window));
+            int right = Math.min(length, left + window);
+            DetectionLanguage language = slider == null ? detectWindow(text.substring(offsets[left], offsets[right]), options) : slider.slideWindow(left, right);
+            if (language == null) {
+                continue;
+            }
+            if (locale == null) {
+                locale = language.getLocale();
+            } else if (!locale.equals(language.getLocale())) {
+                int end = offsets[from];
+                segments.add(new DetectionSegment(begin, end, locale, score / count));
+                begin = end;
+                locale = language.getLocale();
+                score = 0D;
+                count = 0;
+            }
+            score += language.getScore();
+            count++;
+        }
+        if (locale != null) {
+            segments.add(new DetectionSegment(begin, size, locale, score / count));
+        }
+        return segments;
+    }
+
+    /**
+     * 检测窗口
+     * 
+     * @param text
+     * @param options
+     * @return 得分为置信度,不存在时为null
+     */
+    private DetectionLanguage detectWindow(String text, Object2BooleanMap<String> options) {
+        // 置信度需要第二名
+        SortedSet<DetectionLanguage> locales = detectLanguages(text, options, 2);
+        return locales.isEmpty() ? null : new DetectionLanguage(locales.first().getLocale(), getConfidence(locales));
+    }
+
+    /**
+     * 批量检测语言
+     * 
+     * @param texts
+     * @param options
+     * @param languages 语言编号(与{@link #getLocales()}对应,不存在时为-1)
+     * @param scores 置信度(最好语言与第二名语言的归一化得分之差,只有一种候选语言时为1,不存在时为0)
+     */
+    public void detectLanguages(List<String> texts, Object2BooleanMap<String> options, int[] languages, double[] scores) {
+        detectLanguages(ForkJoinPool.commonPool(), texts, options, languages, scores);
+    }
+
+    /**
+     * 批量检测语言
+     * 
+     * @param pool
+     * @param texts
+     * @param options
+     * @param languages 语言编号(与{@link #getLocales()}对应,不存在时为-1)
+     * @param scores 置信度(最好语言与第二名语言的归一化得分之差,只有一种候选语言时为1,不存在时为0)
+     */
+    public void detectLanguages(ForkJoinPool pool, List<String> texts, Object2BooleanMap<String> options, int[] languages, double[] scores) {
+        boolean[] permissions = getPermissions(options);
+        pool.invoke(new DetectionTask(texts, options, permissions, languages, scores, 0, texts.size()));
+    }
+
+    /**
+     * 流式检测语言
+     * 
+     * <pre>
+     * 并行流的每个线程复用各自的检测上下文.
+     * </pre>
+     * 
+     * @param texts
+     * @param options
+     * @return 与{@link #detectLanguage(String, Object2BooleanMap)}一致,不存在时为null
+     */
+    public Stream<DetectionLanguage> detectLanguages(Stream<String> texts, Object2BooleanMap<String> options) {
+        boolean[] permissions = getPermissions(options);
+        return texts.map((text) -> {
+            int language = detectLanguage(text, options, permissions, contexts.get());
+            return language < 0 ? null : new DetectionLanguage(locales[language], 1D);
+        });
+    }
+
+    /**
+     * 检测滑块
+     * 
+     * <pre>
+     * 窗口只能向右滑动,进出窗口的码点与N-Gram增量更新类别次数与语言得分.
+     * </pre>
+     * 
+     * @author Birdy
+     *
+     */
+    private class DetectionSlider {
+
+        /** 原文 */
+        private String text;
+
+        /** 归一化文本 */
+        private char[] characters;
+
+        /** 归一化文本 => 原文位置 */
+        private int[] offsets;
+
+        private boolean[] permissions;
+
+        /** 类别次数 */
+        private int[] categories;
+
+        /** 文字次数 */
+        private int[] counts;
+
+        /** 窗口内部的N-Gram => 出现次数 */
+        private Long2IntMap tuples;
+
+        /** 语言得分差(按检测索引的语言编号) */
+        private long[] sums;
+
+        /** 边缘N-Gram */
+        private char[] edges;
+
+        /** 当前窗口[from, to) */
+        private int from, to;
+
+        private DetectionSlider(String text, char[] characters, int[] offsets, boolean[] permissions) {
+            this.text = text;
+            this.characters = characters;
+            this.offsets = offsets;
+            this.permissions = permissions;
+            this.categories = new int[script.getCategorySize()];
+            this.counts = new int[script.getScriptSize()];
+            this.tuples = new Long2IntOpenHashMap();
+            this.sums = new long[index.getLanguageSize()];
+            this.edges = new char[3];
+        }
+
+        /**
+         * 更新N-Gram出现次数
+         * 
+         * @param key
+         * @param delta
+         */
+        private void updateGram(long key, int delta) {
+            int before = tuples.get(key);
+            int after = before + delta;
+            if (after == 0) {
+                tuples.remove(key);
+            } else {
+                tuples.put(key, after);
+            }
+            index.updateLanguages(key, before, after, DEFAULT_DIFFERENCE, sums);
+        }
+
+        /**
+         * 更新类别次数
+         * 
+         * @param from 原文起点
+         * @param to 原文终点
+         * @param delta
+         */
+        private void updateCategories(int from, int to, int delta) {
+            for (int cursor = from; cursor < to;) {
+                int point = text.codePointAt(cursor);
+                categories[script.getCategory(point)] += delta;
+                cursor += Character.charCount(point);
+            }
+        }
+
+        /**
+         * 更新边缘N-Gram(窗口前后补空格)
+         * 
+         * @param delta
+         */
+        private void updateEdges(int delta) {
+            if (to - from == 1) {
+                edges[0] = ' ';
+                edges[1] = characters[from];
+                edges[2] = ' ';
+                updateGram(DetectionIndex.getKey(edges, 0, 3), delta);
+            } else {
+                edges[0] = ' ';
+                edges[1] = characters[from];
+                edges[2] = characters[from + 1];
+                updateGram(DetectionIndex.getKey(edges, 0, 3), delta);
+                edges[0] = characters[to - 2];
+                edges[1] = characters[to - 1];
+                edges[2] = ' ';
+                updateGram(DetectionIndex.getKey(edges, 0, 3), delta);
+            }
+        }
+
+        /**
+         * 滑动窗口并检测语言
+         * 
+         * @param left 新窗口起点
+         * @param right 新窗口终点
+         * @return 得分为置信度,不存在时为null
+         */
+        private DetectionLanguage slideWindow(int left, int right) {
+            // 原文码点
+            int oldFrom = offsets[from], oldTo = offsets[to], newFrom = offsets[left], newTo = offsets[right];
+            updateCategories(Math.max(oldTo, newFrom), newTo, 1);
+            updateCategories(oldFrom, Math.min(newFrom, oldTo), -1);
+            // 窗口内部的N-Gram起点范围[from, to - 2)
+            int oldLow = from, oldHigh = Math.max(from, to - 2), newLow = left, newHigh = Math.max(left, right - 2);
+            for (int cursor = Math.max(oldHigh, newLow); cursor < newHigh; cursor++) {
+                updateGram(DetectionIndex.getKey(characters, cursor, 3), 1);
+            }
+            for (int cursor = oldLow, end = Math.min(newLow, oldHigh); cursor < end; cursor++) {
+                updateGram(DetectionIndex.getKey(characters, cursor, 3), -1);
+            }
+            from = left;
+            to = right;
+
+            String name = script.detectScript(categories, counts);
+            if (name == null) {
+                return null;
+            }
+            int[] mapping = mappings.get(name);
+            if (mapping == null) {
+                int language = indexes.getInt(name);
+                return permissions[language] ? new DetectionLanguage(locales[language], 1D) : null;
+            }
+            updateEdges(1);
+            // 所有语言的得分都包含(N-Gram数量 * 默认差异),只需要比较得分差
+            int base = index.getRange(name)[0];
+            int language = -1;
+            for (int cursor = 0; cursor < mapping.length; cursor++) {
+                if (!permissions[mapping[cursor]]) {
+                    continue;
+                }
+                if (language == -1 || sums[base + cursor] < sums[base + language] || (sums[base + cursor] == sums[base + language] && locales[mapping[cursor]].getLanguage().compareTo(locales[mapping[language]].getLanguage()) > 0)) {
+                    language = cursor;
+                }
+            }
+            if (language == -1) {
+                updateEdges(-1);
+                return null;
+            }
+            int second = -1;
+            for (int cursor = 0; cursor < mapping.length; cursor++) {
+                if (cursor != language && permissions[mapping[cursor]] && (second == -1 || sums[base + cursor] < sums[base + second])) {
+                    second = cursor;
+                }
+            }
+            double confidence = 1D;
+            if (second != -1) {
+                // 补全得分,归一化文本为窗口前后补空格
+                long total = (long) tuples.size() * DEFAULT_DIFFERENCE;
+                confidence = getConfidence(to - from + 2, total + sums[base + language], total + sums[base + second]);
+            }
+            updateEdges(-1);
+            return new DetectionLanguage(locales[mapping[language]], confidence);
+        }
+
+    }
+
+    /**
+     * 批量检测任务
+     * 
+     * @author Birdy
+     *
+     */
+    private class DetectionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<String> texts;
+
+        private Object2BooleanMap<String> options;
+
+        private boolean[] permissions;
+
+        private int[] languages;
+
+        private double[] scores;
+
+        private int from;
+
+        private int to;
+
+        private DetectionTask(List<String> texts, Object2BooleanMap<String> options, boolean[] permissions, int[] languages, double[] scores, int from, int to) {
+            this.texts = texts;
+            this.options = options;
+            this.permissions = permissions;
+            this.languages = languages;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                DetectionContext context = contexts.get();
+                for (int cursor = from; cursor < to; cursor++) {
+                    languages[cursor] = detectLanguage(texts.get(cursor), options, permissions, context);
+                    scores[cursor] = context.confidence;
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DetectionTask(texts, options, permissions, languages, scores, from, middle), new DetectionTask(texts, options, permissions, languages, scores, middle, to));
+            }
+        }
+
+    }
+
 }
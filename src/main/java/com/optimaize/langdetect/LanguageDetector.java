@@ -32,6 +32,8 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Optional;
 import com.optimaize.langdetect.cybozu.util.Util;
 import com.optimaize.langdetect.ngram.NgramExtractor;
+import com.optimaize.langdetect.ngram.PackedNgramCounter;
+import com.optimaize.langdetect.ngram.PackedNgrams;
 
 /**
  * Guesses the language of an input string or text.
@@ -74,6 +76,16 @@ public final class LanguageDetector {
      */
     private static final int N_TRIAL = 7;
 
+    /**
+     * With a {@link PackedNgramTable} the probabilities grow instead of shrink between two normalizations. Above this they are scaled down, long before reaching the double range.
+     */
+    private static final double RESCALE_LIMIT = 1e100;
+
+    /**
+     * An n-gram that occurs many times is applied in steps that grow the probabilities by at most this factor, so that they stay within the double range.
+     */
+    private static final double GROWTH_LIMIT = 1e200;
+
     /**
      * This is used when no custom seed was passed in. By using the same seed for different calls, the results are consistent also.
      *
@@ -107,10 +119,61 @@ public final class LanguageDetector {
 
     private final NgramExtractor ngramExtractor;
 
+    /**
+     * Replaces the random sampling for long texts, null to use the original algorithm.
+     */
+    @Nullable
+    private final LogProbabilityScorer logProbabilityScorer;
+
+    /**
+     * Set when the n-grams can be looked up without creating strings: the data is packed, and the extractor makes packed n-grams.
+     */
+    @Nullable
+    private final PackedNgramTable packedNgramTable;
+
+    /**
+     * Reused per thread by the packed path.
+     */
+    private final ThreadLocal<PackedNgramBuffer> buffers = ThreadLocal.withInitial(PackedNgramBuffer::new);
+
+    private static final class PackedNgramBuffer {
+        private final PackedNgramCounter counter = new PackedNgramCounter(256);
+        private long[] grams = new long[256];
+        private final Totals totals = new Totals();
+    }
+
+    /**
+     * The sum and the maximum of the probabilities while the packed update lets them grow. Only the languages that know an n-gram change, and only upwards, so both are kept up to date from those alone. The probabilities are then normalized once at the end, instead of after every n-gram.
+     */
+    private static final class Totals {
+        private double sum;
+        private double max;
+
+        private void reset(@NotNull double[] prob) {
+            sum = 0d;
+            max = 0d;
+            for (double p : prob) {
+                sum += p;
+                if (p > max) {
+                    max = p;
+                }
+            }
+        }
+
+        /**
+         * @return the same as {@link Util#normalizeProb(double[])} would return.
+         */
+        private double getMaxProbability() {
+            return max / sum;
+        }
+    }
+
     /**
      * Use the {@link LanguageDetectorBuilder}.
+     *
+     * @param deterministic see {@link LanguageDetectorBuilder#deterministic(boolean)}
      */
-    LanguageDetector(@NotNull NgramFrequencyData ngramFrequencyData, double alpha, Optional<Long> seed, int shortTextAlgorithm, double prefixFactor, double suffixFactor, double probabilityThreshold, double minimalConfidence, @Nullable Map<Locale, Double> langWeightingMap, @NotNull NgramExtractor ngramExtractor) {
+    LanguageDetector(@NotNull NgramFrequencyData ngramFrequencyData, double alpha, Optional<Long> seed, int shortTextAlgorithm, double prefixFactor, double suffixFactor, double probabilityThreshold, double minimalConfidence, @Nullable Map<Locale, Double> langWeightingMap, @NotNull NgramExtractor ngramExtractor, boolean deterministic) {
         if (alpha < 0d || alpha > 1d)
             throw new IllegalArgumentException("alpha must be between 0 and 1, but was: " + alpha);
         if (prefixFactor < 0d || prefixFactor > 10d)
@@ -134,6 +197,8 @@ public final class LanguageDetector {
         this.minimalConfidence = minimalConfidence;
         this.priorMap = (langWeightingMap == null) ? null : Util.makeInternalPrioMap(langWeightingMap, ngramFrequencyData.getLanguageList());
         this.ngramExtractor = ngramExtractor;
+        this.logProbabilityScorer = deterministic ? new LogProbabilityScorer(ngramFrequencyData, alpha / BASE_FREQ, prefixFactor, suffixFactor, priorMap) : null;
+        this.packedNgramTable = ngramExtractor.isPackable() ? ngramFrequencyData.getPackedNgramTable() : null;
     }
 
     public Optional<Locale> detect(CharSequence text) {
@@ -164,11 +229,22 @@ public final class LanguageDetector {
      */
     @Nullable
     private double[] detectBlock(CharSequence text) {
+        if (packedNgramTable != null) {
+            return detectPackedBlock(text, packedNgramTable);
+        }
         if (text.length() <= shortTextAlgorithm) {
             Map<String, Integer> ngrams = ngramExtractor.extractCountedGrams(text);
             if (ngrams.isEmpty())
                 return null;
             return detectBlockShortText(ngrams);
+        } else if (logProbabilityScorer != null) {
+            Map<String, Integer> ngrams = ngramExtractor.extractCountedGrams(text);
+            if (ngrams.isEmpty())
+                return null;
+            double[] prob = logProbabilityScorer.score(ngrams);
+            if (logger.isDebugEnabled())
+                logger.debug("==> " + sortProbability(prob));
+            return prob;
         } else {
             List<String> strings = ngramExtractor.extractGrams(text);
             if (strings.isEmpty())
@@ -177,6 +253,76 @@ public final class LanguageDetector {
         }
     }
 
+    /**
+     * Same as {@link #detectBlock(CharSequence)}, using the reusable buffers of the thread instead of strings.
+     */
+    @Nullable
+    private double[] detectPackedBlock(CharSequence text, @NotNull PackedNgramTable packedNgramTable) {
+        PackedNgramBuffer buffer = buffers.get();
+        if (text.length() <= shortTextAlgorithm || logProbabilityScorer != null) {
+            PackedNgramCounter counter = buffer.counter;
+            ngramExtractor.extractPackedGrams(text, counter);
+            if (counter.isEmpty())
+                return null;
+            if (text.length() > shortTextAlgorithm) {
+                double[] prob = logProbabilityScorer.score(counter);
+                if (logger.isDebugEnabled())
+                    logger.debug("==> " + sortProbability(prob));
+                return prob;
+            }
+            double[] prob = initProbability();
+            Totals totals = buffer.totals;
+            totals.reset(prob);
+            for (int i = 0; i < counter.size(); i++) {
+                updateLangProb(prob, packedNgramTable, counter.getNgram(i), counter.getCount(i), alpha, totals);
+                if (totals.getMaxProbability() > CONV_THRESHOLD)
+                    break;
+            }
+            Util.normalizeProb(prob);
+            if (logger.isDebugEnabled())
+                logger.debug("==> " + sortProbability(prob));
+            return prob;
+        } else {
+            int maxNumGrams = ngramExtractor.getMaxNumGrams(text.length());
+            if (buffer.grams.length < maxNumGrams) {
+                buffer.grams = new long[maxNumGrams];
+            }
+            long[] grams = buffer.grams;
+            int size = ngramExtractor.extractPackedGrams(text, grams);
+            if (size == 0)
+                return null;
+            double[] langprob = new double[ngramFrequencyData.getLanguageList().size()];
+            Random rand = new Random(seed.or(DEFAULT_SEED));
+            Totals totals = buffer.totals;
+            for (int t = 0; t < N_TRIAL; ++t) {
+                double[] prob = initProbability();
+                totals.reset(prob);
+                double alpha = this.alpha + (rand.nextGaussian() * ALPHA_WIDTH);
+
+                for (int i = 0; i < ITERATION_LIMIT; i++) {
+                    int r = rand.nextInt(size);
+                    updateLangProb(prob, packedNgramTable, grams[r], 1, alpha, totals);
+                    if (i % 5 == 0) {
+                        if (totals.getMaxProbability() > CONV_THRESHOLD)
+                            break;
+                        if (logger.isTraceEnabled()) {
+                            Util.normalizeProb(prob);
+                            totals.reset(prob);
+                            logger.trace("> " + sortProbability(prob));
+                        }
+                    }
+                }
+                // the packed update lets the probabilities grow, they must not leave the loop unnormalized
+                Util.normalizeProb(prob);
+                for (int j = 0; j < langprob.length; ++j)
+                    langprob[j] += prob[j] / N_TRIAL;
+                if (logger.isDebugEnabled())
+                    logger.debug("==> " + sortProbability(prob));
+            }
+            return langprob;
+        }
+    }
+
     /**
      */
     private double[] detectBlockShortText(Map<String, Integer> ngrams) {
@@ -214,6 +360,10 @@ public final class LanguageDetector {
                         logger.trace("> " + sortProbability(prob));
                 }
             }
+            if (ngramFrequencyData.getPackedNgramTable() != null) {
+                // the packed update lets the probabilities grow, they must not leave the loop unnormalized
+                Util.normalizeProb(prob);
+            }
             for (int j = 0; j < langprob.length; ++j)
                 langprob[j] += prob[j] / N_TRIAL;
             if (logger.isDebugEnabled())
@@ -247,6 +397,10 @@ public final class LanguageDetector {
      * @param count 1-n: how often the gram occurred.
      */
     private boolean updateLangProb(@NotNull double[] prob, @NotNull String ngram, int count, double alpha) {
+        PackedNgramTable table = ngramFrequencyData.getPackedNgramTable();
+        if (table != null) {
+            return updateLangProb(prob, table, PackedNgrams.pack(ngram), count, alpha, null);
+        }
         double[] langProbMap = ngramFrequencyData.getProbabilities(ngram);
         if (langProbMap == null) {
             return false;
@@ -254,6 +408,75 @@ public final class LanguageDetector {
         if (logger.isTraceEnabled())
             logger.trace(ngram + "(" + Util.unicodeEncode(ngram) + "):" + Util.wordProbToString(langProbMap, ngramFrequencyData.getLanguageList()));
 
+        double weight = getWeight(ngram, alpha);
+        for (int i = 0; i < prob.length; ++i) {
+            prob[i] *= count == 1 ? weight + langProbMap[i] : Math.pow(weight + langProbMap[i], count);
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #updateLangProb(double[], String, int, double)}, but only touches the languages that know the n-gram.
+     *
+     * <p>
+     * All other languages would be multiplied by the same weight. Since the probabilities are normalized anyway, every language is divided by that weight instead, which leaves the others as they are. The known ones are multiplied by (weight + p) / weight, so the values grow, and are scaled down when they get too large.
+     * </p>
+     *
+     * @param totals if not null, kept up to date for the changed languages.
+     */
+    private boolean updateLangProb(@NotNull double[] prob, @NotNull PackedNgramTable packedNgramTable, long ngram, int count, double alpha, @Nullable Totals totals) {
+        int position = packedNgramTable.getPosition(ngram);
+        if (position < 0) {
+            return false;
+        }
+        if (logger.isTraceEnabled())
+            logger.trace(PackedNgrams.unpack(ngram) + "(" + Util.unicodeEncode(PackedNgrams.unpack(ngram)) + "):" + Util.wordProbToString(packedNgramTable.getProbabilities(position, prob.length), ngramFrequencyData.getLanguageList()));
+
+        double weight = getWeight(ngram, alpha);
+        int begin = packedNgramTable.getBegin(position);
+        int end = packedNgramTable.getEnd(position);
+        int step = count;
+        if (count > 1) {
+            double maxFactor = 1d;
+            for (int entry = begin; entry < end; entry++) {
+                maxFactor = Math.max(maxFactor, 1d + packedNgramTable.getProbability(entry) / weight);
+            }
+            step = (int) Math.max(1d, Math.min(count, Math.log(GROWTH_LIMIT) / Math.log(maxFactor)));
+        }
+        for (int remaining = count; remaining > 0; remaining -= step) {
+            int amount = Math.min(step, remaining);
+            double max = 0d;
+            for (int entry = begin; entry < end; entry++) {
+                int i = packedNgramTable.getLanguage(entry);
+                double factor = 1d + packedNgramTable.getProbability(entry) / weight;
+                double value = prob[i] * (amount == 1 ? factor : Math.pow(factor, amount));
+                if (totals != null) {
+                    totals.sum += value - prob[i];
+                }
+                prob[i] = value;
+                if (value > max) {
+                    max = value;
+                }
+            }
+            if (totals != null && max > totals.max) {
+                totals.max = max;
+            }
+            if (max > RESCALE_LIMIT) {
+                for (int i = 0; i < prob.length; ++i) {
+                    prob[i] /= max;
+                }
+                if (totals != null) {
+                    totals.reset(prob);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the smoothing weight of the n-gram, taking the prefix and suffix factors into account.
+     */
+    private double getWeight(@NotNull String ngram, double alpha) {
         double weight = alpha / BASE_FREQ;
         if (ngram.length() > 1) {
             if (prefixFactor != 1.0 && ngram.charAt(0) == ' ') {
@@ -262,12 +485,23 @@ public final class LanguageDetector {
                 weight *= suffixFactor;
             }
         }
-        for (int i = 0; i < prob.length; ++i) {
-            for (int amount = 0; amount < count; amount++) {
-                prob[i] *= (weight + langProbMap[i]);
+        return weight;
+    }
+
+    /**
+     * Same as {@link #getWeight(String, double)} for a packed n-gram.
+     */
+    private double getWeight(long ngram, double alpha) {
+        double weight = alpha / BASE_FREQ;
+        int length = PackedNgrams.getLength(ngram);
+        if (length > 1) {
+            if (prefixFactor != 1.0 && PackedNgrams.getChar(ngram, length, 0) == ' ') {
+                weight *= prefixFactor;
+            } else if (suffixFactor != 1.0 && PackedNgrams.getChar(ngram, length, length - 1) == ' ') {
+                weight *= suffixFactor;
             }
         }
-        return true;
+        return weight;
     }
 
     /**
@@ -49,6 +49,9 @@ public class LanguageDetectorBuilder {
     private int shortTextAlgorithm = 50;
     private double prefixFactor = 1.0d;
     private double suffixFactor = 1.0d;
+    private boolean deterministic = false;
+    private boolean packed = false;
+    private int quantizationBits = 0;
 
     private double probabilityThreshold = 0.1;
     private double minimalConfidence = 0.9999d;
@@ -93,6 +96,44 @@ public class LanguageDetectorBuilder {
         return this;
     }
 
+    /**
+     * Texts longer than {@link #shortTextAlgorithm(int)} are by default scored by multiplying the probabilities of randomly sampled n-grams in several trials.
+     *
+     * <p>
+     * When set to true, they are scored by a naive Bayes sum of log probabilities over all counted n-grams instead. This is faster for long texts, and the result doesn't depend on the {@link #seed(long) seed}.
+     * </p>
+     *
+     * Defaults to false, which means the old behavior.
+     */
+    public LanguageDetectorBuilder deterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        return this;
+    }
+
+    /**
+     * When set to true, the n-gram frequencies are stored packed: n-grams as long keys in a primitive hash table, and float probabilities only for the languages that know an n-gram. This needs a fraction of the memory with many languages loaded, and the detection only iterates those languages. Requires n-grams of at most 3 chars. The detector then extracts packed n-grams into reusable per-thread buffers, so that hardly any objects are created per detection.
+     *
+     * Defaults to false, which means one double[] per n-gram string.
+     */
+    public LanguageDetectorBuilder packed(boolean packed) {
+        this.packed = packed;
+        return this;
+    }
+
+    /**
+     * Quantizes the probabilities of the {@link #packed(boolean) packed} n-gram table to 8 or 16 bit codes of their logarithm, instead of floats. 8 bits need a quarter of the probability memory, at the cost of a few percent relative error per probability.
+     *
+     * Defaults to 0, which means float probabilities.
+     *
+     * @param quantizationBits 0, 8 or 16
+     */
+    public LanguageDetectorBuilder quantization(int quantizationBits) {
+        if (quantizationBits != 0 && quantizationBits != 8 && quantizationBits != 16)
+            throw new IllegalArgumentException("quantization must be 0, 8 or 16 bits, but was: " + quantizationBits);
+        this.quantizationBits = quantizationBits;
+        return this;
+    }
+
     /**
      * Sets prefixFactor() and suffixFactor() both to the given value.
      * 
@@ -181,12 +222,15 @@ public class LanguageDetectorBuilder {
     }
 
     /**
-     * @throws IllegalStateException if no LanguageProfile was {@link #withProfile added}.
+     * @throws IllegalStateException if no LanguageProfile was {@link #withProfile added}, or if {@link #quantization quantized} but not {@link #packed packed}.
      */
     public LanguageDetector build() throws IllegalStateException {
         if (languageProfiles.isEmpty())
             throw new IllegalStateException();
-        return new LanguageDetector(NgramFrequencyData.create(languageProfiles, ngramExtractor.getGramLengths()), alpha, seed, shortTextAlgorithm, prefixFactor, suffixFactor, probabilityThreshold, minimalConfidence, langWeightingMap, ngramExtractor);
+        if (quantizationBits != 0 && !packed)
+            throw new IllegalStateException("Quantization requires the packed n-gram table!");
+        NgramFrequencyData ngramFrequencyData = packed ? NgramFrequencyData.createPacked(languageProfiles, ngramExtractor.getGramLengths(), quantizationBits) : NgramFrequencyData.create(languageProfiles, ngramExtractor.getGramLengths());
+        return new LanguageDetector(ngramFrequencyData, alpha, seed, shortTextAlgorithm, prefixFactor, suffixFactor, probabilityThreshold, minimalConfidence, langWeightingMap, ngramExtractor, deterministic);
     }
 
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.optimaize.langdetect.ngram.NgramExtractor;
+import com.optimaize.langdetect.ngram.PackedNgramCounter;
+
+/**
+ * Deterministic naive Bayes scorer working in log space.
+ *
+ * <p>
+ * Instead of multiplying the smoothed probabilities {@code weight + p} of randomly sampled n-grams, it sums {@code count * log(weight + p)} over all counted n-grams of the text, and turns the sums into probabilities once at the end.
+ * </p>
+ *
+ * <p>
+ * All languages that don't know an n-gram share the same {@code log(weight)}, and shared terms cancel out when normalizing. So only the difference {@code log(1 + p / weight)} is precomputed, and only for the languages that know the n-gram. The table is stored as flat primitive arrays.
+ * </p>
+ *
+ * @author Birdy
+ */
+final class LogProbabilityScorer {
+
+    private final int langsize;
+
+    /**
+     * When the data is packed, its positions and entries are used, and the fields below are null.
+     */
+    @Nullable
+    private final PackedNgramTable packedNgramTable;
+
+    /**
+     * Key = ngram, value = position into {@link #offsets}.
+     */
+    @Nullable
+    private final Map<String, Integer> positions;
+
+    /**
+     * Entries of the n-gram at position i are in the range offsets[i] to offsets[i + 1].
+     */
+    @Nullable
+    private final int[] offsets;
+
+    /**
+     * Index into the language list, per entry.
+     */
+    @Nullable
+    private final int[] languages;
+
+    /**
+     * log(1 + p / weight), per entry.
+     */
+    @NotNull
+    private final double[] logs;
+
+    /**
+     * log of the user-defined language priorities, null for uniform.
+     */
+    @Nullable
+    private final double[] logPriors;
+
+    /**
+     * @param weight the smoothing weight for n-grams in the middle of words, as in alpha / BASE_FREQ.
+     * @param prefixFactor see {@link LanguageDetectorBuilder#prefixFactor(double)}
+     * @param suffixFactor see {@link LanguageDetectorBuilder#suffixFactor(double)}
+     * @param priorMap language priorities in the order of the language list, or null.
+     */
+    LogProbabilityScorer(@NotNull NgramFrequencyData ngramFrequencyData, double weight, double prefixFactor, double suffixFactor, @Nullable double[] priorMap) {
+        this.langsize = ngramFrequencyData.getLanguageList().size();
+        this.packedNgramTable = ngramFrequencyData.getPackedNgramTable();
+
+        if (packedNgramTable != null) {
+            // reuse the positions and sparse lists of the table, only the logs are added
+            this.positions = null;
+            this.offsets = null;
+            this.languages = null;
+            String[] ngrams = packedNgramTable.getNgrams();
+            this.logs = new double[packedNgramTable.getEnd(ngrams.length - 1)];
+            for (int position = 0; position < ngrams.length; position++) {
+                double ngramWeight = getWeight(ngrams[position], weight, prefixFactor, suffixFactor);
+                for (int entry = packedNgramTable.getBegin(position), end = packedNgramTable.getEnd(position); entry < end; entry++) {
+                    logs[entry] = Math.log1p(packedNgramTable.getProbability(entry) / ngramWeight);
+                }
+            }
+        } else {
+            this.positions = new HashMap<>();
+            int size = 0;
+            for (String ngram : ngramFrequencyData.getNgrams()) {
+                for (double probability : ngramFrequencyData.getProbabilities(ngram)) {
+                    if (probability > 0d) {
+                        size++;
+                    }
+                }
+            }
+            this.offsets = new int[ngramFrequencyData.getNgrams().size() + 1];
+            this.languages = new int[size];
+            this.logs = new double[size];
+
+            int position = 0;
+            int entry = 0;
+            for (String ngram : ngramFrequencyData.getNgrams()) {
+                double ngramWeight = getWeight(ngram, weight, prefixFactor, suffixFactor);
+                double[] probabilities = ngramFrequencyData.getProbabilities(ngram);
+                for (int i = 0; i < probabilities.length; i++) {
+                    if (probabilities[i] > 0d) {
+                        languages[entry] = i;
+                        logs[entry] = Math.log1p(probabilities[i] / ngramWeight);
+                        entry++;
+                    }
+                }
+                positions.put(ngram, position);
+                offsets[++position] = entry;
+            }
+        }
+
+        if (priorMap == null) {
+            this.logPriors = null;
+        } else {
+            this.logPriors = new double[langsize];
+            for (int i = 0; i < langsize; i++) {
+                logPriors[i] = Math.log(priorMap[i]);
+            }
+        }
+    }
+
+    private static double getWeight(@NotNull String ngram, double weight, double prefixFactor, double suffixFactor) {
+        if (ngram.length() > 1) {
+            if (prefixFactor != 1.0 && ngram.charAt(0) == ' ') {
+                return weight * prefixFactor;
+            } else if (suffixFactor != 1.0 && ngram.charAt(ngram.length() - 1) == ' ') {
+                return weight * suffixFactor;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @param ngrams Key = ngram, value = count.
+     * @return the language probabilities in the order of the language list, normalized to a sum of 1.
+     */
+    @NotNull
+    double[] score(@NotNull Map<String, Integer> ngrams) {
+        double[] scores = logPriors == null ? new double[langsize] : logPriors.clone();
+        for (Map.Entry<String, Integer> gramWithCount : ngrams.entrySet()) {
+            int count = gramWithCount.getValue();
+            if (packedNgramTable != null) {
+                int position = packedNgramTable.getPosition(gramWithCount.getKey());
+                if (position < 0) {
+                    continue;
+                }
+                for (int entry = packedNgramTable.getBegin(position), end = packedNgramTable.getEnd(position); entry < end; entry++) {
+                    scores[packedNgramTable.getLanguage(entry)] += count * logs[entry];
+                }
+            } else {
+                Integer position = positions.get(gramWithCount.getKey());
+                if (position == null) {
+                    continue;
+                }
+                for (int entry = offsets[position], end = offsets[position + 1]; entry < end; entry++) {
+                    scores[languages[entry]] += count * logs[entry];
+                }
+            }
+        }
+        return normalize(scores);
+    }
+
+    /**
+     * Same as {@link #score(Map)}, without creating strings. Only for packed data.
+     *
+     * @param ngrams the n-grams with counts, see {@link NgramExtractor#extractPackedGrams(CharSequence, PackedNgramCounter)}.
+     */
+    @NotNull
+    double[] score(@NotNull PackedNgramCounter ngrams) {
+        if (packedNgramTable == null) {
+            throw new IllegalStateException("Packed n-grams need packed data!");
+        }
+        double[] scores = logPriors == null ? new double[langsize] : logPriors.clone();
+        for (int i = 0; i < ngrams.size(); i++) {
+            int position = packedNgramTable.getPosition(ngrams.getNgram(i));
+            if (position < 0) {
+                continue;
+            }
+            int count = ngrams.getCount(i);
+            for (int entry = packedNgramTable.getBegin(position), end = packedNgramTable.getEnd(position); entry < end; entry++) {
+                scores[packedNgramTable.getLanguage(entry)] += count * logs[entry];
+            }
+        }
+        return normalize(scores);
+    }
+
+    @NotNull
+    private static double[] normalize(@NotNull double[] scores) {
+        // log-sum-exp, to stay in range
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            if (score > max) {
+                max = score;
+            }
+        }
+        double sum = 0d;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = Math.exp(scores[i] - max);
+            sum += scores[i];
+        }
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] /= sum;
+        }
+        return scores;
+    }
+
+}
@@ -17,12 +17,15 @@
 package com.optimaize.langdetect;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -47,9 +50,15 @@ public final class NgramFrequencyData {
     /**
      * Key = ngram Value = array with probabilities per loaded language, in the same order as {@code langlist}.
      */
-    @NotNull
+    @Nullable
     private final Map<String, double[]> wordLangProbMap;
 
+    /**
+     * Used instead of wordLangProbMap when created with {@link #createPacked}.
+     */
+    @Nullable
+    private final PackedNgramTable packedNgramTable;
+
     /**
      * All the loaded languages, in exactly the same order as the data is in the double[] in wordLangProbMap. Example: if wordLangProbMap has an entry for the n-gram "foo" then for each locale in this langlist here it has a value there. Languages that don't know the n-gram have the value 0d.
      */
@@ -62,10 +71,7 @@ public final class NgramFrequencyData {
      */
     @NotNull
     public static NgramFrequencyData create(@NotNull Collection<LanguageProfile> languageProfiles, @NotNull Collection<Integer> gramLengths) throws IllegalArgumentException {
-        if (languageProfiles.isEmpty())
-            throw new IllegalArgumentException("No languageProfiles provided!");
-        if (gramLengths.isEmpty())
-            throw new IllegalArgumentException("No gramLengths provided!");
+        checkProfiles(languageProfiles, gramLengths);
 
         Map<String, double[]> wordLangProbMap = new HashMap<>();
         List<Locale> langlist = new ArrayList<>();
@@ -78,9 +84,6 @@ public final class NgramFrequencyData {
             langlist.add(profile.getLocale());
 
             for (Integer gramLength : gramLengths) {
-                if (!profile.getGramLengths().contains(gramLength)) {
-                    throw new IllegalArgumentException("The language profile for " + profile.getLocale() + " does not contain " + gramLength + "-grams!");
-                }
                 for (Map.Entry<String, Integer> ngramEntry : profile.iterateGrams(gramLength)) {
                     String ngram = ngramEntry.getKey();
                     Integer frequency = ngramEntry.getValue();
@@ -93,12 +96,55 @@ public final class NgramFrequencyData {
             }
         }
 
-        return new NgramFrequencyData(wordLangProbMap, langlist);
+        return new NgramFrequencyData(wordLangProbMap, null, langlist);
     }
 
-    private NgramFrequencyData(@NotNull Map<String, double[]> wordLangProbMap, @NotNull List<Locale> langlist) {
+    /**
+     * Same as {@link #create}, but stores the data in a {@link PackedNgramTable}: packed n-gram keys, and float probabilities only for the languages that know an n-gram. Uses much less memory when many languages are loaded.
+     *
+     * @param gramLengths for example [1,2,3], at most 3.
+     * @throws java.lang.IllegalArgumentException if languageProfiles or gramLengths is empty, if one of the languageProfiles does not have the grams of the required sizes, or if a gram length is greater than 3.
+     */
+    @NotNull
+    public static NgramFrequencyData createPacked(@NotNull Collection<LanguageProfile> languageProfiles, @NotNull Collection<Integer> gramLengths) throws IllegalArgumentException {
+        return createPacked(languageProfiles, gramLengths, 0);
+    }
+
+    /**
+     * Same as {@link #createPacked(Collection, Collection)}, with the probabilities quantized to 8 or 16 bit codes, see {@link PackedNgramTable}.
+     *
+     * @param quantizationBits 0 for float probabilities, or 8 or 16.
+     * @throws java.lang.IllegalArgumentException also if quantizationBits is not 0, 8 or 16.
+     */
+    @NotNull
+    public static NgramFrequencyData createPacked(@NotNull Collection<LanguageProfile> languageProfiles, @NotNull Collection<Integer> gramLengths, int quantizationBits) throws IllegalArgumentException {
+        checkProfiles(languageProfiles, gramLengths);
+
+        List<Locale> langlist = new ArrayList<>();
+        for (LanguageProfile profile : languageProfiles) {
+            langlist.add(profile.getLocale());
+        }
+        return new NgramFrequencyData(null, PackedNgramTable.create(languageProfiles, gramLengths, quantizationBits), langlist);
+    }
+
+    private static void checkProfiles(@NotNull Collection<LanguageProfile> languageProfiles, @NotNull Collection<Integer> gramLengths) throws IllegalArgumentException {
+        if (languageProfiles.isEmpty())
+            throw new IllegalArgumentException("No languageProfiles provided!");
+        if (gramLengths.isEmpty())
+            throw new IllegalArgumentException("No gramLengths provided!");
+        for (LanguageProfile profile : languageProfiles) {
+            for (Integer gramLength : gramLengths) {
+                if (!profile.getGramLengths().contains(gramLength)) {
+                    throw new IllegalArgumentException("The language profile for " + profile.getLocale() + " does not contain " + gramLength + "-grams!");
+                }
+            }
+        }
+    }
+
+    private NgramFrequencyData(@Nullable Map<String, double[]> wordLangProbMap, @Nullable PackedNgramTable packedNgramTable, @NotNull List<Locale> langlist) {
         // not making immutable copies because I create them here (optimization).
-        this.wordLangProbMap = Collections.unmodifiableMap(wordLangProbMap);
+        this.wordLangProbMap = wordLangProbMap == null ? null : Collections.unmodifiableMap(wordLangProbMap);
+        this.packedNgramTable = packedNgramTable;
         this.langlist = Collections.unmodifiableList(langlist);
     }
 
@@ -119,6 +165,51 @@ public final class NgramFrequencyData {
      */
     @Nullable
     public double[] getProbabilities(String ngram) {
+        if (packedNgramTable != null) {
+            // a new array per call, prefer getPackedNgramTable() in loops
+            int position = packedNgramTable.getPosition(ngram);
+            return position < 0 ? null : packedNgramTable.getProbabilities(position, langlist.size());
+        }
         return wordLangProbMap.get(ngram);
     }
+
+    /**
+     * @return all n-grams known by at least one language profile.
+     */
+    @NotNull
+    Set<String> getNgrams() {
+        if (packedNgramTable != null) {
+            return new LinkedHashSet<>(Arrays.asList(packedNgramTable.getNgrams()));
+        }
+        return wordLangProbMap.keySet();
+    }
+
+    /**
+     * An estimate of the heap used by the n-gram data, to compare configurations such as pruned or quantized profiles. Exact for the packed arrays; for the map it assumes a 64 bit JVM with compressed references.
+     *
+     * @return bytes.
+     */
+    public long getMemorySize() {
+        if (packedNgramTable != null) {
+            return packedNgramTable.getMemorySize();
+        }
+        // node and table slot, the string with its char array, and the double array
+        long size = 0L;
+        for (String ngram : wordLangProbMap.keySet()) {
+            size += 32L + 8L + 24L + align(16L + 2L * ngram.length()) + align(16L + 8L * langlist.size());
+        }
+        return size;
+    }
+
+    private static long align(long size) {
+        return (size + 7L) & ~7L;
+    }
+
+    /**
+     * @return null unless created with {@link #createPacked}.
+     */
+    @Nullable
+    PackedNgramTable getPackedNgramTable() {
+        return packedNgramTable;
+    }
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.optimaize.langdetect.ngram.PackedNgrams;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+
+/**
+ * Compact storage of the n-gram probabilities for {@link NgramFrequencyData}.
+ *
+ * <p>
+ * N-grams of length 1 to 3 are packed into a long (see {@link PackedNgrams}) and looked up in an open addressing hash table. For each n-gram only the languages with a nonzero probability are stored, as a sparse list in one contiguous char and float array.
+ * </p>
+ *
+ * <p>
+ * Optionally the probabilities are quantized: their logarithms are mapped linearly to 8 or 16 bit codes between the smallest and the largest one, and decoded with a table of 256 or 65536 floats. 8 bits keep the relative error of a probability within a few percent, which hardly changes the detected languages.
+ * </p>
+ *
+ * <p>
+ * Compared to one dense double[] per n-gram string, this needs a fraction of the memory when many languages are loaded, and lets callers iterate only the languages that know an n-gram.
+ * </p>
+ *
+ * @author Birdy
+ */
+final class PackedNgramTable {
+
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Packed n-grams of the open addressing table, 0 for empty slots.
+     */
+    @NotNull
+    private final long[] keys;
+
+    /**
+     * Position of the n-gram in each slot.
+     */
+    @NotNull
+    private final int[] positions;
+
+    /**
+     * Entries of the n-gram at position i are in the range offsets[i] to offsets[i + 1].
+     */
+    @NotNull
+    private final int[] offsets;
+
+    /**
+     * Index into the language list, ascending per n-gram.
+     */
+    @NotNull
+    private final char[] languages;
+
+    /**
+     * Exactly one of these holds the probability of each entry: the float itself, or its 8 or 16 bit code into the levels.
+     */
+    @Nullable
+    private final float[] probabilities;
+    @Nullable
+    private final byte[] byteCodes;
+    @Nullable
+    private final char[] charCodes;
+
+    /**
+     * The probability per code, empty if not quantized.
+     */
+    @NotNull
+    private final float[] levels;
+
+    private PackedNgramTable(@NotNull long[] keys, @NotNull int[] positions, @NotNull int[] offsets, @NotNull char[] languages, @Nullable float[] probabilities, @Nullable byte[] byteCodes, @Nullable char[] charCodes, @NotNull float[] levels) {
+        this.keys = keys;
+        this.positions = positions;
+        this.offsets = offsets;
+        this.languages = languages;
+        this.probabilities = probabilities;
+        this.byteCodes = byteCodes;
+        this.charCodes = charCodes;
+        this.levels = levels;
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) ((key * HASH_MULTIPLIER) >>> Integer.SIZE) & mask;
+    }
+
+    /**
+     * @param gramLengths must all be between 1 and {@link PackedNgrams#MAX_GRAM_LENGTH}.
+     * @param quantizationBits 0 for float probabilities, or 8 or 16.
+     */
+    @NotNull
+    static PackedNgramTable create(@NotNull Collection<LanguageProfile> languageProfiles, @NotNull Collection<Integer> gramLengths, int quantizationBits) {
+        if (quantizationBits != 0 && quantizationBits != Byte.SIZE && quantizationBits != Character.SIZE) {
+            throw new IllegalArgumentException("Quantization must be 0, 8 or 16 bits, but was: " + quantizationBits);
+        }
+        if (languageProfiles.size() > Character.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("Too many language profiles: " + languageProfiles.size());
+        }
+        for (Integer gramLength : gramLengths) {
+            if (gramLength < 1 || gramLength > PackedNgrams.MAX_GRAM_LENGTH) {
+                throw new IllegalArgumentException("Packed n-grams must have a length between 1 and " + PackedNgrams.MAX_GRAM_LENGTH + ", but was: " + gramLength);
+            }
+        }
+
+        // pass 1: give every n-gram a position and count its languages
+        Map<String, Integer> ngramPositions = new HashMap<>();
+        int[] counts = new int[1024];
+        for (LanguageProfile profile : languageProfiles) {
+            for (Integer gramLength : gramLengths) {
+                for (Map.Entry<String, Integer> ngramEntry : profile.iterateGrams(gramLength)) {
+                    Integer position = ngramPositions.get(ngramEntry.getKey());
+                    if (position == null) {
+                        position = ngramPositions.size();
+                        ngramPositions.put(ngramEntry.getKey(), position);
+                        if (position == counts.length) {
+                            counts = Arrays.copyOf(counts, counts.length * 2);
+                        }
+                    }
+                    if (ngramEntry.getValue() > 0) {
+                        counts[position]++;
+                    }
+                }
+            }
+        }
+        int size = ngramPositions.size();
+        int[] offsets = new int[size + 1];
+        for (int position = 0; position < size; position++) {
+            offsets[position + 1] = offsets[position] + counts[position];
+        }
+
+        // pass 2: fill the sparse lists, languages come in ascending order
+        char[] languages = new char[offsets[size]];
+        float[] probabilities = new float[offsets[size]];
+        int[] cursors = Arrays.copyOf(offsets, size);
+        int index = 0;
+        for (LanguageProfile profile : languageProfiles) {
+            for (Integer gramLength : gramLengths) {
+                for (Map.Entry<String, Integer> ngramEntry : profile.iterateGrams(gramLength)) {
+                    if (ngramEntry.getValue() > 0) {
+                        int position = ngramPositions.get(ngramEntry.getKey());
+                        int entry = cursors[position]++;
+                        languages[entry] = (char) index;
+                        probabilities[entry] = (float) (ngramEntry.getValue().doubleValue() / profile.getNumGramOccurrences(ngramEntry.getKey().length()));
+                    }
+                }
+            }
+            index++;
+        }
+
+        // load factor at most 0.5
+        int capacity = Integer.highestOneBit(Math.max(size, 1)) << 2;
+        long[] keys = new long[capacity];
+        int[] positions = new int[capacity];
+        for (Map.Entry<String, Integer> ngramPosition : ngramPositions.entrySet()) {
+            long key = PackedNgrams.pack(ngramPosition.getKey());
+            int slot = slot(key, capacity - 1);
+            while (keys[slot] != 0L) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            keys[slot] = key;
+            positions[slot] = ngramPosition.getValue();
+        }
+        if (quantizationBits == 0) {
+            return new PackedNgramTable(keys, positions, offsets, languages, probabilities, null, null, new float[0]);
+        }
+        return quantize(keys, positions, offsets, languages, probabilities, quantizationBits);
+    }
+
+    @NotNull
+    private static PackedNgramTable quantize(@NotNull long[] keys, @NotNull int[] positions, @NotNull int[] offsets, @NotNull char[] languages, @NotNull float[] probabilities, int quantizationBits) {
+        double minimum = Double.POSITIVE_INFINITY;
+        double maximum = Double.NEGATIVE_INFINITY;
+        for (float probability : probabilities) {
+            double log = Math.log(probability);
+            minimum = Math.min(minimum, log);
+            maximum = Math.max(maximum, log);
+        }
+        int size = 1 << quantizationBits;
+        double step = probabilities.length == 0 || maximum == minimum ? 0d : (maximum - minimum) / (size - 1);
+        float[] levels = new float[size];
+        for (int code = 0; code < size; code++) {
+            levels[code] = (float) Math.exp(minimum + code * step);
+        }
+        byte[] byteCodes = quantizationBits == Byte.SIZE ? new byte[probabilities.length] : null;
+        char[] charCodes = quantizationBits == Character.SIZE ? new char[probabilities.length] : null;
+        for (int entry = 0; entry < probabilities.length; entry++) {
+            int code = step == 0d ? 0 : (int) Math.round((Math.log(probabilities[entry]) - minimum) / step);
+            if (byteCodes != null) {
+                byteCodes[entry] = (byte) code;
+            } else {
+                charCodes[entry] = (char) code;
+            }
+        }
+        return new PackedNgramTable(keys, positions, offsets, languages, null, byteCodes, charCodes, levels);
+    }
+
+    /**
+     * @return the position of the n-gram, or -1 if no language profile knows it.
+     */
+    int getPosition(@NotNull CharSequence ngram) {
+        return getPosition(PackedNgrams.pack(ngram));
+    }
+
+    /**
+     * @param key see {@link PackedNgrams}, negative values are never found.
+     * @return the position of the n-gram, or -1 if no language profile knows it.
+     */
+    int getPosition(long key) {
+        if (key < 0L) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask);; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return positions[slot];
+            }
+            if (current == 0L) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return the first entry of the n-gram at the position.
+     */
+    int getBegin(int position) {
+        return offsets[position];
+    }
+
+    /**
+     * @return the entry after the last one of the n-gram at the position.
+     */
+    int getEnd(int position) {
+        return offsets[position + 1];
+    }
+
+    /**
+     * @return the index into the language list.
+     */
+    int getLanguage(int entry) {
+        return languages[entry];
+    }
+
+    float getProbability(int entry) {
+        if (probabilities != null) {
+            return probabilities[entry];
+        }
+        if (byteCodes != null) {
+            return levels[byteCodes[entry] & 0xFF];
+        }
+        return levels[charCodes[entry]];
+    }
+
+    /**
+     * @return the number of n-grams.
+     */
+    int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return dense probabilities in the order of the language list.
+     */
+    @NotNull
+    double[] getProbabilities(int position, int langsize) {
+        double[] dense = new double[langsize];
+        for (int entry = offsets[position], end = offsets[position + 1]; entry < end; entry++) {
+            dense[languages[entry]] = getProbability(entry);
+        }
+        return dense;
+    }
+
+    /**
+     * @return the bytes held by the arrays, without the object headers.
+     */
+    long getMemorySize() {
+        long size = keys.length * (long) Long.BYTES + positions.length * (long) Integer.BYTES + offsets.length * (long) Integer.BYTES + languages.length * (long) Character.BYTES + levels.length * (long) Float.BYTES;
+        if (probabilities != null) {
+            size += probabilities.length * (long) Float.BYTES;
+        }
+        if (byteCodes != null) {
+            size += byteCodes.length;
+        }
+        if (charCodes != null) {
+            size += charCodes.length * (long) Character.BYTES;
+        }
+        return size;
+    }
+
+    /**
+     * @return all n-grams by position, decoded (creates new strings).
+     */
+    @NotNull
+    String[] getNgrams() {
+        String[] ngrams = new String[size()];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0L) {
+                ngrams[positions[slot]] = PackedNgrams.unpack(keys[slot]);
+            }
+        }
+        return ngrams;
+    }
+
+}
@@ -17,19 +17,35 @@
 package com.optimaize.langdetect.cybozu;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -71,6 +87,13 @@ public class CommandLineInterface {
     /** smoothing default parameter (ELE) */
     private static final double DEFAULT_ALPHA = 0.5;
 
+    /** for the streaming batch test */
+    private static final int STREAM_BUFFER_SIZE = 1 << 20;
+    private static final int STREAM_BATCH_SIZE = 1024;
+    private static final int STREAM_BATCHES_PER_THREAD = 4;
+    /** so that the number of batches in flight fits an int */
+    private static final int STREAM_MAXIMUM_THREADS = Integer.MAX_VALUE / STREAM_BATCHES_PER_THREAD;
+
     /** for Command line easy parser */
     private final Map<String, String> opt_with_value = new HashMap<>();
     private final Map<String, String> values = new HashMap<>();
@@ -87,6 +110,8 @@ public class CommandLineInterface {
         cli.addOpt("-d", "directory", "./");
         cli.addOpt("-a", "alpha", "" + DEFAULT_ALPHA);
         cli.addOpt("-s", "seed", null);
+        cli.addOpt("-t", "threads", null);
+        cli.addOpt("-o", "output", null);
         cli.parse(args);
 
         if (cli.hasParam("--genprofile")) {
@@ -95,6 +120,8 @@ public class CommandLineInterface {
             cli.detectLang();
         } else if (cli.hasParam("--batchtest")) {
             cli.batchTest();
+        } else if (cli.hasParam("--batchstream")) {
+            cli.batchStream();
         }
     }
 
@@ -301,16 +328,292 @@ public class CommandLineInterface {
         }
     }
 
+    /**
+     * Streaming Batch Test of Language Detection (--batchstream option)
+     * 
+     * <pre>
+     * usage: --batchstream -d [profile directory] -a [alpha] -s [seed] -t [threads] -o [output file] [test data(s)]
+     * </pre>
+     * 
+     * The same test data as {@link #batchTest()}, for files of any size: the lines are read in batches, detected on a pool of threads (default: one per core), and written in their original order as soon as their batch is done, each prefixed with the detected language and a tab. Lines without a correct language are detected as a whole, but not counted. The results go to the output file, or to stdout; the report with the confusion counts, the throughput and the latency percentiles goes to stderr.
+     * 
+     */
+    public void batchStream() throws IOException {
+        Long threadsParam = getParamLongOrNull("threads");
+        if (threadsParam != null && (threadsParam < 1 || threadsParam > STREAM_MAXIMUM_THREADS)) {
+            throw new RuntimeException("Invalid threads value: >>>" + threadsParam + "<<<, must be between 1 and " + STREAM_MAXIMUM_THREADS);
+        }
+        int threads = threadsParam == null ? Runtime.getRuntime().availableProcessors() : threadsParam.intValue();
+        String output = values.get("output");
+        List<LanguageProfile> languageProfiles = readProfiles();
+        LanguageDetector languageDetector = makeDetector(languageProfiles);
+        TextObjectFactory textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
+
+        // the column of each detected language, the last one is unknown
+        Map<Locale, Integer> columns = new HashMap<>();
+        List<String> columnNames = new ArrayList<>();
+        for (LanguageProfile languageProfile : languageProfiles) {
+            columns.put(languageProfile.getLocale(), columnNames.size());
+            columnNames.add(languageProfile.getLocale().toLanguageTag());
+        }
+        columnNames.add("unknown");
+        BatchStream stream = new BatchStream(columnNames);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Batch>> pending = new ArrayDeque<>();
+        long start = System.nanoTime();
+        OutputStream out = output == null ? new UnclosableOutputStream(System.out) : Files.newOutputStream(Paths.get(output));
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            for (String filename : arglist) {
+                try (BufferedReader is = new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(filename)), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+                    List<String> lines = new ArrayList<>(STREAM_BATCH_SIZE);
+                    String line;
+                    while ((line = is.readLine()) != null) {
+                        lines.add(line);
+                        if (lines.size() == STREAM_BATCH_SIZE) {
+                            submit(executor, pending, new Batch(lines), languageDetector, textObjectFactory, columns, threads, stream, writer);
+                            lines = new ArrayList<>(STREAM_BATCH_SIZE);
+                        }
+                    }
+                    if (!lines.isEmpty()) {
+                        submit(executor, pending, new Batch(lines), languageDetector, textObjectFactory, columns, threads, stream, writer);
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                stream.write(complete(pending.poll()), writer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        stream.report(System.nanoTime() - start);
+    }
+
+    /**
+     * Submits the batch, after writing the oldest ones while too many are in flight.
+     */
+    private static void submit(@NotNull ExecutorService executor, @NotNull Deque<Future<Batch>> pending, @NotNull Batch batch, @NotNull LanguageDetector languageDetector, @NotNull TextObjectFactory textObjectFactory, @NotNull Map<Locale, Integer> columns, int threads, @NotNull BatchStream stream, @NotNull Writer writer) throws IOException {
+        while (pending.size() >= threads * STREAM_BATCHES_PER_THREAD) {
+            stream.write(complete(pending.poll()), writer);
+        }
+        pending.add(executor.submit(() -> batch.detect(languageDetector, textObjectFactory, columns)));
+    }
+
+    @NotNull
+    private static Batch complete(@NotNull Future<Batch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while detecting");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Stdout for the streaming batch test: closing it only flushes it, so that it stays usable after the test.
+     */
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+
+        private UnclosableOutputStream(@NotNull OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Lines of the streaming batch test, and their results.
+     */
+    private static final class Batch {
+
+        @NotNull
+        private final List<String> lines;
+        /** the column of the detected language per line */
+        @NotNull
+        private final int[] detected;
+        @NotNull
+        private final long[] nanos;
+
+        private Batch(@NotNull List<String> lines) {
+            this.lines = lines;
+            this.detected = new int[lines.size()];
+            this.nanos = new long[lines.size()];
+        }
+
+        @NotNull
+        private Batch detect(@NotNull LanguageDetector languageDetector, @NotNull TextObjectFactory textObjectFactory, @NotNull Map<Locale, Integer> columns) {
+            for (int index = 0; index < detected.length; index++) {
+                String line = lines.get(index);
+                int idx = line.indexOf('\t');
+                long start = System.nanoTime();
+                Optional<Locale> lang = languageDetector.detect(textObjectFactory.forText(idx <= 0 ? line : line.substring(idx + 1)));
+                nanos[index] = System.nanoTime() - start;
+                detected[index] = lang.isPresent() ? columns.get(lang.get()) : columns.size();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The counters of the streaming batch test, only used by the thread that writes.
+     */
+    static final class BatchStream {
+
+        /** 8 buckets per power of two, so the percentiles are within 12.5% */
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        @NotNull
+        private final List<String> columnNames;
+        /** the detected languages per correct language, as columns */
+        private final Map<String, long[]> confusion = new TreeMap<>();
+        private final long[] latencies = new long[(Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+        private long lineCount;
+        private long charCount;
+        private long maximumNanos;
+
+        BatchStream(@NotNull List<String> columnNames) {
+            this.columnNames = columnNames;
+        }
+
+        private void write(@NotNull Batch batch, @NotNull Writer writer) throws IOException {
+            for (int index = 0; index < batch.detected.length; index++) {
+                String line = batch.lines.get(index);
+                int column = batch.detected[index];
+                writer.write(columnNames.get(column));
+                writer.write('\t');
+                writer.write(line);
+                writer.write('\n');
+
+                int idx = line.indexOf('\t');
+                if (idx > 0) {
+                    String correctLang = line.substring(0, idx);
+                    long[] counts = confusion.get(correctLang);
+                    if (counts == null) {
+                        counts = new long[columnNames.size()];
+                        confusion.put(correctLang, counts);
+                    }
+                    counts[column]++;
+                }
+                record(batch.nanos[index]);
+                charCount += line.length();
+            }
+        }
+
+        /**
+         * Counts a line with its detection time.
+         */
+        void record(long nanos) {
+            latencies[bucket(nanos)]++;
+            maximumNanos = Math.max(maximumNanos, nanos);
+            lineCount++;
+        }
+
+        /**
+         * @return the latency bucket: exact below 8ns, then 8 per power of two.
+         */
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(nanos, 0L);
+            }
+            int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * @return the lower bound of the bucket.
+         */
+        static long lowest(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        /**
+         * @return the lower bound of the bucket of the given percentile, or the maximum if no line was counted.
+         */
+        long percentile(double percentile) {
+            long rank = (long) Math.ceil(lineCount * percentile);
+            long seen = 0L;
+            for (int bucket = 0; bucket < latencies.length; bucket++) {
+                seen += latencies[bucket];
+                if (seen >= rank && seen > 0L) {
+                    return lowest(bucket);
+                }
+            }
+            return maximumNanos;
+        }
+
+        private void report(long elapsedNanos) {
+            long totalCount = 0, totalCorrect = 0;
+            for (Map.Entry<String, long[]> entry : confusion.entrySet()) {
+                String lang = entry.getKey();
+                long[] counts = entry.getValue();
+                long count = 0, correct = 0;
+                StringBuilder resultCount = new StringBuilder("{");
+                for (int column = 0; column < counts.length; column++) {
+                    if (counts[column] == 0L) {
+                        continue;
+                    }
+                    count += counts[column];
+                    if (columnNames.get(column).equals(lang)) {
+                        correct = counts[column];
+                    }
+                    if (resultCount.length() > 1) {
+                        resultCount.append(", ");
+                    }
+                    resultCount.append(columnNames.get(column)).append('=').append(counts[column]);
+                }
+                resultCount.append('}');
+                System.err.println(String.format(Locale.ROOT, "%s (%d/%d=%.2f): %s", lang, correct, count, correct / (double) count, resultCount));
+                totalCorrect += correct;
+                totalCount += count;
+            }
+            if (totalCount > 0) {
+                System.err.println(String.format(Locale.ROOT, "total: %d/%d = %.3f", totalCorrect, totalCount, totalCorrect / (double) totalCount));
+            }
+            double seconds = elapsedNanos / 1E9;
+            System.err.println(String.format(Locale.ROOT, "lines: %d in %.1fs = %.0f lines/s, %.1f MB/s", lineCount, seconds, lineCount / seconds, charCount / seconds / 1E6));
+            System.err.println(String.format(Locale.ROOT, "latency: p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms", percentile(0.5) / 1E6, percentile(0.9) / 1E6, percentile(0.99) / 1E6, percentile(0.999) / 1E6, maximumNanos / 1E6));
+        }
+    }
+
+    /**
+     * All language profiles from the given directory.
+     */
+    @NotNull
+    private List<LanguageProfile> readProfiles() throws IOException {
+        String profileDirectory = requireParamString("directory") + "/";
+        return new LanguageProfileReader().readAll(new File(profileDirectory));
+    }
+
     /**
      * Using all language profiles from the given directory.
      */
     private LanguageDetector makeDetector() throws IOException {
+        return makeDetector(readProfiles());
+    }
+
+    private LanguageDetector makeDetector(@NotNull List<LanguageProfile> languageProfiles) {
         double alpha = getParamDouble("alpha", DEFAULT_ALPHA);
-        String profileDirectory = requireParamString("directory") + "/";
         Optional<Long> seed = Optional.fromNullable(getParamLongOrNull("seed"));
 
-        List<LanguageProfile> languageProfiles = new LanguageProfileReader().readAll(new File(profileDirectory));
-
         return LanguageDetectorBuilder.create(NgramExtractors.standard()).alpha(alpha).seed(seed).shortTextAlgorithm(50).withProfiles(languageProfiles).build();
     }
 
@@ -16,6 +16,15 @@
 
 package com.optimaize.langdetect.cybozu.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,100 +33,185 @@ import java.util.Map;
  *
  * This functionality was previously embedded in the NGram class.
  *
+ * <p>
+ * The normalization of all 65536 chars is held in one flat table. It is read from the resource {@value #TABLE_RESOURCE}, which is generated at build time by {@link #main(String[])}, and only computed from the unicode blocks when the resource is missing.
+ * </p>
+ *
  * @author Nakatani Shuyo
  * @author Fabian Kessler
  * @author aoking
  */
 public class CharNormalizer {
 
+    static final String TABLE_RESOURCE = "char-normalizer.bin";
+
+    /**
+     * The resource stores the table in blocks of this many chars, equal blocks only once.
+     */
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /**
+     * Normalized char per char.
+     */
+    private static final char[] TABLE = loadTable();
+
     /**
      * Character Normalization (and exclusion).
      * 
      * @return Normalized character, the space to exclude the character.
      */
     public static char normalize(char ch) {
-        // this is even cheaper than the hashmap lookup. because it covers most use
-        // cases, it's worth the check.
-        if (ch <= 127) { // ascii (basic latin)
-            if (ch < 'A' || (ch < 'a' && ch > 'Z') || ch > 'z') {
-                return ' ';
-            } else {
-                return ch;
+        return TABLE[ch];
+    }
+
+    /**
+     * Normalizes len chars of src starting at off, and writes them to dst at the same offsets. src and dst may be the same array.
+     */
+    public static void normalize(char[] src, int off, int len, char[] dst) {
+        char[] table = TABLE;
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = table[src[i]];
+        }
+    }
+
+    private static char[] loadTable() {
+        try (InputStream in = CharNormalizer.class.getResourceAsStream(TABLE_RESOURCE)) {
+            if (in != null) {
+                return readTable(in);
             }
+        } catch (IOException e) {
+            // computed below
         }
+        return TableBuilder.build();
+    }
 
-        Character result = NORMALIZE_MAP.get(ch);
-        return result == null ? ch : result;
+    private static char[] readTable(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        char[] indexes = new char[(Character.MAX_VALUE + 1) >>> BLOCK_SHIFT];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = data.readChar();
+        }
+        char[][] blocks = new char[data.readInt()][BLOCK_SIZE];
+        for (char[] block : blocks) {
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                block[i] = data.readChar();
+            }
+        }
+        char[] table = new char[Character.MAX_VALUE + 1];
+        for (int i = 0; i < indexes.length; i++) {
+            System.arraycopy(blocks[indexes[i]], 0, table, i << BLOCK_SHIFT, BLOCK_SIZE);
+        }
+        return table;
     }
 
-    private static char normalize0(char ch) {
-        Character.UnicodeBlock block = Character.UnicodeBlock.of(ch);
-        if (block == Character.UnicodeBlock.BASIC_LATIN) { // see https://en.wikipedia.org/wiki/Basic_Latin_(Unicode_block)
-            if (ch < 'A' || (ch < 'a' && ch > 'Z') || ch > 'z')
-                ch = ' ';
-        } else if (block == Character.UnicodeBlock.LATIN_1_SUPPLEMENT) {
-            if (LATIN1_EXCLUDED.indexOf(ch) >= 0)
-                ch = ' ';
-        } else if (block == Character.UnicodeBlock.GENERAL_PUNCTUATION) {
-            ch = ' ';
-        } else if (block == Character.UnicodeBlock.ARABIC) {
-            if (ch == '\u06cc')
-                ch = '\u064a';
-        } else if (block == Character.UnicodeBlock.LATIN_EXTENDED_ADDITIONAL) {
-            if (ch >= '\u1ea0')
-                ch = '\u1ec3';
-        } else if (block == Character.UnicodeBlock.HIRAGANA) {
-            ch = '\u3042';
-        } else if (block == Character.UnicodeBlock.KATAKANA) {
-            ch = '\u30a2';
-        } else if (block == Character.UnicodeBlock.BOPOMOFO || block == Character.UnicodeBlock.BOPOMOFO_EXTENDED) {
-            ch = '\u3105';
-        } else if (block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS) {
-            if (CJK_MAP.containsKey(ch))
-                ch = CJK_MAP.get(ch);
-        } else if (block == Character.UnicodeBlock.HANGUL_SYLLABLES) {
-            ch = '\uac00';
+    private static void writeTable(char[] table, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        Map<String, Character> shares = new HashMap<>();
+        StringBuilder blocks = new StringBuilder();
+        for (int i = 0; i < table.length; i += BLOCK_SIZE) {
+            String block = new String(table, i, BLOCK_SIZE);
+            Character share = shares.get(block);
+            if (share == null) {
+                share = (char) shares.size();
+                shares.put(block, share);
+                blocks.append(block);
+            }
+            data.writeChar(share);
         }
-        return ch;
+        data.writeInt(shares.size());
+        data.writeChars(blocks.toString());
+        data.flush();
     }
 
-    private static final String LATIN1_EXCLUDED = Messages.getString("NGram.LATIN1_EXCLUDE");
-    private static final Map<Character, Character> CJK_MAP = new HashMap<>();;
     /**
-     * Has mappings for overrides. What's not in the map means keep the original.
+     * Computes the table from the unicode blocks, and writes it as resource {@value #TABLE_RESOURCE}.
+     *
+     * @param args the output directory of this package.
      */
-    private static final Map<Character, Character> NORMALIZE_MAP = new HashMap<>();;
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args[0]);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+        try (OutputStream out = new FileOutputStream(new File(directory, TABLE_RESOURCE))) {
+            writeTable(TableBuilder.build(), out);
+        }
+    }
 
     /**
-     * CJK Kanji Normalization Mapping
+     * Only loaded when the table is computed.
      */
-    private static final String[] CJK_CLASS = { Messages.getString("NGram.KANJI_1_0"), Messages.getString("NGram.KANJI_1_2"), Messages.getString("NGram.KANJI_1_4"), Messages.getString("NGram.KANJI_1_8"), Messages.getString("NGram.KANJI_1_11"), Messages.getString("NGram.KANJI_1_12"), Messages.getString("NGram.KANJI_1_13"), Messages.getString("NGram.KANJI_1_14"), Messages.getString("NGram.KANJI_1_16"), Messages.getString("NGram.KANJI_1_18"), Messages.getString("NGram.KANJI_1_22"),
-            Messages.getString("NGram.KANJI_1_27"), Messages.getString("NGram.KANJI_1_29"), Messages.getString("NGram.KANJI_1_31"), Messages.getString("NGram.KANJI_1_35"), Messages.getString("NGram.KANJI_2_0"), Messages.getString("NGram.KANJI_2_1"), Messages.getString("NGram.KANJI_2_4"), Messages.getString("NGram.KANJI_2_9"), Messages.getString("NGram.KANJI_2_10"), Messages.getString("NGram.KANJI_2_11"), Messages.getString("NGram.KANJI_2_12"), Messages.getString("NGram.KANJI_2_13"),
-            Messages.getString("NGram.KANJI_2_15"), Messages.getString("NGram.KANJI_2_16"), Messages.getString("NGram.KANJI_2_18"), Messages.getString("NGram.KANJI_2_21"), Messages.getString("NGram.KANJI_2_22"), Messages.getString("NGram.KANJI_2_23"), Messages.getString("NGram.KANJI_2_28"), Messages.getString("NGram.KANJI_2_29"), Messages.getString("NGram.KANJI_2_30"), Messages.getString("NGram.KANJI_2_31"), Messages.getString("NGram.KANJI_2_32"), Messages.getString("NGram.KANJI_2_35"),
-            Messages.getString("NGram.KANJI_2_36"), Messages.getString("NGram.KANJI_2_37"), Messages.getString("NGram.KANJI_2_38"), Messages.getString("NGram.KANJI_3_1"), Messages.getString("NGram.KANJI_3_2"), Messages.getString("NGram.KANJI_3_3"), Messages.getString("NGram.KANJI_3_4"), Messages.getString("NGram.KANJI_3_5"), Messages.getString("NGram.KANJI_3_8"), Messages.getString("NGram.KANJI_3_9"), Messages.getString("NGram.KANJI_3_11"), Messages.getString("NGram.KANJI_3_12"),
-            Messages.getString("NGram.KANJI_3_13"), Messages.getString("NGram.KANJI_3_15"), Messages.getString("NGram.KANJI_3_16"), Messages.getString("NGram.KANJI_3_18"), Messages.getString("NGram.KANJI_3_19"), Messages.getString("NGram.KANJI_3_22"), Messages.getString("NGram.KANJI_3_23"), Messages.getString("NGram.KANJI_3_27"), Messages.getString("NGram.KANJI_3_29"), Messages.getString("NGram.KANJI_3_30"), Messages.getString("NGram.KANJI_3_31"), Messages.getString("NGram.KANJI_3_32"),
-            Messages.getString("NGram.KANJI_3_35"), Messages.getString("NGram.KANJI_3_36"), Messages.getString("NGram.KANJI_3_37"), Messages.getString("NGram.KANJI_3_38"), Messages.getString("NGram.KANJI_4_0"), Messages.getString("NGram.KANJI_4_9"), Messages.getString("NGram.KANJI_4_10"), Messages.getString("NGram.KANJI_4_16"), Messages.getString("NGram.KANJI_4_17"), Messages.getString("NGram.KANJI_4_18"), Messages.getString("NGram.KANJI_4_22"), Messages.getString("NGram.KANJI_4_24"),
-            Messages.getString("NGram.KANJI_4_28"), Messages.getString("NGram.KANJI_4_34"), Messages.getString("NGram.KANJI_4_39"), Messages.getString("NGram.KANJI_5_10"), Messages.getString("NGram.KANJI_5_11"), Messages.getString("NGram.KANJI_5_12"), Messages.getString("NGram.KANJI_5_13"), Messages.getString("NGram.KANJI_5_14"), Messages.getString("NGram.KANJI_5_18"), Messages.getString("NGram.KANJI_5_26"), Messages.getString("NGram.KANJI_5_29"), Messages.getString("NGram.KANJI_5_34"),
-            Messages.getString("NGram.KANJI_5_39"), Messages.getString("NGram.KANJI_6_0"), Messages.getString("NGram.KANJI_6_3"), Messages.getString("NGram.KANJI_6_9"), Messages.getString("NGram.KANJI_6_10"), Messages.getString("NGram.KANJI_6_11"), Messages.getString("NGram.KANJI_6_12"), Messages.getString("NGram.KANJI_6_16"), Messages.getString("NGram.KANJI_6_18"), Messages.getString("NGram.KANJI_6_20"), Messages.getString("NGram.KANJI_6_21"), Messages.getString("NGram.KANJI_6_22"),
-            Messages.getString("NGram.KANJI_6_23"), Messages.getString("NGram.KANJI_6_25"), Messages.getString("NGram.KANJI_6_28"), Messages.getString("NGram.KANJI_6_29"), Messages.getString("NGram.KANJI_6_30"), Messages.getString("NGram.KANJI_6_32"), Messages.getString("NGram.KANJI_6_34"), Messages.getString("NGram.KANJI_6_35"), Messages.getString("NGram.KANJI_6_37"), Messages.getString("NGram.KANJI_6_39"), Messages.getString("NGram.KANJI_7_0"), Messages.getString("NGram.KANJI_7_3"),
-            Messages.getString("NGram.KANJI_7_6"), Messages.getString("NGram.KANJI_7_7"), Messages.getString("NGram.KANJI_7_9"), Messages.getString("NGram.KANJI_7_11"), Messages.getString("NGram.KANJI_7_12"), Messages.getString("NGram.KANJI_7_13"), Messages.getString("NGram.KANJI_7_16"), Messages.getString("NGram.KANJI_7_18"), Messages.getString("NGram.KANJI_7_19"), Messages.getString("NGram.KANJI_7_20"), Messages.getString("NGram.KANJI_7_21"), Messages.getString("NGram.KANJI_7_23"),
-            Messages.getString("NGram.KANJI_7_25"), Messages.getString("NGram.KANJI_7_28"), Messages.getString("NGram.KANJI_7_29"), Messages.getString("NGram.KANJI_7_32"), Messages.getString("NGram.KANJI_7_33"), Messages.getString("NGram.KANJI_7_35"), Messages.getString("NGram.KANJI_7_37"), };
-
-    static {
-        for (String cjk_list : CJK_CLASS) {
-            char representative = cjk_list.charAt(0);
-            for (int i = 0; i < cjk_list.length(); ++i) {
-                CJK_MAP.put(cjk_list.charAt(i), representative);
+    private static class TableBuilder {
+
+        private static final String LATIN1_EXCLUDED = Messages.getString("NGram.LATIN1_EXCLUDE");
+        private static final Map<Character, Character> CJK_MAP = new HashMap<>();
+
+        /**
+         * CJK Kanji Normalization Mapping
+         */
+        private static final String[] CJK_CLASS = { Messages.getString("NGram.KANJI_1_0"), Messages.getString("NGram.KANJI_1_2"), Messages.getString("NGram.KANJI_1_4"), Messages.getString("NGram.KANJI_1_8"), Messages.getString("NGram.KANJI_1_11"), Messages.getString("NGram.KANJI_1_12"), Messages.getString("NGram.KANJI_1_13"), Messages.getString("NGram.KANJI_1_14"), Messages.getString("NGram.KANJI_1_16"), Messages.getString("NGram.KANJI_1_18"), Messages.getString("NGram.KANJI_1_22"),
+                Messages.getString("NGram.KANJI_1_27"), Messages.getString("NGram.KANJI_1_29"), Messages.getString("NGram.KANJI_1_31"), Messages.getString("NGram.KANJI_1_35"), Messages.getString("NGram.KANJI_2_0"), Messages.getString("NGram.KANJI_2_1"), Messages.getString("NGram.KANJI_2_4"), Messages.getString("NGram.KANJI_2_9"), Messages.getString("NGram.KANJI_2_10"), Messages.getString("NGram.KANJI_2_11"), Messages.getString("NGram.KANJI_2_12"), Messages.getString("NGram.KANJI_2_13"),
+                Messages.getString("NGram.KANJI_2_15"), Messages.getString("NGram.KANJI_2_16"), Messages.getString("NGram.KANJI_2_18"), Messages.getString("NGram.KANJI_2_21"), Messages.getString("NGram.KANJI_2_22"), Messages.getString("NGram.KANJI_2_23"), Messages.getString("NGram.KANJI_2_28"), Messages.getString("NGram.KANJI_2_29"), Messages.getString("NGram.KANJI_2_30"), Messages.getString("NGram.KANJI_2_31"), Messages.getString("NGram.KANJI_2_32"), Messages.getString("NGram.KANJI_2_35"),
+                Messages.getString("NGram.KANJI_2_36"), Messages.getString("NGram.KANJI_2_37"), Messages.getString("NGram.KANJI_2_38"), Messages.getString("NGram.KANJI_3_1"), Messages.getString("NGram.KANJI_3_2"), Messages.getString("NGram.KANJI_3_3"), Messages.getString("NGram.KANJI_3_4"), Messages.getString("NGram.KANJI_3_5"), Messages.getString("NGram.KANJI_3_8"), Messages.getString("NGram.KANJI_3_9"), Messages.getString("NGram.KANJI_3_11"), Messages.getString("NGram.KANJI_3_12"),
+                Messages.getString("NGram.KANJI_3_13"), Messages.getString("NGram.KANJI_3_15"), Messages.getString("NGram.KANJI_3_16"), Messages.getString("NGram.KANJI_3_18"), Messages.getString("NGram.KANJI_3_19"), Messages.getString("NGram.KANJI_3_22"), Messages.getString("NGram.KANJI_3_23"), Messages.getString("NGram.KANJI_3_27"), Messages.getString("NGram.KANJI_3_29"), Messages.getString("NGram.KANJI_3_30"), Messages.getString("NGram.KANJI_3_31"), Messages.getString("NGram.KANJI_3_32"),
+                Messages.getString("NGram.KANJI_3_35"), Messages.getString("NGram.KANJI_3_36"), Messages.getString("NGram.KANJI_3_37"), Messages.getString("NGram.KANJI_3_38"), Messages.getString("NGram.KANJI_4_0"), Messages.getString("NGram.KANJI_4_9"), Messages.getString("NGram.KANJI_4_10"), Messages.getString("NGram.KANJI_4_16"), Messages.getString("NGram.KANJI_4_17"), Messages.getString("NGram.KANJI_4_18"), Messages.getString("NGram.KANJI_4_22"), Messages.getString("NGram.KANJI_4_24"),
+                Messages.getString("NGram.KANJI_4_28"), Messages.getString("NGram.KANJI_4_34"), Messages.getString("NGram.KANJI_4_39"), Messages.getString("NGram.KANJI_5_10"), Messages.getString("NGram.KANJI_5_11"), Messages.getString("NGram.KANJI_5_12"), Messages.getString("NGram.KANJI_5_13"), Messages.getString("NGram.KANJI_5_14"), Messages.getString("NGram.KANJI_5_18"), Messages.getString("NGram.KANJI_5_26"), Messages.getString("NGram.KANJI_5_29"), Messages.getString("NGram.KANJI_5_34"),
+                Messages.getString("NGram.KANJI_5_39"), Messages.getString("NGram.KANJI_6_0"), Messages.getString("NGram.KANJI_6_3"), Messages.getString("NGram.KANJI_6_9"), Messages.getString("NGram.KANJI_6_10"), Messages.getString("NGram.KANJI_6_11"), Messages.getString("NGram.KANJI_6_12"), Messages.getString("NGram.KANJI_6_16"), Messages.getString("NGram.KANJI_6_18"), Messages.getString("NGram.KANJI_6_20"), Messages.getString("NGram.KANJI_6_21"), Messages.getString("NGram.KANJI_6_22"),
+                Messages.getString("NGram.KANJI_6_23"), Messages.getString("NGram.KANJI_6_25"), Messages.getString("NGram.KANJI_6_28"), Messages.getString("NGram.KANJI_6_29"), Messages.getString("NGram.KANJI_6_30"), Messages.getString("NGram.KANJI_6_32"), Messages.getString("NGram.KANJI_6_34"), Messages.getString("NGram.KANJI_6_35"), Messages.getString("NGram.KANJI_6_37"), Messages.getString("NGram.KANJI_6_39"), Messages.getString("NGram.KANJI_7_0"), Messages.getString("NGram.KANJI_7_3"),
+                Messages.getString("NGram.KANJI_7_6"), Messages.getString("NGram.KANJI_7_7"), Messages.getString("NGram.KANJI_7_9"), Messages.getString("NGram.KANJI_7_11"), Messages.getString("NGram.KANJI_7_12"), Messages.getString("NGram.KANJI_7_13"), Messages.getString("NGram.KANJI_7_16"), Messages.getString("NGram.KANJI_7_18"), Messages.getString("NGram.KANJI_7_19"), Messages.getString("NGram.KANJI_7_20"), Messages.getString("NGram.KANJI_7_21"), Messages.getString("NGram.KANJI_7_23"),
+                Messages.getString("NGram.KANJI_7_25"), Messages.getString("NGram.KANJI_7_28"), Messages.getString("NGram.KANJI_7_29"), Messages.getString("NGram.KANJI_7_32"), Messages.getString("NGram.KANJI_7_33"), Messages.getString("NGram.KANJI_7_35"), Messages.getString("NGram.KANJI_7_37"), };
+
+        static {
+            for (String cjk_list : CJK_CLASS) {
+                char representative = cjk_list.charAt(0);
+                for (int i = 0; i < cjk_list.length(); ++i) {
+                    CJK_MAP.put(cjk_list.charAt(i), representative);
+                }
+            }
+        }
+
+        private static char[] build() {
+            char[] table = new char[Character.MAX_VALUE + 1];
+            // using int because char would loop infinitely thanks to resetting to 0 after
+            // 65535
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                table[c] = normalize0((char) c);
             }
+            return table;
         }
 
-        // using int because char would loop infinitely thanks to resetting to 0 after
-        // 65535
-        for (int c = 0; c <= 65535; c++) {
-            char x = normalize0((char) c);
-            if (c != x) {
-                NORMALIZE_MAP.put((char) c, x);
+        private static char normalize0(char ch) {
+            Character.UnicodeBlock block = Character.UnicodeBlock.of(ch);
+            if (block == Character.UnicodeBlock.BASIC_LATIN) { // see https://en.wikipedia.org/wiki/Basic_Latin_(Unicode_block)
+                if (ch < 'A' || (ch < 'a' && ch > 'Z') || ch > 'z')
+                    ch = ' ';
+            } else if (block == Character.UnicodeBlock.LATIN_1_SUPPLEMENT) {
+                if (LATIN1_EXCLUDED.indexOf(ch) >= 0)
+                    ch = ' ';
+            } else if (block == Character.UnicodeBlock.GENERAL_PUNCTUATION) {
+                ch = ' ';
+            } else if (block == Character.UnicodeBlock.ARABIC) {
+                if (ch == '\u06cc')
+                    ch = '\u064a';
+            } else if (block == Character.UnicodeBlock.LATIN_EXTENDED_ADDITIONAL) {
+                if (ch >= '\u1ea0')
+                    ch = '\u1ec3';
+            } else if (block == Character.UnicodeBlock.HIRAGANA) {
+                ch = '\u3042';
+            } else if (block == Character.UnicodeBlock.KATAKANA) {
+                ch = '\u30a2';
+            } else if (block == Character.UnicodeBlock.BOPOMOFO || block == Character.UnicodeBlock.BOPOMOFO_EXTENDED) {
+                ch = '\u3105';
+            } else if (block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS) {
+                if (CJK_MAP.containsKey(ch))
+                    ch = CJK_MAP.get(ch);
+            } else if (block == Character.UnicodeBlock.HANGUL_SYLLABLES) {
+                ch = '\uac00';
             }
+            return ch;
         }
+
     }
+
 }
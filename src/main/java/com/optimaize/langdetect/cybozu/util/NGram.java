@@ -43,7 +43,13 @@ public class NGram {
     }
 
     public void addChar(char ch) {
-        ch = CharNormalizer.normalize(ch);
+        addNormalizedChar(CharNormalizer.normalize(ch));
+    }
+
+    /**
+     * Same as {@link #addChar(char)} for a char that went through {@link CharNormalizer} already.
+     */
+    public void addNormalizedChar(char ch) {
         char lastChar = grams_.charAt(grams_.length() - 1);
         if (lastChar == ' ') {
             grams_ = new StringBuilder(" ");
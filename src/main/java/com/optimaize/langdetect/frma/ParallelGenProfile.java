@@ -0,0 +1,354 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.frma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.optimaize.langdetect.cybozu.util.LangProfile;
+import com.optimaize.langdetect.ngram.OldNgramExtractor;
+import com.optimaize.langdetect.ngram.PackedNgramCounter;
+import com.optimaize.langdetect.ngram.PackedNgrams;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileBuilder;
+import com.optimaize.langdetect.profiles.LanguageProfileWriter;
+import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.TextObject;
+import com.optimaize.langdetect.text.TextObjectFactory;
+
+/**
+ * Generates a language profile from a text file like {@link GenProfile}, with the same n-gram counts, but on all cores.
+ *
+ * <p>
+ * A plain file is split into chunks at line ends, and every chunk is memory-mapped, decoded and counted by a task of the {@link ForkJoinPool}. A gzipped file can't be split, so it is decoded by the calling thread, and batches of lines are counted by the pool. Every worker thread counts packed n-grams into its own {@link PackedNgramCounter}, the counters are merged at the end.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code ParallelGenProfile <language> <textFile> <outputDirectory>} writes the profile in the JSON format of {@link LangProfileWriter} to a file named like the language, and in the binary format of {@link LanguageProfileWriter#writeBinary} to one with the suffix ".bin". It prints the throughput.
+ * </p>
+ *
+ * @author Birdy
+ */
+public class ParallelGenProfile {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelGenProfile.class);
+
+    private static final TextObjectFactory textObjectFactory = CommonTextObjectFactories.forIndexing();
+
+    /**
+     * Bytes of a plain file per task.
+     */
+    private static final int CHUNK_SIZE = 8 << 20;
+
+    /**
+     * Chars of a gzipped file per task.
+     */
+    private static final int BATCH_SIZE = 1 << 20;
+
+    @NotNull
+    private final ForkJoinPool pool;
+
+    public ParallelGenProfile() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelGenProfile(@NotNull ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Per worker thread of one run.
+     */
+    private static final class Worker {
+        private final PackedNgramCounter counter = new PackedNgramCounter(1 << 12);
+        private final StringBuilder line = new StringBuilder();
+    }
+
+    /**
+     * One run, the workers register their counters here.
+     */
+    private static final class Run {
+        private final Queue<PackedNgramCounter> counters = new ConcurrentLinkedQueue<>();
+        private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> {
+            Worker worker = new Worker();
+            counters.add(worker.counter);
+            return worker;
+        });
+
+        private void countLine(@NotNull char[] chars, int from, int to) {
+            Worker worker = workers.get();
+            StringBuilder line = worker.line;
+            line.setLength(0);
+            line.append(' ').append(chars, from, to - from).append(' ');
+            TextObject textObject = textObjectFactory.forText(line);
+            OldNgramExtractor.extractPackedNGrams(textObject, worker.counter);
+        }
+
+        /**
+         * Counts the lines of the chars like {@link BufferedReader#readLine()} splits them.
+         */
+        private void countLines(@NotNull char[] chars, int length) {
+            int from = 0;
+            for (int index = 0; index < length; index++) {
+                char c = chars[index];
+                if (c == '\n' || c == '\r') {
+                    countLine(chars, from, index);
+                    if (c == '\r' && index + 1 < length && chars[index + 1] == '\n') {
+                        index++;
+                    }
+                    from = index + 1;
+                }
+            }
+            if (from < length) {
+                countLine(chars, from, length);
+            }
+        }
+
+        @NotNull
+        private PackedNgramCounter merge() {
+            PackedNgramCounter total = new PackedNgramCounter(1 << 16);
+            for (PackedNgramCounter counter : counters) {
+                for (int index = 0; index < counter.size(); index++) {
+                    total.add(counter.getNgram(index), counter.getCount(index));
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Loads a text file and generates a language profile from its content. The input text file is supposed to be encoded in UTF-8, it may be gzipped.
+     *
+     * @param lang     target language name.
+     * @param textFile input text file.
+     * @return Language profile instance, with the same content as from {@link GenProfile#generate}.
+     */
+    @NotNull
+    public LangProfile generate(@NotNull String lang, @NotNull File textFile) {
+        return toLangProfile(lang, count(textFile));
+    }
+
+    @NotNull
+    private static LangProfile toLangProfile(@NotNull String lang, @NotNull PackedNgramCounter counter) {
+        LangProfile profile = new LangProfile(lang);
+        Map<String, Integer> freq = profile.getFreq();
+        int[] nWords = profile.getNWords();
+        for (int index = 0; index < counter.size(); index++) {
+            long ngram = counter.getNgram(index);
+            freq.put(PackedNgrams.unpack(ngram), counter.getCount(index));
+            nWords[PackedNgrams.getLength(ngram) - 1] += counter.getCount(index);
+        }
+        return profile;
+    }
+
+    /**
+     * Same as {@link #generate(String, File)}, as a {@link LanguageProfile}.
+     */
+    @NotNull
+    public LanguageProfile generate(@NotNull Locale locale, @NotNull File textFile) {
+        return new LanguageProfileBuilder(locale).addGrams(count(textFile)).build();
+    }
+
+    /**
+     * @return the n-grams of the file as extracted by {@link OldNgramExtractor}, counted.
+     */
+    @NotNull
+    public PackedNgramCounter count(@NotNull File textFile) {
+        long start = System.nanoTime();
+        Run run = new Run();
+        try {
+            if (textFile.getName().endsWith(".gz")) {
+                countCompressed(run, textFile);
+            } else {
+                countPlain(run, textFile);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't open training database file '" + textFile.getName() + "'", e);
+        }
+        PackedNgramCounter counter = run.merge();
+        if (logger.isInfoEnabled()) {
+            long nanos = System.nanoTime() - start;
+            logger.info("Counted {} distinct n-grams of {} in {} ms, {} MB/s", counter.size(), textFile.getName(), nanos / 1000000, String.format(Locale.ROOT, "%.1f", getThroughput(textFile.length(), nanos)));
+        }
+        return counter;
+    }
+
+    private void countPlain(@NotNull Run run, @NotNull File textFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(textFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Future<?>> tasks = new ArrayList<>();
+            long from = 0L;
+            while (from < size) {
+                long to = findLineEnd(channel, Math.min(from + CHUNK_SIZE, size), size);
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                tasks.add(pool.submit(() -> {
+                    CharBuffer chars = newDecoder().decode(chunk);
+                    run.countLines(chars.array(), chars.limit());
+                    return null;
+                }));
+                from = to;
+            }
+            for (Future<?> task : tasks) {
+                await(task);
+            }
+        }
+    }
+
+    /**
+     * @return the position after the next '\n' at or after the position, or the size. In UTF-8 this byte is never part of another char.
+     */
+    private static long findLineEnd(@NotNull FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int index = 0; index < read; index++) {
+                if (buffer.get(index) == '\n') {
+                    return position + index + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private void countCompressed(@NotNull Run run, @NotNull File textFile) throws IOException {
+        // bounds the decoded batches waiting in memory
+        int maximum = pool.getParallelism() * 2;
+        Deque<Future<?>> tasks = new ArrayDeque<>();
+        try (InputStream is = new GZIPInputStream(new BufferedInputStream(new FileInputStream(textFile)))) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            StringBuilder batch = new StringBuilder(BATCH_SIZE + 1024);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.append(line).append('\n');
+                if (batch.length() >= BATCH_SIZE) {
+                    tasks.add(submit(run, batch));
+                    batch.setLength(0);
+                    while (tasks.size() > maximum) {
+                        await(tasks.poll());
+                    }
+                }
+            }
+            if (batch.length() > 0) {
+                tasks.add(submit(run, batch));
+            }
+        }
+        for (Future<?> task : tasks) {
+            await(task);
+        }
+    }
+
+    @NotNull
+    private Future<?> submit(@NotNull Run run, @NotNull StringBuilder batch) {
+        int length = batch.length();
+        char[] chars = new char[length];
+        batch.getChars(0, length, chars, 0);
+        return pool.submit(() -> run.countLines(chars, length));
+    }
+
+    private static void await(@NotNull Future<?> task) throws IOException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Malformed input is replaced, as by the {@link InputStreamReader} of {@link GenProfile}.
+     */
+    @NotNull
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static double getThroughput(long bytes, long nanos) {
+        return nanos == 0L ? 0d : bytes / (1024d * 1024d) / (nanos / 1000000000d);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: ParallelGenProfile <language> <textFile> <outputDirectory>");
+            return;
+        }
+        String lang = args[0];
+        File textFile = new File(args[1]);
+        File directory = new File(args[2]);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+
+        long start = System.nanoTime();
+        PackedNgramCounter counter = new ParallelGenProfile().count(textFile);
+        long nanos = System.nanoTime() - start;
+
+        try (OutputStream out = new FileOutputStream(new File(directory, lang))) {
+            new LangProfileWriter().write(toLangProfile(lang, counter), out);
+        }
+        LanguageProfile languageProfile = new LanguageProfileBuilder(Locale.forLanguageTag(lang)).addGrams(counter).build();
+        try (OutputStream out = new FileOutputStream(new File(directory, lang + ".bin"))) {
+            new LanguageProfileWriter().writeBinary(Collections.singletonList(languageProfile), out);
+        }
+        System.out.println(String.format(Locale.ROOT, "%s: %d n-grams, %.1f MB in %.1f s, %.1f MB/s", lang, counter.size(), textFile.length() / (1024d * 1024d), nanos / 1000000000d, getThroughput(textFile.length(), nanos)));
+    }
+
+}
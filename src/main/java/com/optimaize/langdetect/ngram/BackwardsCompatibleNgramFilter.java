@@ -63,4 +63,22 @@ public class BackwardsCompatibleNgramFilter implements NgramFilter {
         }
     }
 
+    @Override
+    public boolean use(long ngram) {
+        switch (PackedNgrams.getLength(ngram)) {
+        case 1:
+            return PackedNgrams.getChar(ngram, 1, 0) != ' ';
+        case 2:
+            // all upper case
+            return !(Character.isUpperCase(PackedNgrams.getChar(ngram, 2, 0)) && Character.isUpperCase(PackedNgrams.getChar(ngram, 2, 1)));
+        default:
+            if (Character.isUpperCase(PackedNgrams.getChar(ngram, 3, 0)) && Character.isUpperCase(PackedNgrams.getChar(ngram, 3, 1)) && Character.isUpperCase(PackedNgrams.getChar(ngram, 3, 2))) {
+                // all upper case
+                return false;
+            }
+            // middle char is a space
+            return PackedNgrams.getChar(ngram, 3, 1) != ' ';
+        }
+    }
+
 }
@@ -163,6 +163,106 @@ public class NgramExtractor {
         }
     }
 
+    /**
+     * @return true if all gram lengths fit into a packed n-gram, see {@link PackedNgrams}.
+     */
+    public boolean isPackable() {
+        for (Integer gramLength : gramLengths) {
+            if (gramLength > PackedNgrams.MAX_GRAM_LENGTH) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return how many n-grams {@link #extractPackedGrams(CharSequence, long[])} can produce at most for a text of that length.
+     */
+    public int getMaxNumGrams(int textLength) {
+        int len = textPadding == null ? textLength : textLength + 2;
+        int maxNumGrams = 0;
+        for (Integer gramLength : gramLengths) {
+            maxNumGrams += Math.max(len - (gramLength - 1), 0);
+        }
+        return maxNumGrams;
+    }
+
+    /**
+     * Same as {@link #extractGrams(CharSequence)}, but writes packed n-grams (see {@link PackedNgrams}) to the given array. The padding is applied virtually, without copying the text, and no objects are created.
+     *
+     * @param grams must have room for {@link #getMaxNumGrams(int)} n-grams.
+     * @return the number of n-grams written.
+     * @throws IllegalStateException if not {@link #isPackable()}.
+     */
+    public int extractPackedGrams(@NotNull CharSequence text, @NotNull long[] grams) {
+        checkPackable();
+        if (grams.length < getMaxNumGrams(text.length())) {
+            throw new IllegalArgumentException("The array must have room for " + getMaxNumGrams(text.length()) + " n-grams, but has: " + grams.length);
+        }
+        int size = 0;
+        for (Integer gramLength : gramLengths) {
+            size = _extractPacked(text, gramLength, grams, size, null);
+        }
+        return size;
+    }
+
+    /**
+     * Same as {@link #extractCountedGrams(CharSequence)}, but counts packed n-grams (see {@link PackedNgrams}) in a reusable counter. The padding is applied virtually, without copying the text, and no objects are created once the counter has grown large enough.
+     *
+     * @param counter is cleared first.
+     * @throws IllegalStateException if not {@link #isPackable()}.
+     */
+    public void extractPackedGrams(@NotNull CharSequence text, @NotNull PackedNgramCounter counter) {
+        checkPackable();
+        counter.clear();
+        for (Integer gramLength : gramLengths) {
+            _extractPacked(text, gramLength, null, 0, counter);
+        }
+    }
+
+    private void checkPackable() {
+        if (!isPackable()) {
+            throw new IllegalStateException("Packed n-grams must have a length of at most " + PackedNgrams.MAX_GRAM_LENGTH + ", but was: " + gramLengths);
+        }
+    }
+
+    /**
+     * Slides a window of gramLength chars over the virtually padded text, writing to either grams or counter.
+     *
+     * @return the new size of grams.
+     */
+    private int _extractPacked(CharSequence text, int gramLength, @Nullable long[] grams, int size, @Nullable PackedNgramCounter counter) {
+        int len = text.length();
+        int padLeft = 0;
+        int padRight = 0;
+        char padding = 0;
+        if (textPadding != null && len > 0) {
+            padding = textPadding;
+            padLeft = text.charAt(0) != padding ? 1 : 0;
+            padRight = text.charAt(len - 1) != padding ? 1 : 0;
+        }
+        int paddedLen = padLeft + len + padRight;
+        long mask = (1L << (Character.SIZE * gramLength)) - 1;
+        long head = (long) gramLength << (Character.SIZE * gramLength);
+        long window = 0L;
+        for (int pos = 0; pos < paddedLen; pos++) {
+            int textPos = pos - padLeft;
+            char c = (textPos < 0 || textPos >= len) ? padding : text.charAt(textPos);
+            window = ((window << Character.SIZE) | c) & mask;
+            if (pos >= gramLength - 1) {
+                long gram = head | window;
+                if (filter == null || filter.use(gram)) {
+                    if (counter != null) {
+                        counter.add(gram);
+                    } else {
+                        grams[size++] = gram;
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
     /**
      * This is trying to be smart. It also depends on script (alphabet less than ideographic). So I'm not sure how good it really is. Just trying to prevent array copies... and for Latin it seems to work fine.
      */
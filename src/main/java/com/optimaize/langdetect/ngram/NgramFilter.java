@@ -27,4 +27,15 @@ public interface NgramFilter {
 
     boolean use(String ngram);
 
+    /**
+     * Same as {@link #use(String)} for a packed n-gram (see {@link PackedNgrams}).
+     *
+     * <p>
+     * The default decodes the n-gram to a string. Implementations should override this to check the chars directly, so that {@link NgramExtractor#extractPackedGrams} does not allocate.
+     * </p>
+     */
+    default boolean use(long ngram) {
+        return use(PackedNgrams.unpack(ngram));
+    }
+
 }
@@ -22,6 +22,7 @@ import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.optimaize.langdetect.cybozu.util.CharNormalizer;
 import com.optimaize.langdetect.cybozu.util.NGram;
 
 /**
@@ -54,8 +55,14 @@ public class OldNgramExtractor {
     public static List<String> extractNGrams(@NotNull CharSequence text, @Nullable Filter filter) {
         List<String> list = new ArrayList<>();
         NGram ngram = new NGram();
-        for (int i = 0; i < text.length(); ++i) {
-            ngram.addChar(text.charAt(i));
+        int length = text.length();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; ++i) {
+            chars[i] = text.charAt(i);
+        }
+        CharNormalizer.normalize(chars, 0, length, chars);
+        for (int i = 0; i < length; ++i) {
+            ngram.addNormalizedChar(chars[i]);
             for (int n = 1; n <= NGram.N_GRAM; ++n) {
                 String w = ngram.get(n);
                 if (w != null) { // TODO this null check is ugly
@@ -68,4 +75,66 @@ public class OldNgramExtractor {
         return list;
     }
 
+    /**
+     * Same n-grams as {@link #extractNGrams(CharSequence, Filter)} without a filter, but counted packed (see {@link PackedNgrams}), without creating strings. The {@link NGram} window is kept in a few local variables.
+     *
+     * This is what profile generation needs: summed up per gram, the counts equal what {@link com.optimaize.langdetect.cybozu.util.LangProfile#add(String)} counts for the string n-grams.
+     */
+    public static void extractPackedNGrams(@NotNull CharSequence text, @NotNull PackedNgramCounter counter) {
+        // the window, first is the oldest
+        char first = ' ';
+        char second = 0;
+        char third = 0;
+        int size = 1;
+        boolean capitalWord = false;
+        for (int i = 0; i < text.length(); ++i) {
+            char ch = CharNormalizer.normalize(text.charAt(i));
+            char lastChar = size == 1 ? first : size == 2 ? second : third;
+            if (lastChar == ' ') {
+                first = ' ';
+                size = 1;
+                capitalWord = false;
+                if (ch == ' ')
+                    continue;
+            } else if (size >= NGram.N_GRAM) {
+                first = second;
+                second = third;
+                size--;
+            }
+            if (size == 1) {
+                second = ch;
+            } else {
+                third = ch;
+            }
+            size++;
+
+            if (Character.isUpperCase(ch)) {
+                if (Character.isUpperCase(lastChar))
+                    capitalWord = true;
+            } else {
+                capitalWord = false;
+            }
+            if (capitalWord)
+                continue;
+
+            // same as NGram.get(n) for n = 1 to 3
+            if (ch != ' ') {
+                counter.add(pack(1, ch));
+            }
+            if (size == 2) {
+                counter.add(pack(2, ((long) first << Character.SIZE) | second));
+            } else {
+                counter.add(pack(2, ((long) second << Character.SIZE) | third));
+                counter.add(pack(3, ((long) first << (Character.SIZE * 2)) | ((long) second << Character.SIZE) | third));
+            }
+        }
+    }
+
+    /**
+     * Same as {@link PackedNgrams#pack(CharSequence)} for the chars of an n-gram.
+     */
+    private static long pack(int length, long chars) {
+        return ((long) length << (Character.SIZE * length)) | chars;
+    }
+
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.ngram;
+
+import java.util.Arrays;
+
+/**
+ * Counts packed n-grams (see {@link PackedNgrams}) without boxing, keeping the order in which they were first added.
+ *
+ * <p>
+ * This is the primitive counterpart of the map returned by {@link NgramExtractor#extractCountedGrams}. It is meant to be reused: {@link #clear()} keeps the arrays, so after warming up no more memory is allocated.
+ * </p>
+ *
+ * <p>
+ * This class does no internal synchronization.
+ * </p>
+ *
+ * @author Birdy
+ */
+public final class PackedNgramCounter {
+
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Open addressing table, 0 for empty slots.
+     */
+    private long[] keys;
+
+    /**
+     * Index of the n-gram in each slot.
+     */
+    private int[] indexes;
+
+    /**
+     * In the order of first occurrence.
+     */
+    private long[] ngrams;
+    private int[] counts;
+    private int[] slots;
+    private int size;
+
+    public PackedNgramCounter() {
+        this(64);
+    }
+
+    /**
+     * @param expectedSize the number of distinct n-grams to expect, the counter grows when needed.
+     */
+    public PackedNgramCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) - 1) << 2;
+        this.keys = new long[capacity];
+        this.indexes = new int[capacity];
+        this.ngrams = new long[capacity >>> 1];
+        this.counts = new int[capacity >>> 1];
+        this.slots = new int[capacity >>> 1];
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) ((key * HASH_MULTIPLIER) >>> Integer.SIZE) & mask;
+    }
+
+    /**
+     * Adds one occurrence of the n-gram.
+     *
+     * @param ngram a packed n-gram, must be positive.
+     */
+    public void add(long ngram) {
+        add(ngram, 1);
+    }
+
+    /**
+     * Adds occurrences of the n-gram, as when merging counters.
+     *
+     * @param ngram a packed n-gram, must be positive.
+     * @param count 1-n
+     */
+    public void add(long ngram, int count) {
+        int mask = keys.length - 1;
+        int slot = slot(ngram, mask);
+        for (long current = keys[slot]; current != 0L; current = keys[slot]) {
+            if (current == ngram) {
+                counts[indexes[slot]] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == ngrams.length) {
+            grow();
+            add(ngram, count);
+            return;
+        }
+        keys[slot] = ngram;
+        indexes[slot] = size;
+        ngrams[size] = ngram;
+        counts[size] = count;
+        slots[size] = slot;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = keys.length << 1;
+        int mask = capacity - 1;
+        keys = new long[capacity];
+        indexes = new int[capacity];
+        ngrams = Arrays.copyOf(ngrams, capacity >>> 1);
+        counts = Arrays.copyOf(counts, capacity >>> 1);
+        slots = Arrays.copyOf(slots, capacity >>> 1);
+        for (int index = 0; index < size; index++) {
+            int slot = slot(ngrams[index], mask);
+            while (keys[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = ngrams[index];
+            indexes[slot] = index;
+            slots[index] = slot;
+        }
+    }
+
+    /**
+     * Removes all n-grams, in time proportional to their number.
+     */
+    public void clear() {
+        for (int index = 0; index < size; index++) {
+            keys[slots[index]] = 0L;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return the number of distinct n-grams.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index 0 to size-1, in the order of first occurrence.
+     * @return the packed n-gram.
+     */
+    public long getNgram(int index) {
+        return ngrams[index];
+    }
+
+    /**
+     * @param index 0 to size-1, in the order of first occurrence.
+     * @return 1-n
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.ngram;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Encodes n-grams of 1 to {@link #MAX_GRAM_LENGTH} chars as a primitive long.
+ *
+ * <p>
+ * The code holds the length followed by the 16 bit chars, so it is never 0 and never negative, and different n-grams always have different codes.
+ * </p>
+ *
+ * @author Birdy
+ */
+public final class PackedNgrams {
+
+    public static final int MAX_GRAM_LENGTH = 3;
+
+    private PackedNgrams() {
+    }
+
+    /**
+     * @return the packed n-gram, or -1 if it is empty or longer than {@link #MAX_GRAM_LENGTH}.
+     */
+    public static long pack(@NotNull CharSequence ngram) {
+        int length = ngram.length();
+        if (length == 0 || length > MAX_GRAM_LENGTH) {
+            return -1L;
+        }
+        long code = length;
+        for (int i = 0; i < length; i++) {
+            code = (code << Character.SIZE) | ngram.charAt(i);
+        }
+        return code;
+    }
+
+    @NotNull
+    public static String unpack(long code) {
+        int length = getLength(code);
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = (char) code;
+            code >>>= Character.SIZE;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return 1-{@link #MAX_GRAM_LENGTH}
+     */
+    public static int getLength(long code) {
+        // the length sits right above the chars
+        int length = MAX_GRAM_LENGTH;
+        while ((code >>> (Character.SIZE * length)) != length) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Same as {@code unpack(code).charAt(index)}.
+     */
+    public static char getChar(long code, int length, int index) {
+        return (char) (code >>> (Character.SIZE * (length - 1 - index)));
+    }
+
+}
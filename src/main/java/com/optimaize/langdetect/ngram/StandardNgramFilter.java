@@ -62,4 +62,17 @@ public class StandardNgramFilter implements NgramFilter {
         }
     }
 
+    @Override
+    public boolean use(long ngram) {
+        switch (PackedNgrams.getLength(ngram)) {
+        case 1:
+            return PackedNgrams.getChar(ngram, 1, 0) != ' ';
+        case 2:
+            return true;
+        default:
+            // middle char is a space
+            return PackedNgrams.getChar(ngram, 3, 1) != ' ';
+        }
+    }
+
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.profiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Converts text (JSON) {@link LanguageProfile} files to the binary format of {@link LanguageProfileWriter#writeBinary}.
+ *
+ * <p>
+ * Usage:
+ * <ul>
+ * <li>{@code BinaryProfileConverter <outputDirectory>} converts the built-in "languages" and "languages.shorttext" profiles to "languages.bin" and "languages.shorttext.bin". When these are on the classpath next to the text profiles, {@link LanguageProfileReader} uses them instead.</li>
+ * <li>{@code BinaryProfileConverter <profileDirectory> <binaryFile>} converts all profiles of a directory.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Birdy
+ */
+public class BinaryProfileConverter {
+
+    private static final String PROFILES_DIR = "languages";
+    private static final String SHORT_TEXT_PROFILES_DIR = "languages.shorttext";
+
+    /**
+     * Converts all profiles of a directory to one binary file.
+     */
+    public static void convert(@NotNull File profileDirectory, @NotNull File binaryFile) throws IOException {
+        write(new LanguageProfileReader().readAll(profileDirectory), binaryFile);
+    }
+
+    /**
+     * Converts the built-in profiles, always reading the text files.
+     */
+    public static void convertBuiltIn(@NotNull File outputDirectory) throws IOException {
+        LanguageProfileReader reader = new LanguageProfileReader();
+        ClassLoader classLoader = BinaryProfileConverter.class.getClassLoader();
+        List<String> names = new ArrayList<>();
+        for (Locale locale : BuiltInLanguages.getLanguages()) {
+            names.add(locale.toLanguageTag());
+        }
+        write(reader.readText(classLoader, PROFILES_DIR, names), new File(outputDirectory, PROFILES_DIR + LanguageProfileReader.BINARY_SUFFIX));
+        write(reader.readText(classLoader, SHORT_TEXT_PROFILES_DIR, BuiltInLanguages.getShortTextLanguages()), new File(outputDirectory, SHORT_TEXT_PROFILES_DIR + LanguageProfileReader.BINARY_SUFFIX));
+    }
+
+    private static void write(@NotNull List<LanguageProfile> languageProfiles, @NotNull File binaryFile) throws IOException {
+        try (OutputStream output = new FileOutputStream(binaryFile)) {
+            new LanguageProfileWriter().writeBinary(languageProfiles, output);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 1) {
+            File outputDirectory = new File(args[0]);
+            if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+                throw new IOException("Cannot create directory: " + outputDirectory);
+            }
+            convertBuiltIn(outputDirectory);
+        } else if (args.length == 2) {
+            convert(new File(args[0]), new File(args[1]));
+        } else {
+            System.err.println("Usage: BinaryProfileConverter <outputDirectory> | <profileDirectory> <binaryFile>");
+            System.exit(1);
+        }
+    }
+
+}
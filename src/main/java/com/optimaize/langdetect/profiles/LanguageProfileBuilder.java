@@ -22,8 +22,11 @@ import java.util.Locale;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.optimaize.langdetect.ngram.NgramExtractor;
+import com.optimaize.langdetect.ngram.PackedNgramCounter;
+import com.optimaize.langdetect.ngram.PackedNgrams;
 
 /**
  * Builder for {@link LanguageProfile}.
@@ -58,7 +61,23 @@ public class LanguageProfileBuilder {
         this.locale = languageProfileBuilder.locale;
         this.minimalFrequency = languageProfileBuilder.minimalFrequency;
         this.ngramExtractor = languageProfileBuilder.ngramExtractor;
-        this.ngrams.putAll(languageProfileBuilder.ngrams);
+        // the maps are copied too, so that copies can be filled independently, even concurrently
+        for (Map.Entry<Integer, Map<String, Integer>> entry : languageProfileBuilder.ngrams.entrySet()) {
+            this.ngrams.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+    }
+
+    @NotNull
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return null if not set yet.
+     */
+    @Nullable
+    public NgramExtractor getNgramExtractor() {
+        return ngramExtractor;
     }
 
     public LanguageProfileBuilder ngramExtractor(@NotNull NgramExtractor ngramExtractor) {
@@ -89,6 +108,16 @@ public class LanguageProfileBuilder {
         return this;
     }
 
+    /**
+     * Adds all n-grams of the counter with their counts, as counted by a profile generator.
+     */
+    public LanguageProfileBuilder addGrams(@NotNull PackedNgramCounter counter) {
+        for (int index = 0; index < counter.size(); index++) {
+            addGram(PackedNgrams.unpack(counter.getNgram(index)), counter.getCount(index));
+        }
+        return this;
+    }
+
     /**
      * Shortcut for addGram(ngram, 1).
      */
@@ -16,28 +16,57 @@
 
 package com.optimaize.langdetect.profiles;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.optimaize.langdetect.frma.LangProfileReader;
 
 /**
  * Reads {@link LanguageProfile}s.
  *
+ * <p>
+ * Profiles are read from the text (JSON) format, or from the binary format written by {@link LanguageProfileWriter#writeBinary}. When loading from the classpath, a binary file named like the profile directory plus ".bin" is preferred over the text files (see {@link BinaryProfileConverter}). It is loaded only once, and profiles it does not contain are still read from the text files. Multiple profiles are decoded in parallel.
+ * </p>
+ *
  * @author Fabian Kessler
  */
 public class LanguageProfileReader {
 
     private static final LangProfileReader internalReader = new LangProfileReader();
     private static final String PROFILES_DIR = "languages";
+    static final String BINARY_SUFFIX = ".bin";
+
+    /**
+     * Binary files from the classpath by URL, so that they are mapped (or read from a jar) only once.
+     */
+    private static final ConcurrentMap<String, ByteBuffer> binaryBuffers = new ConcurrentHashMap<>();
 
     /**
      * Reads a {@link LanguageProfile} from a File in UTF-8.
@@ -65,17 +94,197 @@ public class LanguageProfileReader {
      * @param profileFileNames for example ["en", "fr", "de"].
      */
     public List<LanguageProfile> read(ClassLoader classLoader, String profileDirectory, Collection<String> profileFileNames) throws IOException {
-        List<LanguageProfile> loaded = new ArrayList<>(profileFileNames.size());
-        for (String profileFileName : profileFileNames) {
-            String path = makePathForClassLoader(profileDirectory, profileFileName);
-            try (InputStream in = classLoader.getResourceAsStream(path)) {
-                if (in == null) {
-                    throw new IOException("No language file available named " + profileFileName + " at " + path + "!");
+        URL binaryUrl = classLoader.getResource(profileDirectory + BINARY_SUFFIX);
+        if (binaryUrl == null) {
+            return readText(classLoader, profileDirectory, profileFileNames);
+        }
+        List<String> names = new ArrayList<>(profileFileNames);
+        List<LanguageProfile> profiles = readBinary(getBuffer(binaryUrl), names);
+        // profiles added to the directory next to the binary file, for example own ones next to the built-in ones
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (profiles.get(i) == null) {
+                missing.add(names.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<LanguageProfile> texts = readText(classLoader, profileDirectory, missing);
+            for (int i = 0, text = 0; i < names.size(); i++) {
+                if (profiles.get(i) == null) {
+                    profiles.set(i, texts.get(text++));
                 }
-                loaded.add(read(in));
             }
         }
-        return loaded;
+        return profiles;
+    }
+
+    /**
+     * Same as {@link #read(ClassLoader, String, java.util.Collection)}, but always reads the text files.
+     */
+    List<LanguageProfile> readText(ClassLoader classLoader, String profileDirectory, Collection<String> profileFileNames) throws IOException {
+        List<String> names = new ArrayList<>(profileFileNames);
+        LanguageProfile[] loaded = new LanguageProfile[names.size()];
+        try {
+            IntStream.range(0, names.size()).parallel().forEach(i -> {
+                String path = makePathForClassLoader(profileDirectory, names.get(i));
+                try (InputStream in = classLoader.getResourceAsStream(path)) {
+                    if (in == null) {
+                        throw new IOException("No language file available named " + names.get(i) + " at " + path + "!");
+                    }
+                    loaded[i] = read(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new ArrayList<>(Arrays.asList(loaded));
+    }
+
+    /**
+     * Reads all {@link LanguageProfile}s from a binary file, which is memory-mapped.
+     */
+    public List<LanguageProfile> readBinary(@NotNull File binaryFile) throws IOException {
+        return readBinary(readBinaryFile(binaryFile), null);
+    }
+
+    /**
+     * Reads all {@link LanguageProfile}s from a buffer in the binary format.
+     */
+    public List<LanguageProfile> readBinary(@NotNull ByteBuffer buffer) throws IOException {
+        return readBinary(buffer, null);
+    }
+
+    /**
+     * @param profileFileNames null to read all profiles, in the stored order.
+     * @return null for the names that are not in the buffer.
+     */
+    private List<LanguageProfile> readBinary(@NotNull ByteBuffer buffer, @Nullable Collection<String> profileFileNames) throws IOException {
+        try {
+            buffer = buffer.duplicate();
+            if (buffer.getInt() != LanguageProfileWriter.BINARY_MAGIC) {
+                throw new IOException("Not a binary language profile file!");
+            }
+            if (buffer.getInt() != LanguageProfileWriter.BINARY_VERSION) {
+                throw new IOException("Unsupported binary language profile version!");
+            }
+            int size = buffer.getInt();
+            List<String> names = new ArrayList<>(size);
+            Map<String, Integer> indexes = new HashMap<>(size * 2);
+            int[] offsets = new int[size];
+            int[] lengths = new int[size];
+            for (int i = 0; i < size; i++) {
+                String name = readString(buffer);
+                names.add(name);
+                indexes.put(name, i);
+                offsets[i] = buffer.getInt();
+                lengths[i] = buffer.getInt();
+            }
+            int dataOffset = buffer.position();
+
+            if (profileFileNames != null) {
+                names = new ArrayList<>(profileFileNames);
+            }
+            int[] selected = new int[names.size()];
+            for (int i = 0; i < selected.length; i++) {
+                Integer index = indexes.get(names.get(i));
+                selected[i] = index == null ? -1 : index;
+            }
+
+            ByteBuffer data = buffer;
+            LanguageProfile[] loaded = new LanguageProfile[selected.length];
+            IntStream.range(0, selected.length).parallel().filter(i -> selected[i] >= 0).forEach(i -> {
+                ByteBuffer profile = data.duplicate();
+                profile.limit(dataOffset + offsets[selected[i]] + lengths[selected[i]]);
+                profile.position(dataOffset + offsets[selected[i]]);
+                loaded[i] = readBinaryProfile(profile);
+            });
+            return new ArrayList<>(Arrays.asList(loaded));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt binary language profile file!", e);
+        }
+    }
+
+    @NotNull
+    private static LanguageProfile readBinaryProfile(@NotNull ByteBuffer buffer) {
+        Locale locale = Locale.forLanguageTag(readString(buffer));
+        int gramLengthCount = buffer.getInt();
+        Map<Integer, Map<String, Integer>> ngrams = new HashMap<>(gramLengthCount * 2);
+        for (int i = 0; i < gramLengthCount; i++) {
+            int gramLength = buffer.getInt();
+            int gramCount = buffer.getInt();
+            char[] chars = new char[gramLength * gramCount];
+            CharBuffer charBuffer = buffer.asCharBuffer();
+            charBuffer.get(chars);
+            buffer.position(buffer.position() + chars.length * Character.BYTES);
+            int[] frequencies = new int[gramCount];
+            IntBuffer intBuffer = buffer.asIntBuffer();
+            intBuffer.get(frequencies);
+            buffer.position(buffer.position() + frequencies.length * Integer.BYTES);
+
+            Map<String, Integer> map = new HashMap<>((int) (gramCount / 0.75f) + 1);
+            for (int gram = 0; gram < gramCount; gram++) {
+                map.put(new String(chars, gram * gramLength, gramLength), frequencies[gram]);
+            }
+            ngrams.put(gramLength, map);
+        }
+        return new LanguageProfileImpl(locale, ngrams);
+    }
+
+    @NotNull
+    private static String readString(@NotNull ByteBuffer buffer) {
+        char[] chars = new char[buffer.getInt()];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + chars.length * Character.BYTES);
+        return new String(chars);
+    }
+
+    /**
+     * Same as {@link #loadBuffer(URL)}, but loads each URL only once.
+     */
+    @NotNull
+    private static ByteBuffer getBuffer(@NotNull URL url) throws IOException {
+        try {
+            return binaryBuffers.computeIfAbsent(url.toString(), key -> {
+                try {
+                    return loadBuffer(url);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Files are memory-mapped, other resources (in a jar) are read into memory.
+     */
+    @NotNull
+    private static ByteBuffer loadBuffer(@NotNull URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return readBinaryFile(new File(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[8192];
+            for (int size = in.read(data); size >= 0; size = in.read(data)) {
+                buffer.write(data, 0, size);
+            }
+            return ByteBuffer.wrap(buffer.toByteArray());
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer readBinaryFile(@NotNull File binaryFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(binaryFile.toPath(), StandardOpenOption.READ)) {
+            return channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
     }
 
     private String makePathForClassLoader(String profileDirectory, String fileName) {
@@ -99,14 +308,7 @@ public class LanguageProfileReader {
 
     @NotNull
     public LanguageProfile readBuiltIn(@NotNull Locale locale) throws IOException {
-        String filename = makeProfileFileName(locale);
-        String path = makePathForClassLoader(PROFILES_DIR, filename);
-        try (InputStream in = LanguageProfileReader.class.getClassLoader().getResourceAsStream(path)) {
-            if (in == null) {
-                throw new IOException("No language file available named " + filename + " at " + path + "!");
-            }
-            return read(in);
-        }
+        return read(LanguageProfileReader.class.getClassLoader(), PROFILES_DIR, Collections.singletonList(makeProfileFileName(locale))).get(0);
     }
 
     @NotNull
@@ -134,11 +336,7 @@ public class LanguageProfileReader {
      * Reads all built-in language profiles from the "languages" folder (shipped with the jar).
      */
     public List<LanguageProfile> readAllBuiltIn() throws IOException {
-        List<LanguageProfile> loaded = new ArrayList<>();
-        for (Locale locale : BuiltInLanguages.getLanguages()) {
-            loaded.add(readBuiltIn(locale));
-        }
-        return loaded;
+        return readBuiltIn(BuiltInLanguages.getLanguages());
     }
 
     /**
@@ -16,13 +16,19 @@
 
 package com.optimaize.langdetect.profiles;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
@@ -39,6 +45,13 @@ import org.jetbrains.annotations.NotNull;
  */
 public class LanguageProfileWriter {
 
+    /**
+     * Magic number of the binary format ("LDPF").
+     */
+    static final int BINARY_MAGIC = 0x4C445046;
+
+    static final int BINARY_VERSION = 1;
+
     /**
      * Writes a {@link LanguageProfile} to an OutputStream in UTF-8.
      *
@@ -99,4 +112,65 @@ public class LanguageProfileWriter {
         }
     }
 
+    /**
+     * Writes {@link LanguageProfile}s to an OutputStream in the binary format read by {@link LanguageProfileReader#readBinary(File)}.
+     *
+     * <p>
+     * The header holds the profile names (language tags, as used for the text file names) and the offset of each profile, so that a reader can decode only the profiles it needs, and decode them in parallel. Per profile and n-gram length, the n-grams are stored as one block of chars followed by one block of frequencies.
+     * </p>
+     *
+     * @throws java.io.IOException
+     */
+    public void writeBinary(@NotNull Collection<LanguageProfile> languageProfiles, @NotNull OutputStream outputStream) throws IOException {
+        List<byte[]> profiles = new ArrayList<>(languageProfiles.size());
+        for (LanguageProfile languageProfile : languageProfiles) {
+            profiles.add(toBinary(languageProfile));
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(outputStream));
+        data.writeInt(BINARY_MAGIC);
+        data.writeInt(BINARY_VERSION);
+        data.writeInt(profiles.size());
+        int offset = 0;
+        int i = 0;
+        for (LanguageProfile languageProfile : languageProfiles) {
+            writeString(data, languageProfile.getLocale().toLanguageTag());
+            data.writeInt(offset);
+            data.writeInt(profiles.get(i).length);
+            offset += profiles.get(i).length;
+            i++;
+        }
+        for (byte[] profile : profiles) {
+            data.write(profile);
+        }
+        data.flush();
+    }
+
+    private static byte[] toBinary(@NotNull LanguageProfile languageProfile) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buffer);
+        writeString(data, languageProfile.getLocale().toLanguageTag());
+        List<Integer> gramLengths = languageProfile.getGramLengths();
+        data.writeInt(gramLengths.size());
+        for (int gramLength : gramLengths) {
+            List<Integer> frequencies = new ArrayList<>(languageProfile.getNumGrams(gramLength));
+            data.writeInt(gramLength);
+            data.writeInt(languageProfile.getNumGrams(gramLength));
+            for (Map.Entry<String, Integer> entry : languageProfile.iterateGrams(gramLength)) {
+                data.writeChars(entry.getKey());
+                frequencies.add(entry.getValue());
+            }
+            for (int frequency : frequencies) {
+                data.writeInt(frequency);
+            }
+        }
+        data.flush();
+        return buffer.toByteArray();
+    }
+
+    private static void writeString(@NotNull DataOutputStream data, @NotNull String string) throws IOException {
+        data.writeInt(string.length());
+        data.writeChars(string);
+    }
+
 }
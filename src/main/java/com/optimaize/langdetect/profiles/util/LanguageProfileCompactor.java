@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.profiles.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileBuilder;
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+import com.optimaize.langdetect.profiles.LanguageProfileWriter;
+
+/**
+ * Shrinks {@link LanguageProfile}s by keeping only the most frequent n-grams of each length.
+ *
+ * <p>
+ * The rare n-grams make up most of a profile, but contribute little to the detection. Together with the quantized probabilities of {@link com.optimaize.langdetect.LanguageDetectorBuilder#quantization(int)} this trades a little accuracy for much less memory; {@link ParallelLanguageProfileValidator#compare(int[], int[])} reports how much.
+ * </p>
+ *
+ * <p>
+ * This is meant to be run as a maintenance program. It's not used in production by this library.
+ * </p>
+ *
+ * @author Birdy
+ */
+public class LanguageProfileCompactor {
+
+    private LanguageProfileCompactor() {
+    }
+
+    /**
+     * Keeps the maxGramsPerLength most frequent n-grams of each length, ties are broken by the n-gram. The occurrences of each length are counted anew from the kept n-grams.
+     *
+     * @param maxGramsPerLength at least 1
+     */
+    @NotNull
+    public static LanguageProfile prune(@NotNull LanguageProfile languageProfile, int maxGramsPerLength) {
+        if (maxGramsPerLength < 1) {
+            throw new IllegalArgumentException("maxGramsPerLength must be >= 1, but was: " + maxGramsPerLength);
+        }
+        LanguageProfileBuilder builder = new LanguageProfileBuilder(languageProfile.getLocale());
+        for (Integer gramLength : languageProfile.getGramLengths()) {
+            List<Map.Entry<String, Integer>> grams = new ArrayList<>(languageProfile.getNumGrams(gramLength));
+            for (Map.Entry<String, Integer> gram : languageProfile.iterateGrams(gramLength)) {
+                grams.add(gram);
+            }
+            grams.sort((left, right) -> {
+                int compare = Integer.compare(right.getValue(), left.getValue());
+                return compare != 0 ? compare : left.getKey().compareTo(right.getKey());
+            });
+            for (Map.Entry<String, Integer> gram : grams.subList(0, Math.min(maxGramsPerLength, grams.size()))) {
+                builder.addGram(gram.getKey(), gram.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @see #prune(LanguageProfile, int)
+     */
+    @NotNull
+    public static List<LanguageProfile> prune(@NotNull Collection<LanguageProfile> languageProfiles, int maxGramsPerLength) {
+        List<LanguageProfile> pruned = new ArrayList<>(languageProfiles.size());
+        for (LanguageProfile languageProfile : languageProfiles) {
+            pruned.add(prune(languageProfile, maxGramsPerLength));
+        }
+        return pruned;
+    }
+
+    /**
+     * Prunes all profiles of a directory, and writes them as text files and as one binary file named {@code profiles.bin}.
+     *
+     * <pre>
+     * args[0] the directory of the profiles
+     * args[1] the existing output directory
+     * args[2] the maximum number of n-grams per length
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: LanguageProfileCompactor <profileDirectory> <outputDirectory> <maxGramsPerLength>");
+            return;
+        }
+        File outputDirectory = new File(args[1]);
+        List<LanguageProfile> languageProfiles = prune(new LanguageProfileReader().readAll(new File(args[0])), Integer.parseInt(args[2]));
+        LanguageProfileWriter writer = new LanguageProfileWriter();
+        for (LanguageProfile languageProfile : languageProfiles) {
+            writer.writeToDirectory(languageProfile, outputDirectory);
+        }
+        try (FileOutputStream output = new FileOutputStream(new File(outputDirectory, "profiles.bin"))) {
+            writer.writeBinary(languageProfiles, output);
+        }
+        System.out.println("Pruned " + languageProfiles.size() + " profiles to " + args[2] + " n-grams per length");
+    }
+
+}
@@ -146,7 +146,7 @@ public class LanguageProfileValidator {
         // remove a potential duplicate LanguageProfile
         this.removeLanguageProfile(this.languageProfileBuilder.build().getLocale().getLanguage());
 
-        List<TextObject> partitionedInput = partition();
+        List<TextObject> partitionedInput = partition(textObjectFactory, this.inputSample, this.k, this.breakWords);
         List<Double> probabilities = new ArrayList<>(this.k);
 
         System.out.println("------------------- Running " + this.k + "-fold cross-validation -------------------");
@@ -199,17 +199,20 @@ public class LanguageProfileValidator {
         return avg;
     }
 
-    private List<TextObject> partition() {
-        List<TextObject> result = new ArrayList<>(this.k);
+    /**
+     * Also used by {@link ParallelLanguageProfileValidator}.
+     */
+    static List<TextObject> partition(TextObjectFactory textObjectFactory, CharSequence inputSample, int k, boolean breakWords) {
+        List<TextObject> result = new ArrayList<>(k);
         if (!breakWords) {
-            int maxLength = this.inputSample.length() / (this.k - 1);
+            int maxLength = inputSample.length() / (k - 1);
             Pattern p = Pattern.compile("\\G\\s*(.{1," + maxLength + "})(?=\\s|$)", Pattern.DOTALL);
-            Matcher m = p.matcher(this.inputSample);
+            Matcher m = p.matcher(inputSample);
             while (m.find())
                 result.add(textObjectFactory.create().append(m.group(1)));
         } else {
-            Splitter splitter = Splitter.fixedLength(this.k);
-            for (String token : splitter.split(this.inputSample.toString())) {
+            Splitter splitter = Splitter.fixedLength(k);
+            for (String token : splitter.split(inputSample.toString())) {
                 result.add(textObjectFactory.create().append(token));
             }
         }
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.profiles.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.optimaize.langdetect.DetectedLanguage;
+import com.optimaize.langdetect.LanguageDetector;
+import com.optimaize.langdetect.LanguageDetectorBuilder;
+import com.optimaize.langdetect.NgramFrequencyData;
+import com.optimaize.langdetect.ngram.NgramExtractor;
+import com.optimaize.langdetect.ngram.NgramExtractors;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileBuilder;
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.TextObject;
+import com.optimaize.langdetect.text.TextObjectFactory;
+
+/**
+ * Performs the k-fold cross-validation of {@link LanguageProfileValidator} for many languages at once, on all cores.
+ *
+ * <p>
+ * Every fold of every language is a task of the {@link ForkJoinPool}, which trains the profile and builds and runs its own detector. The n-grams of each partition of a sample are counted only once: the training counts of a fold are the counts of the whole sample minus those of the held-out partition. The profiles and detection results are the same as with {@link LanguageProfileValidator}.
+ * </p>
+ *
+ * <p>
+ * This is meant to be run as a maintenance program, or for debugging. It's not used in production by this library.
+ * </p>
+ *
+ * @author Birdy
+ */
+public class ParallelLanguageProfileValidator {
+
+    private final TextObjectFactory textObjectFactory = CommonTextObjectFactories.forIndexingCleanText();
+
+    @NotNull
+    private final ForkJoinPool pool;
+
+    private int k = 10;
+    private boolean breakWords = false;
+    private int maxGramsPerLength = 0;
+    private int quantizationBits = 0;
+
+    /**
+     * All loaded language profiles.
+     */
+    private final List<LanguageProfile> languageProfiles = new ArrayList<>();
+
+    /**
+     * The builder and the sample per validated language.
+     */
+    private final List<LanguageProfileBuilder> languageProfileBuilders = new ArrayList<>();
+    private final List<CharSequence> inputSamples = new ArrayList<>();
+
+    public ParallelLanguageProfileValidator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelLanguageProfileValidator(@NotNull ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * The validation result of one language.
+     */
+    public static final class Result {
+
+        @NotNull
+        private final Locale locale;
+        private final int folds;
+        private final double averageProbability;
+        private final double accuracy;
+        private final long averageTrainingNanos;
+        private final long averageDetectionNanos;
+
+        private Result(@NotNull Locale locale, int folds, double averageProbability, double accuracy, long averageTrainingNanos, long averageDetectionNanos) {
+            this.locale = locale;
+            this.folds = folds;
+            this.averageProbability = averageProbability;
+            this.accuracy = accuracy;
+            this.averageTrainingNanos = averageTrainingNanos;
+            this.averageDetectionNanos = averageDetectionNanos;
+        }
+
+        @NotNull
+        public Locale getLocale() {
+            return locale;
+        }
+
+        public int getFolds() {
+            return folds;
+        }
+
+        /**
+         * @return the average probability of the language over all folds, as returned by {@link LanguageProfileValidator#validate()}.
+         */
+        public double getAverageProbability() {
+            return averageProbability;
+        }
+
+        /**
+         * @return 0-1, the share of folds in which the language was detected as the most probable one.
+         */
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        /**
+         * @return the average time to build the profile and the detector of a fold.
+         */
+        public long getAverageTrainingNanos() {
+            return averageTrainingNanos;
+        }
+
+        /**
+         * @return the average time to detect the held-out partition of a fold.
+         */
+        public long getAverageDetectionNanos() {
+            return averageDetectionNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-8s folds=%d probability=%.7f accuracy=%.3f training=%.1fms detection=%.3fms", locale.toLanguageTag(), folds, averageProbability, accuracy, averageTrainingNanos / 1000000d, averageDetectionNanos / 1000000d);
+        }
+    }
+
+    /**
+     * The accuracy and memory of one configuration of {@link #compare(int[], int[])}.
+     */
+    public static final class TradeOff {
+
+        private final int maxGramsPerLength;
+        private final int quantizationBits;
+        private final long memorySize;
+        private final double averageProbability;
+        private final double accuracy;
+
+        private TradeOff(int maxGramsPerLength, int quantizationBits, long memorySize, double averageProbability, double accuracy) {
+            this.maxGramsPerLength = maxGramsPerLength;
+            this.quantizationBits = quantizationBits;
+            this.memorySize = memorySize;
+            this.averageProbability = averageProbability;
+            this.accuracy = accuracy;
+        }
+
+        /**
+         * @return 0 for unpruned profiles.
+         */
+        public int getMaxGramsPerLength() {
+            return maxGramsPerLength;
+        }
+
+        /**
+         * @return 0 for the default n-gram data.
+         */
+        public int getQuantizationBits() {
+            return quantizationBits;
+        }
+
+        /**
+         * @return the estimated bytes of the n-gram data of the loaded profiles, see {@link NgramFrequencyData#getMemorySize()}.
+         */
+        public long getMemorySize() {
+            return memorySize;
+        }
+
+        /**
+         * @return the average of {@link Result#getAverageProbability()} over all languages.
+         */
+        public double getAverageProbability() {
+            return averageProbability;
+        }
+
+        /**
+         * @return the average of {@link Result#getAccuracy()} over all languages.
+         */
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "maxGrams=%-7s bits=%-5s memory=%.2fMB probability=%.7f accuracy=%.4f", maxGramsPerLength == 0 ? "all" : maxGramsPerLength, quantizationBits == 0 ? "dense" : quantizationBits, memorySize / 1048576d, averageProbability, accuracy);
+        }
+    }
+
+    /**
+     * The result of one fold.
+     */
+    private static final class Fold {
+        private double probability;
+        private boolean correct;
+        private long trainingNanos;
+        private long detectionNanos;
+    }
+
+    /**
+     * Set the k parameter to select into how many parts to partition the original samples. Default is 10.
+     *
+     * @param k Minimum: 3
+     */
+    public ParallelLanguageProfileValidator setK(int k) {
+        if (k <= 2) {
+            throw new IllegalArgumentException("k hast to be at least 3 but was: " + k);
+        }
+        this.k = k;
+        return this;
+    }
+
+    /**
+     * Adds all {@link LanguageProfile}s that are available when calling {@link LanguageProfileReader#readAllBuiltIn()}.
+     */
+    public ParallelLanguageProfileValidator loadAllBuiltInLanguageProfiles() throws IOException {
+        this.languageProfiles.addAll(new LanguageProfileReader().readAllBuiltIn());
+        return this;
+    }
+
+    /**
+     * Load the given {@link LanguageProfile}.
+     */
+    public ParallelLanguageProfileValidator loadLanguageProfile(LanguageProfile languageProfile) {
+        this.languageProfiles.add(languageProfile);
+        return this;
+    }
+
+    /**
+     * Load the given {@link LanguageProfile}s.
+     */
+    public ParallelLanguageProfileValidator loadLanguageProfiles(Collection<LanguageProfile> languageProfiles) {
+        this.languageProfiles.addAll(languageProfiles);
+        return this;
+    }
+
+    /**
+     * Use for languages that don't use whitespaces to denominate word boundaries. Default is false.
+     *
+     * @param breakWords set true is you want to break samples into truly equal sizes.
+     */
+    public ParallelLanguageProfileValidator setBreakWords(boolean breakWords) {
+        this.breakWords = breakWords;
+        return this;
+    }
+
+    /**
+     * Prunes the loaded profiles and each trained profile with {@link LanguageProfileCompactor#prune(LanguageProfile, int)}. Default is 0, which means no pruning.
+     */
+    public ParallelLanguageProfileValidator setMaxGramsPerLength(int maxGramsPerLength) {
+        if (maxGramsPerLength < 0) {
+            throw new IllegalArgumentException("maxGramsPerLength must be >= 0, but was: " + maxGramsPerLength);
+        }
+        this.maxGramsPerLength = maxGramsPerLength;
+        return this;
+    }
+
+    /**
+     * Builds the detectors {@link LanguageDetectorBuilder#packed(boolean) packed} with {@link LanguageDetectorBuilder#quantization(int) quantized} probabilities. Default is 0, which means the default n-gram data.
+     *
+     * @param quantizationBits 0, 8 or 16
+     */
+    public ParallelLanguageProfileValidator setQuantizationBits(int quantizationBits) {
+        if (quantizationBits != 0 && quantizationBits != 8 && quantizationBits != 16) {
+            throw new IllegalArgumentException("quantizationBits must be 0, 8 or 16, but was: " + quantizationBits);
+        }
+        this.quantizationBits = quantizationBits;
+        return this;
+    }
+
+    /**
+     * Adds a language to validate: the {@link LanguageProfileBuilder} which will be used to create its {@link LanguageProfile}, with the {@link NgramExtractor} set, and the sample of the language. A loaded profile of the same language is left out when validating it.
+     */
+    public ParallelLanguageProfileValidator addInputSample(@NotNull LanguageProfileBuilder languageProfileBuilder, @NotNull CharSequence inputSample) {
+        if (languageProfileBuilder.getNgramExtractor() == null) {
+            throw new IllegalStateException("NgramExtractor has not been set yet!");
+        }
+        this.languageProfileBuilders.add(languageProfileBuilder);
+        this.inputSamples.add(inputSample);
+        return this;
+    }
+
+    /**
+     * Runs the k-fold validation of all added languages.
+     *
+     * @return the results in the order the languages were added.
+     */
+    @NotNull
+    public List<Result> validate() {
+        System.out.println("------------------- Running " + this.k + "-fold cross-validation of " + languageProfileBuilders.size() + " languages -------------------");
+
+        // the partitions and their counts are shared by the folds of a language
+        int size = languageProfileBuilders.size();
+        List<List<TextObject>> partitions = new ArrayList<>(size);
+        List<Map<String, Integer>[]> partitionCounts = new ArrayList<>(size);
+        List<ForkJoinTask<?>> countings = new ArrayList<>();
+        for (int language = 0; language < size; language++) {
+            List<TextObject> partitioned = LanguageProfileValidator.partition(textObjectFactory, inputSamples.get(language), this.k, this.breakWords);
+            if (partitioned.size() < this.k) {
+                throw new IllegalStateException("The sample of " + languageProfileBuilders.get(language).getLocale() + " is too short for " + this.k + " partitions");
+            }
+            NgramExtractor ngramExtractor = languageProfileBuilders.get(language).getNgramExtractor();
+            @SuppressWarnings("unchecked")
+            Map<String, Integer>[] counts = new Map[partitioned.size()];
+            for (int index = 0; index < counts.length; index++) {
+                TextObject partition = partitioned.get(index);
+                int partitionIndex = index;
+                countings.add(pool.submit(() -> {
+                    counts[partitionIndex] = ngramExtractor.extractCountedGrams(partition);
+                }));
+            }
+            partitions.add(partitioned);
+            partitionCounts.add(counts);
+        }
+        for (ForkJoinTask<?> counting : countings) {
+            counting.join();
+        }
+        List<Map<String, Integer>> totalCounts = new ArrayList<>(size);
+        for (Map<String, Integer>[] counts : partitionCounts) {
+            Map<String, Integer> total = new HashMap<>();
+            for (Map<String, Integer> count : counts) {
+                for (Map.Entry<String, Integer> entry : count.entrySet()) {
+                    total.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+            }
+            totalCounts.add(total);
+        }
+
+        List<LanguageProfile> loadedProfiles = maxGramsPerLength > 0 ? LanguageProfileCompactor.prune(this.languageProfiles, maxGramsPerLength) : this.languageProfiles;
+        Fold[][] folds = new Fold[size][this.k];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(size * this.k);
+        for (int language = 0; language < size; language++) {
+            for (int fold = 0; fold < this.k; fold++) {
+                int languageIndex = language;
+                int foldIndex = fold;
+                tasks.add(pool.submit(() -> {
+                    folds[languageIndex][foldIndex] = validate(loadedProfiles, languageProfileBuilders.get(languageIndex), totalCounts.get(languageIndex), partitionCounts.get(languageIndex)[foldIndex], partitions.get(languageIndex).get(foldIndex));
+                }));
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        List<Result> results = new ArrayList<>(size);
+        for (int language = 0; language < size; language++) {
+            double probability = 0D;
+            int correct = 0;
+            long trainingNanos = 0L;
+            long detectionNanos = 0L;
+            for (Fold fold : folds[language]) {
+                probability += fold.probability;
+                correct += fold.correct ? 1 : 0;
+                trainingNanos += fold.trainingNanos;
+                detectionNanos += fold.detectionNanos;
+            }
+            Result result = new Result(languageProfileBuilders.get(language).getLocale(), this.k, probability / this.k, (double) correct / this.k, trainingNanos / this.k, detectionNanos / this.k);
+            System.out.println(result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Validates every combination of pruning and quantization, and reports the accuracy against the memory of the n-gram data of the loaded profiles. The settings of this validator are restored afterwards.
+     *
+     * @param maxGramsPerLength see {@link #setMaxGramsPerLength(int)}
+     * @param quantizationBits see {@link #setQuantizationBits(int)}
+     * @return the results in the order of the arguments, pruning first.
+     */
+    @NotNull
+    public List<TradeOff> compare(@NotNull int[] maxGramsPerLength, @NotNull int[] quantizationBits) {
+        int oldMaxGramsPerLength = this.maxGramsPerLength;
+        int oldQuantizationBits = this.quantizationBits;
+        List<TradeOff> tradeOffs = new ArrayList<>(maxGramsPerLength.length * quantizationBits.length);
+        try {
+            for (int maxGrams : maxGramsPerLength) {
+                setMaxGramsPerLength(maxGrams);
+                List<LanguageProfile> loadedProfiles = maxGrams > 0 ? LanguageProfileCompactor.prune(this.languageProfiles, maxGrams) : this.languageProfiles;
+                for (int bits : quantizationBits) {
+                    setQuantizationBits(bits);
+                    long memorySize = 0L;
+                    if (!loadedProfiles.isEmpty()) {
+                        List<Integer> gramLengths = NgramExtractors.standard().getGramLengths();
+                        memorySize = (bits == 0 ? NgramFrequencyData.create(loadedProfiles, gramLengths) : NgramFrequencyData.createPacked(loadedProfiles, gramLengths, bits)).getMemorySize();
+                    }
+                    double probability = 0D;
+                    double accuracy = 0D;
+                    List<Result> results = validate();
+                    for (Result result : results) {
+                        probability += result.getAverageProbability();
+                        accuracy += result.getAccuracy();
+                    }
+                    TradeOff tradeOff = new TradeOff(maxGrams, bits, memorySize, probability / results.size(), accuracy / results.size());
+                    System.out.println(tradeOff);
+                    tradeOffs.add(tradeOff);
+                }
+            }
+        } finally {
+            this.maxGramsPerLength = oldMaxGramsPerLength;
+            this.quantizationBits = oldQuantizationBits;
+        }
+        return tradeOffs;
+    }
+
+    /**
+     * Trains on all partitions but the held-out one, and detects the held-out one.
+     */
+    @NotNull
+    private Fold validate(@NotNull List<LanguageProfile> loadedProfiles, @NotNull LanguageProfileBuilder languageProfileBuilder, @NotNull Map<String, Integer> totalCounts, @NotNull Map<String, Integer> testCounts, @NotNull TextObject testSample) {
+        Fold fold = new Fold();
+        long start = System.nanoTime();
+        LanguageProfileBuilder lpb = new LanguageProfileBuilder(languageProfileBuilder);
+        for (Map.Entry<String, Integer> entry : totalCounts.entrySet()) {
+            Integer held = testCounts.get(entry.getKey());
+            int count = held == null ? entry.getValue() : entry.getValue() - held;
+            if (count > 0) {
+                lpb.addGram(entry.getKey(), count);
+            }
+        }
+        LanguageProfile languageProfile = lpb.build();
+        if (maxGramsPerLength > 0) {
+            languageProfile = LanguageProfileCompactor.prune(languageProfile, maxGramsPerLength);
+        }
+        String language = languageProfile.getLocale().getLanguage();
+
+        // a potential duplicate LanguageProfile is left out, the new one comes last
+        List<LanguageProfile> profiles = new ArrayList<>(loadedProfiles.size() + 1);
+        for (LanguageProfile profile : loadedProfiles) {
+            if (!profile.getLocale().getLanguage().equals(language)) {
+                profiles.add(profile);
+            }
+        }
+        profiles.add(languageProfile);
+        LanguageDetector languageDetector = LanguageDetectorBuilder.create(NgramExtractors.standard()).packed(quantizationBits != 0).quantization(quantizationBits).withProfiles(profiles).build();
+        fold.trainingNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<DetectedLanguage> detectedLanguages = languageDetector.getProbabilities(testSample);
+        fold.detectionNanos = System.nanoTime() - start;
+
+        for (DetectedLanguage detectedLanguage : detectedLanguages) {
+            if (detectedLanguage.getLocale().getLanguage().equals(language)) {
+                fold.probability = detectedLanguage.getProbability();
+                break;
+            }
+        }
+        fold.correct = !detectedLanguages.isEmpty() && detectedLanguages.get(0).getLocale().getLanguage().equals(language);
+        return fold;
+    }
+
+}
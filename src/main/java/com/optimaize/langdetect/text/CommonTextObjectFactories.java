@@ -24,7 +24,7 @@ package com.optimaize.langdetect.text;
 public class CommonTextObjectFactories {
 
     public static TextObjectFactory forDetectingOnLargeText() {
-        return new TextObjectFactoryBuilder().maxTextLength(10000).withTextFilter(UrlTextFilter.getInstance()).withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3)).build();
+        return new TextObjectFactoryBuilder().maxTextLength(10000).withTextFilter(UrlTextFilter.getInstance()).withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3)).fused(true).build();
     }
 
     public static TextObjectFactory forDetectingShortCleanText() {
@@ -32,7 +32,7 @@ public class CommonTextObjectFactories {
     }
 
     public static TextObjectFactory forIndexing() {
-        return new TextObjectFactoryBuilder().withTextFilter(UrlTextFilter.getInstance()).withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3)).build();
+        return new TextObjectFactoryBuilder().withTextFilter(UrlTextFilter.getInstance()).withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3)).fused(true).build();
     }
 
     public static TextObjectFactory forIndexingCleanText() {
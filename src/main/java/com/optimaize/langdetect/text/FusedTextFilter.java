@@ -0,0 +1,333 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.text;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.optimaize.langdetect.cybozu.util.CharNormalizer;
+
+/**
+ * Does the work of {@link UrlTextFilter} followed by {@link RemoveMinorityScriptsTextFilter} in a few passes over one reusable char buffer, with the same result.
+ *
+ * <p>
+ * The first pass removes URLs. The second pass removes email addresses and counts the scripts in a primitive array. When used by a {@link TextObject}, the third pass removes the minority scripts, and normalizes and appends the chars in the same loop. The regular expressions, the intermediate strings and the boxed counters are gone.
+ * </p>
+ *
+ * <p>
+ * Use {@link TextObjectFactoryBuilder#fused(boolean)} to get one. This class is immutable, the buffers are per thread.
+ * </p>
+ *
+ * @author Birdy
+ */
+public class FusedTextFilter implements TextFilter {
+
+    /**
+     * Buffers of larger texts are not kept.
+     */
+    private static final int MAX_KEPT_BUFFER = 1 << 16;
+
+    private static final Character.UnicodeScript[] SCRIPT_VALUES = Character.UnicodeScript.values();
+
+    private static final int INHERITED = Character.UnicodeScript.INHERITED.ordinal();
+    private static final int COMMON = Character.UnicodeScript.COMMON.ordinal();
+    private static final int UNKNOWN = Character.UnicodeScript.UNKNOWN.ordinal();
+
+    /**
+     * Script ordinal per char, the same as {@code Character.UnicodeScript.of(c)}.
+     */
+    private static final byte[] SCRIPTS = new byte[Character.MAX_VALUE + 1];
+
+    static {
+        if (SCRIPT_VALUES.length > 256) {
+            throw new IllegalStateException("Too many unicode scripts: " + SCRIPT_VALUES.length);
+        }
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            SCRIPTS[c] = (byte) Character.UnicodeScript.of(c).ordinal();
+        }
+    }
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private static final class Buffer {
+        private char[] chars = new char[1024];
+        private final long[] counts = new long[SCRIPT_VALUES.length];
+        private final boolean[] removals = new boolean[SCRIPT_VALUES.length];
+    }
+
+    private final boolean removeUrls;
+
+    /**
+     * Negative for not removing minority scripts.
+     */
+    private final double threshold;
+
+    /**
+     * @param removeUrls see {@link UrlTextFilter}.
+     * @param threshold see {@link RemoveMinorityScriptsTextFilter#forThreshold(double)}, negative for not removing minority scripts.
+     */
+    public FusedTextFilter(boolean removeUrls, double threshold) {
+        this.removeUrls = removeUrls;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public String filter(CharSequence text) {
+        Buffer buffer = BUFFERS.get();
+        char[] chars = prepare(text, buffer);
+        int length = strip(chars, text.length(), buffer);
+        boolean remove = findRemovals(buffer);
+        StringBuilder remaining = new StringBuilder(length);
+        int last = -1;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (remove) {
+                int script = SCRIPTS[c] & 0xFF;
+                if (script == INHERITED && last >= 0 && buffer.removals[last]) {
+                    // remove, don't update 'last'
+                    continue;
+                }
+                last = script;
+                if (buffer.removals[script]) {
+                    continue;
+                }
+            }
+            remaining.append(c);
+        }
+        release(chars, buffer);
+        return remaining.toString();
+    }
+
+    /**
+     * Filters the text, and appends it normalized like {@link TextObject#append(CharSequence)} does.
+     *
+     * @param maxTextLength 0 for no limit
+     */
+    void append(@NotNull CharSequence text, @NotNull StringBuilder target, int maxTextLength) {
+        Buffer buffer = BUFFERS.get();
+        char[] chars = prepare(text, buffer);
+        int length = strip(chars, text.length(), buffer);
+        boolean remove = findRemovals(buffer);
+        char pre = target.length() == 0 ? 0 : target.charAt(target.length() - 1);
+        int last = -1;
+        for (int i = 0; i < length && (maxTextLength == 0 || target.length() < maxTextLength); i++) {
+            char c = chars[i];
+            if (remove) {
+                int script = SCRIPTS[c] & 0xFF;
+                if (script == INHERITED && last >= 0 && buffer.removals[last]) {
+                    continue;
+                }
+                last = script;
+                if (buffer.removals[script]) {
+                    continue;
+                }
+            }
+            c = CharNormalizer.normalize(c);
+            if (c != ' ' || pre != ' ') {
+                target.append(c);
+            }
+            pre = c;
+        }
+        release(chars, buffer);
+    }
+
+    @NotNull
+    private static char[] prepare(@NotNull CharSequence text, @NotNull Buffer buffer) {
+        int length = text.length();
+        char[] chars = buffer.chars.length >= length ? buffer.chars : new char[length];
+        if (text instanceof String) {
+            ((String) text).getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = text.charAt(i);
+            }
+        }
+        return chars;
+    }
+
+    private static void release(@NotNull char[] chars, @NotNull Buffer buffer) {
+        if (chars != buffer.chars && chars.length <= MAX_KEPT_BUFFER) {
+            buffer.chars = chars;
+        }
+    }
+
+    /**
+     * Removes URLs and email addresses in place, and counts the scripts of the remaining chars.
+     *
+     * @return the new length.
+     */
+    private int strip(@NotNull char[] chars, int length, @NotNull Buffer buffer) {
+        if (removeUrls) {
+            length = stripUrls(chars, length);
+        }
+        long[] counts = buffer.counts;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0L;
+        }
+        int last = -1;
+        int write = 0;
+        int read = 0;
+        while (read < length) {
+            int end = read;
+            if (removeUrls) {
+                while (end < length && isMailLocal(chars[end])) {
+                    end++;
+                }
+                if (end > read && end + 2 < length && chars[end] == '@' && isMailDomainStart(chars[end + 1]) && isMailLocal(chars[end + 2])) {
+                    end += 3;
+                    while (end < length && isMailLocal(chars[end])) {
+                        end++;
+                    }
+                    // the address becomes a space, which is of the common script
+                    chars[write++] = ' ';
+                    read = end;
+                    continue;
+                }
+                if (end == read) {
+                    end++;
+                }
+            } else {
+                end++;
+            }
+            for (; read < end; read++) {
+                char c = chars[read];
+                chars[write++] = c;
+                int script = SCRIPTS[c] & 0xFF;
+                if (script == INHERITED) {
+                    // counts as what the last was.
+                    if (last >= 0) {
+                        counts[last]++;
+                    }
+                } else if (script != COMMON && script != UNKNOWN) {
+                    counts[script]++;
+                    last = script;
+                }
+            }
+        }
+        return write;
+    }
+
+    /**
+     * Same as replacing {@code https?://[-_.?&~;+=/#0-9A-Za-z]+} with a space.
+     *
+     * @return the new length.
+     */
+    private static int stripUrls(@NotNull char[] chars, int length) {
+        int write = 0;
+        int read = 0;
+        while (read < length) {
+            if (chars[read] == 'h') {
+                int end = matchUrl(chars, read, length);
+                if (end > 0) {
+                    chars[write++] = ' ';
+                    read = end;
+                    continue;
+                }
+            }
+            chars[write++] = chars[read++];
+        }
+        return write;
+    }
+
+    /**
+     * @return the end of the URL starting at from, or -1.
+     */
+    private static int matchUrl(@NotNull char[] chars, int from, int length) {
+        int cursor = from;
+        if (cursor + 4 > length || chars[cursor + 1] != 't' || chars[cursor + 2] != 't' || chars[cursor + 3] != 'p') {
+            return -1;
+        }
+        cursor += 4;
+        if (cursor < length && chars[cursor] == 's') {
+            cursor++;
+        }
+        if (cursor + 4 > length || chars[cursor] != ':' || chars[cursor + 1] != '/' || chars[cursor + 2] != '/' || !isUrl(chars[cursor + 3])) {
+            return -1;
+        }
+        cursor += 4;
+        while (cursor < length && isUrl(chars[cursor])) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isUrl(char c) {
+        switch (c) {
+        case '-':
+        case '_':
+        case '.':
+        case '?':
+        case '&':
+        case '~':
+        case ';':
+        case '+':
+        case '=':
+        case '/':
+        case '#':
+            return true;
+        default:
+            return isAlphanumeric(c);
+        }
+    }
+
+    /**
+     * {@code [-_.0-9A-Za-z]}
+     */
+    private static boolean isMailLocal(char c) {
+        return c == '-' || c == '_' || c == '.' || isAlphanumeric(c);
+    }
+
+    /**
+     * {@code [-_0-9A-Za-z]}
+     */
+    private static boolean isMailDomainStart(char c) {
+        return c == '-' || c == '_' || isAlphanumeric(c);
+    }
+
+    /**
+     * Same decision as {@link RemoveMinorityScriptsTextFilter}.
+     *
+     * @return true if any script is to be removed.
+     */
+    private boolean findRemovals(@NotNull Buffer buffer) {
+        if (threshold < 0d) {
+            return false;
+        }
+        long[] counts = buffer.counts;
+        boolean[] removals = buffer.removals;
+        int size = 0;
+        long most = 0L;
+        for (long count : counts) {
+            if (count > 0L) {
+                size++;
+                if (count > most) {
+                    most = count;
+                }
+            }
+        }
+        boolean remove = false;
+        for (int script = 0; script < counts.length; script++) {
+            removals[script] = size > 1 && counts[script] > 0L && counts[script] != most && (double) counts[script] / most <= threshold;
+            remove |= removals[script];
+        }
+        return remove;
+    }
+
+}
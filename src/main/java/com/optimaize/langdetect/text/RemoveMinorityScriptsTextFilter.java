@@ -47,6 +47,10 @@ public class RemoveMinorityScriptsTextFilter implements TextFilter {
         this.threshold = threshold;
     }
 
+    double getThreshold() {
+        return threshold;
+    }
+
     @Override
     public String filter(CharSequence text) {
         Map<Character.UnicodeScript, Long> counts = countByScript(text);
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.Reader;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.google.common.annotations.Beta;
 import com.optimaize.langdetect.cybozu.util.CharNormalizer;
@@ -42,6 +43,8 @@ import com.optimaize.langdetect.cybozu.util.CharNormalizer;
 @Beta
 public class TextObject implements CharSequence, Appendable {
 
+    private static final int NORMALIZE_CHUNK = 1024;
+
     @NotNull
     private final TextFilter textFilter;
 
@@ -50,6 +53,12 @@ public class TextObject implements CharSequence, Appendable {
 
     private final int maxTextLength;
 
+    /**
+     * Chunk of the filtered text, normalized in bulk. Created on first use.
+     */
+    @Nullable
+    private char[] normalizeBuffer;
+
     /**
      * @param maxTextLength 0 for no limit
      */
@@ -84,6 +93,12 @@ public class TextObject implements CharSequence, Appendable {
         if (maxTextLength > 0 && stringBuilder.length() >= maxTextLength)
             return this;
 
+        if (textFilter instanceof FusedTextFilter) {
+            // filters, normalizes and appends in one go
+            ((FusedTextFilter) textFilter).append(text, stringBuilder, maxTextLength);
+            return this;
+        }
+
         text = textFilter.filter(text);
 
         // unfortunately this code can't be put into a TextFilter because:
@@ -92,13 +107,25 @@ public class TextObject implements CharSequence, Appendable {
         // 2) the last character of the existing string builder could not be seen. if it
         // is a space, we don't want
         // to add yet another space.
+        if (normalizeBuffer == null) {
+            normalizeBuffer = new char[NORMALIZE_CHUNK];
+        }
+        char[] chars = normalizeBuffer;
         char pre = stringBuilder.length() == 0 ? 0 : stringBuilder.charAt(stringBuilder.length() - 1);
-        for (int i = 0; i < text.length() && (maxTextLength == 0 || stringBuilder.length() < maxTextLength); i++) {
-            char c = CharNormalizer.normalize(text.charAt(i));
-            if (c != ' ' || pre != ' ') {
-                stringBuilder.append(c);
+        int length = text.length();
+        for (int from = 0; from < length && (maxTextLength == 0 || stringBuilder.length() < maxTextLength); from += NORMALIZE_CHUNK) {
+            int size = Math.min(NORMALIZE_CHUNK, length - from);
+            for (int i = 0; i < size; i++) {
+                chars[i] = text.charAt(from + i);
+            }
+            CharNormalizer.normalize(chars, 0, size, chars);
+            for (int i = 0; i < size && (maxTextLength == 0 || stringBuilder.length() < maxTextLength); i++) {
+                char c = chars[i];
+                if (c != ' ' || pre != ' ') {
+                    stringBuilder.append(c);
+                }
+                pre = c;
             }
-            pre = c;
         }
 
         return this;
@@ -28,6 +28,7 @@ public class TextObjectFactoryBuilder {
 
     private int maxTextLength = 0;
     private final List<TextFilter> textFilters = new ArrayList<>();
+    private boolean fused = false;
 
     /**
      * @param maxTextLength 0 for no limit (that's the default).
@@ -49,8 +50,46 @@ public class TextObjectFactoryBuilder {
         return this;
     }
 
+    /**
+     * When set to true, the filters are replaced by one {@link FusedTextFilter} that gives the same result without regular expressions and intermediate strings.
+     *
+     * <p>
+     * Only supported for a {@link UrlTextFilter} followed by a {@link RemoveMinorityScriptsTextFilter}, each being optional.
+     * </p>
+     *
+     * Defaults to false.
+     */
+    public TextObjectFactoryBuilder fused(boolean fused) {
+        this.fused = fused;
+        return this;
+    }
+
+    /**
+     * @throws IllegalStateException if {@link #fused(boolean)} is set, but the filters can't be fused.
+     */
     public TextObjectFactory build() {
+        if (fused) {
+            return new TextObjectFactory(makeFusedTextFilter(), maxTextLength);
+        }
         return new TextObjectFactory(new MultiTextFilter(textFilters), maxTextLength);
     }
 
+    private FusedTextFilter makeFusedTextFilter() {
+        boolean removeUrls = false;
+        double threshold = -1d;
+        int index = 0;
+        if (index < textFilters.size() && textFilters.get(index) instanceof UrlTextFilter) {
+            removeUrls = true;
+            index++;
+        }
+        if (index < textFilters.size() && textFilters.get(index) instanceof RemoveMinorityScriptsTextFilter) {
+            threshold = ((RemoveMinorityScriptsTextFilter) textFilters.get(index)).getThreshold();
+            index++;
+        }
+        if (index < textFilters.size()) {
+            throw new IllegalStateException("Can't fuse the text filter: " + textFilters.get(index));
+        }
+        return new FusedTextFilter(removeUrls, threshold);
+    }
+
 }
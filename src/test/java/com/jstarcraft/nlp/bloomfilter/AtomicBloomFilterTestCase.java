@@ -0,0 +1,50 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.core.common.hash.HashUtility;
+
+public class AtomicBloomFilterTestCase extends LocalBloomFilterTestCase {
+
+    @Override
+    protected BloomFilter getBloomFilter(int elments, float probability) {
+        random.setSeed(0L);
+        int bits = LocalBloomFilter.optimalBits(elments, probability);
+        int hashs = LocalBloomFilter.optimalHashs(bits, elments);
+        StringHashFamily hashFamily = (random) -> {
+            int seed = random.nextInt();
+            return (data) -> {
+                return HashUtility.murmur2StringHash32(seed, data);
+            };
+        };
+        BloomFilter bloomFilter = new AtomicBloomFilter(bits, hashFamily, hashs, random);
+        return bloomFilter;
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        int elments = 10000;
+        int threads = 8;
+        BloomFilter bloomFilter = getBloomFilter(elments, 0.001F);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            int offset = thread;
+            executor.execute(() -> {
+                for (int index = offset; index < elments; index += threads) {
+                    bloomFilter.put(String.valueOf(index));
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        for (int index = 0; index < elments; index++) {
+            Assert.assertTrue(bloomFilter.get(String.valueOf(index)));
+        }
+    }
+
+}
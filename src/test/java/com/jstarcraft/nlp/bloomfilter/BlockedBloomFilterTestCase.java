@@ -0,0 +1,33 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class BlockedBloomFilterTestCase extends BloomFilterTestCase {
+
+    @Override
+    protected BloomFilter getBloomFilter(int elments, float probability) {
+        long bits = BlockedBloomFilter.optimalBits(elments, probability);
+        int hashs = BlockedBloomFilter.optimalHashs(bits, elments);
+        BloomFilter bloomFilter = new BlockedBloomFilter(bits, hashs, 0L);
+        return bloomFilter;
+    }
+
+    @Test
+    public void testOptimal() {
+        int elments = 1000;
+        float probability = 0.001F;
+        long bits = BlockedBloomFilter.optimalBits(elments, probability);
+        int hashs = BlockedBloomFilter.optimalHashs(bits, elments);
+        // 分块需要比标准布隆过滤器更多的位
+        Assert.assertEquals(15872L, bits);
+        Assert.assertTrue(bits > LocalBloomFilter.optimalBits(elments, probability));
+        Assert.assertEquals(9, hashs);
+        Assert.assertTrue(BlockedBloomFilter.optimalProbability(bits, elments, hashs) <= probability);
+        Assert.assertTrue(BlockedBloomFilter.optimalProbability(bits - BlockedBloomFilter.BLOCK_BITS, elments, hashs) > probability);
+
+        BlockedBloomFilter bloomFilter = new BlockedBloomFilter(bits + 1, hashs, 0L);
+        Assert.assertEquals(bits + BlockedBloomFilter.BLOCK_BITS, bloomFilter.getBitSize());
+    }
+
+}
@@ -5,12 +5,23 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import com.jstarcraft.nlp.bloomfilter.bit.BitMapTestCase;
+import com.jstarcraft.nlp.bloomfilter.bit.CounterMapTestCase;
 
 @RunWith(Suite.class)
 @SuiteClasses({
 
         BitMapTestCase.class,
 
+        CounterMapTestCase.class,
+
+        AtomicBloomFilterTestCase.class,
+
+        BlockedBloomFilterTestCase.class,
+
+        CountingBloomFilterTestCase.class,
+
+        DoubleHashBloomFilterTestCase.class,
+
         GlobalBloomFilterTestCase.class,
 
         IntegerBloomFilterTestCase.class,
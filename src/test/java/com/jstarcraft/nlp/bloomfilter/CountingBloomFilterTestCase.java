@@ -0,0 +1,74 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.nlp.bloomfilter.bit.AtomicCounterMap;
+import com.jstarcraft.nlp.bloomfilter.bit.PackedCounterMap;
+
+public class CountingBloomFilterTestCase extends BloomFilterTestCase {
+
+    @Override
+    protected BloomFilter getBloomFilter(int elments, float probability) {
+        int bits = LocalBloomFilter.optimalBits(elments, probability);
+        int hashs = LocalBloomFilter.optimalHashs(bits, elments);
+        BloomFilter bloomFilter = new CountingBloomFilter(new PackedCounterMap(bits), hashs, 0L);
+        return bloomFilter;
+    }
+
+    @Test
+    public void testRemove() {
+        int elments = 1000;
+        float probability = 0.001F;
+        CountingBloomFilter bloomFilter = (CountingBloomFilter) getBloomFilter(elments, probability);
+        for (int index = 0; index < elments; index++) {
+            bloomFilter.put(String.valueOf(index));
+        }
+        // 删除一半,不需要重建
+        for (int index = 0; index < elments; index += 2) {
+            Assert.assertTrue(bloomFilter.remove(String.valueOf(index)));
+        }
+        int times = 0;
+        for (int index = 0; index < elments; index++) {
+            String data = String.valueOf(index);
+            if (index % 2 == 1) {
+                Assert.assertTrue(bloomFilter.get(data));
+            } else if (bloomFilter.get(data)) {
+                times++;
+            }
+        }
+        Assert.assertTrue(times < elments * probability);
+        // 不存在的数据
+        Assert.assertFalse(bloomFilter.remove(String.valueOf(0)));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        int elments = 10000;
+        int threads = 8;
+        int bits = LocalBloomFilter.optimalBits(elments, 0.001F);
+        int hashs = LocalBloomFilter.optimalHashs(bits, elments);
+        CountingBloomFilter bloomFilter = new CountingBloomFilter(new AtomicCounterMap(bits), hashs, 0L);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            int offset = thread;
+            executor.execute(() -> {
+                for (int index = offset; index < elments; index += threads) {
+                    bloomFilter.put(String.valueOf(index));
+                    bloomFilter.put(String.valueOf(-index - 1));
+                    bloomFilter.remove(String.valueOf(-index - 1));
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        for (int index = 0; index < elments; index++) {
+            Assert.assertTrue(bloomFilter.get(String.valueOf(index)));
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.jstarcraft.nlp.bloomfilter;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.nlp.bloomfilter.bit.LongMap;
+import com.jstarcraft.nlp.bloomfilter.bit.MappedMap;
+
+public class DoubleHashBloomFilterTestCase extends LocalBloomFilterTestCase {
+
+    @Override
+    protected BloomFilter getBloomFilter(int elments, float probability) {
+        int bits = LocalBloomFilter.optimalBits(elments, probability);
+        int hashs = LocalBloomFilter.optimalHashs(bits, elments);
+        BloomFilter bloomFilter = new DoubleHashBloomFilter(new LongMap(bits), hashs, 0L);
+        return bloomFilter;
+    }
+
+    @Test
+    public void testMappedMap() throws Exception {
+        int elments = 1000;
+        float probability = 0.001F;
+        int bits = LocalBloomFilter.optimalBits(elments, probability);
+        int hashs = LocalBloomFilter.optimalHashs(bits, elments);
+        File file = File.createTempFile("bloom", ".bin");
+        // 映射在缓冲区被回收时才解除,所以退出时再删除
+        file.deleteOnExit();
+        Path path = file.toPath();
+        try (MappedMap map = MappedMap.create(path, bits)) {
+            BloomFilter bloomFilter = new DoubleHashBloomFilter(map, hashs, 0L);
+            for (int index = 0; index < elments; index++) {
+                bloomFilter.put(String.valueOf(index));
+            }
+        }
+        // 重新打开之后不需要重建
+        try (MappedMap map = MappedMap.open(path)) {
+            BloomFilter bloomFilter = new DoubleHashBloomFilter(map, hashs, 0L);
+            int times = 0;
+            for (int index = 0; index < elments; index++) {
+                Assert.assertTrue(bloomFilter.get(String.valueOf(index)));
+                if (bloomFilter.get(String.valueOf(index + elments))) {
+                    times++;
+                }
+            }
+            Assert.assertTrue(times < elments * probability * 2);
+        }
+    }
+
+}
@@ -1,5 +1,11 @@
 package com.jstarcraft.nlp.bloomfilter.bit;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Assert;
 import org.junit.jupiter.api.Test;
 
@@ -51,4 +57,84 @@ public class BitMapTestCase {
         Assert.assertEquals(0, bits.size());
     }
 
+    @Test
+    public void testAtomicMap() throws Exception {
+        AtomicMap bits = new AtomicMap(Long.SIZE);
+        Assert.assertEquals(Long.SIZE, bits.capacity());
+        Assert.assertEquals(0, bits.size());
+        for (int index = 0; index < Long.SIZE; index++) {
+            Assert.assertFalse(bits.get(index));
+            Assert.assertTrue(bits.set(index));
+            Assert.assertTrue(bits.get(index));
+            Assert.assertTrue(bits.unset(index));
+            Assert.assertFalse(bits.get(index));
+        }
+
+        Assert.assertTrue(bits.set(0));
+        Assert.assertEquals(1, bits.size());
+        Assert.assertFalse(bits.set(0));
+        Assert.assertEquals(1, bits.size());
+        Assert.assertFalse(bits.unset(Long.SIZE - 1));
+        Assert.assertEquals(1, bits.size());
+        Assert.assertTrue(bits.unset(0));
+        Assert.assertEquals(0, bits.size());
+
+        // 多个线程设置重叠的位,每个位只被计数一次
+        int capacity = 1000;
+        int threads = 8;
+        AtomicMap concurrent = new AtomicMap(capacity);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            int offset = thread;
+            executor.execute(() -> {
+                for (int index = 0; index < capacity; index++) {
+                    concurrent.set((index + offset * 7) % capacity);
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertEquals(capacity, concurrent.size());
+        for (int index = 0; index < capacity; index++) {
+            Assert.assertTrue(concurrent.get(index));
+        }
+    }
+
+    @Test
+    public void testMappedMap() throws Exception {
+        // 超过int范围的容量(稀疏文件)
+        long capacity = (1L << 31) + Long.SIZE * 2;
+        long[] indexes = { 0L, 63L, 64L, Integer.MAX_VALUE, 1L << 31, capacity - 1L };
+        File file = File.createTempFile("bits", ".bin");
+        // 映射在缓冲区被回收时才解除,所以退出时再删除
+        file.deleteOnExit();
+        Path path = file.toPath();
+        try (MappedMap bits = MappedMap.create(path, capacity)) {
+            Assert.assertEquals(capacity, bits.longCapacity());
+            Assert.assertEquals(Integer.MAX_VALUE, bits.capacity());
+            Assert.assertEquals(0L, bits.longSize());
+            for (long index : indexes) {
+                Assert.assertFalse(bits.get(index));
+                Assert.assertTrue(bits.set(index));
+                Assert.assertFalse(bits.set(index));
+                Assert.assertTrue(bits.get(index));
+            }
+            Assert.assertTrue(bits.unset(63L));
+            Assert.assertFalse(bits.unset(63L));
+            Assert.assertFalse(bits.get(63L));
+            Assert.assertEquals(indexes.length - 1, bits.longSize());
+        }
+
+        // 重新打开时保留位与数量
+        try (MappedMap bits = MappedMap.open(path)) {
+            Assert.assertEquals(capacity, bits.longCapacity());
+            Assert.assertEquals(indexes.length - 1, bits.longSize());
+            for (long index : indexes) {
+                Assert.assertEquals(index != 63L, bits.get(index));
+            }
+            Assert.assertFalse(bits.get(1L));
+            Assert.assertFalse(bits.get(capacity - 2L));
+        }
+    }
+
 }
@@ -0,0 +1,71 @@
+package com.jstarcraft.nlp.bloomfilter.bit;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class CounterMapTestCase {
+
+    private void testCounterMap(CounterMap counters) {
+        Assert.assertEquals(40L, counters.capacity());
+        for (int index = 0; index < 40; index++) {
+            Assert.assertEquals(0, counters.get(index));
+            Assert.assertFalse(counters.decrement(index));
+        }
+
+        // 计数之间互不影响
+        for (int times = 0; times < CounterMap.MAXIMUM - 1; times++) {
+            Assert.assertTrue(counters.increment(17));
+        }
+        Assert.assertTrue(counters.increment(18));
+        Assert.assertEquals(0, counters.get(16));
+        Assert.assertEquals(CounterMap.MAXIMUM - 1, counters.get(17));
+        Assert.assertEquals(1, counters.get(18));
+        Assert.assertTrue(counters.decrement(17));
+        Assert.assertEquals(CounterMap.MAXIMUM - 2, counters.get(17));
+
+        // 饱和之后不再改变
+        Assert.assertTrue(counters.increment(17));
+        Assert.assertTrue(counters.increment(17));
+        Assert.assertEquals(CounterMap.MAXIMUM, counters.get(17));
+        Assert.assertFalse(counters.increment(17));
+        Assert.assertFalse(counters.decrement(17));
+        Assert.assertEquals(CounterMap.MAXIMUM, counters.get(17));
+        Assert.assertEquals(1, counters.get(18));
+
+        Assert.assertTrue(counters.increment(39));
+        Assert.assertEquals(1, counters.get(39));
+    }
+
+    @Test
+    public void testPackedCounterMap() {
+        testCounterMap(new PackedCounterMap(40));
+    }
+
+    @Test
+    public void testAtomicCounterMap() throws Exception {
+        testCounterMap(new AtomicCounterMap(40));
+
+        // 多个线程增加相邻的计数
+        int capacity = 64;
+        int threads = 8;
+        AtomicCounterMap counters = new AtomicCounterMap(capacity);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            executor.execute(() -> {
+                for (int index = 0; index < capacity; index++) {
+                    counters.increment(index);
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        for (int index = 0; index < capacity; index++) {
+            Assert.assertEquals(threads, counters.get(index));
+        }
+    }
+
+}
@@ -1,14 +1,25 @@
 package com.jstarcraft.nlp.detection;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+
 import it.unimi.dsi.fastutil.objects.Object2BooleanMap;
 import it.unimi.dsi.fastutil.objects.Object2BooleanOpenHashMap;
 
@@ -48,6 +59,168 @@ public class DetectionTestCase {
         }
     }
 
+    /**
+     * 测试检测文字与检测规则一致
+     */
+    @Test
+    public void testDetectionScript() {
+        String[] texts = new String[] { "The goal is to provide a general Java core programming framework", "目标是提供一个通用的Java核心编程框架", "目標は汎用Javaコアプログラミングフレームを提供することです。", "Цель заключается в том, чтобы создать общую базу программирования Java", "الهدف هو توفير إطار البرمجة جافا الأساسية المشتركة", "लक्ष्य यह है कि सामान्य जावा कोर प्रोग्रामिंग फ्रेमवर्क प्रदान करना है", "1234567890", "" };
+        {
+            LanguageDetector pattern = new LanguageDetector(DetectionPattern.LANGUAGE_82, DetectionTrie.LANGUAGE_82);
+            LanguageDetector script = new LanguageDetector(new DetectionScript(DetectionPattern.LANGUAGE_82), DetectionTrie.LANGUAGE_82);
+            for (String text : texts) {
+                Assertions.assertEquals(new ArrayList<>(pattern.detectLanguages(text)), new ArrayList<>(script.detectLanguages(text)));
+            }
+        }
+        {
+            LanguageDetector pattern = new LanguageDetector(DetectionPattern.LANGUAGE_187, DetectionTrie.LANGUAGE_187);
+            LanguageDetector script = new LanguageDetector(new DetectionScript(DetectionPattern.LANGUAGE_187), DetectionTrie.LANGUAGE_187);
+            for (String text : texts) {
+                Assertions.assertEquals(new ArrayList<>(pattern.detectLanguages(text)), new ArrayList<>(script.detectLanguages(text)));
+            }
+        }
+        {
+            LanguageDetector pattern = new LanguageDetector(DetectionPattern.LANGUAGE_406, DetectionTrie.LANGUAGE_406);
+            LanguageDetector script = new LanguageDetector(new DetectionScript(DetectionPattern.LANGUAGE_406), DetectionTrie.LANGUAGE_406);
+            for (String text : texts) {
+                Assertions.assertEquals(new ArrayList<>(pattern.detectLanguages(text)), new ArrayList<>(script.detectLanguages(text)));
+            }
+        }
+    }
+
+    /**
+     * 测试检测索引与检测词典一致
+     */
+    @Test
+    public void testDetectionIndex() {
+        String[] texts = new String[] { "The goal is to provide a general Java core programming framework", "L'objectif est de fournir un cadre de programmation de base commun pour Java", "Das Ziel ist es, einen allgemeinen Java-Core-Programmrahmen bereitzustellen", "Цель заключается в том, чтобы создать общую базу программирования Java", "الهدف هو توفير إطار البرمجة جافا الأساسية المشتركة", "目标是提供一个通用的Java核心编程框架" };
+        {
+            LanguageDetector trie = new LanguageDetector(DetectionPattern.LANGUAGE_82, DetectionTrie.LANGUAGE_82);
+            LanguageDetector index = new LanguageDetector(DetectionPattern.LANGUAGE_82, loadIndex("dictionary-82.json"));
+            for (String text : texts) {
+                Assertions.assertEquals(new ArrayList<>(trie.detectLanguages(text)), new ArrayList<>(index.detectLanguages(text)));
+            }
+        }
+        {
+            LanguageDetector trie = new LanguageDetector(DetectionPattern.LANGUAGE_187, DetectionTrie.LANGUAGE_187);
+            LanguageDetector index = new LanguageDetector(DetectionPattern.LANGUAGE_187, loadIndex("dictionary-187.json"));
+            for (String text : texts) {
+                Assertions.assertEquals(new ArrayList<>(trie.detectLanguages(text)), new ArrayList<>(index.detectLanguages(text)));
+            }
+        }
+        {
+            LanguageDetector trie = new LanguageDetector(DetectionPattern.LANGUAGE_406, DetectionTrie.LANGUAGE_406);
+            LanguageDetector index = new LanguageDetector(DetectionPattern.LANGUAGE_406, loadIndex("dictionary-406.json"));
+            for (String text : texts) {
+                Assertions.assertEquals(new ArrayList<>(trie.detectLanguages(text)), new ArrayList<>(index.detectLanguages(text)));
+            }
+        }
+    }
+
+    /**
+     * 测试保存与装载检测模型
+     * 
+     * @param regulation
+     * @param dictionary
+     */
+    @ParameterizedTest
+    @CsvSource({ "regulation-82.json,dictionary-82.json", "regulation-187.json,dictionary-187.json", "regulation-406.json,dictionary-406.json" })
+    public void testStoreModel(String regulation, String dictionary) {
+        try (InputStream regulationStream = DetectionModel.class.getResourceAsStream(regulation); InputStream dictionaryStream = DetectionModel.class.getResourceAsStream(dictionary)) {
+            DetectionModel model = DetectionModel.compileModel(regulationStream, dictionaryStream);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            model.storeModel(stream);
+            LanguageDetector compiled = new LanguageDetector(model);
+            LanguageDetector loaded = new LanguageDetector(DetectionModel.loadModel(ByteBuffer.wrap(stream.toByteArray())));
+            String[] texts = new String[] { "The goal is to provide a general Java core programming framework", "目标是提供一个通用的Java核心编程框架", "Цель заключается в том, чтобы создать общую базу программирования Java", "الهدف هو توفير إطار البرمجة جافا الأساسية المشتركة" };
+            for (String text : texts) {
+                Assertions.assertEquals(new ArrayList<>(compiled.detectLanguages(text)), new ArrayList<>(loaded.detectLanguages(text)));
+            }
+        } catch (Exception exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    /**
+     * 测试提前终止与完整检测一致
+     */
+    @Test
+    public void testDetectTop() {
+        String[] texts = new String[] { "The goal is to provide a general Java core programming framework", "L'objectif est de fournir un cadre de programmation de base commun pour Java", "Das Ziel ist es, einen allgemeinen Java-Core-Programmrahmen bereitzustellen", "O objetivo é fornecer um Quadro geral de programação do núcleo Java", "Цель заключается в том, чтобы создать общую базу программирования Java", "الهدف هو توفير إطار البرمجة جافا الأساسية المشتركة" };
+        LanguageDetector detector = new LanguageDetector(DetectionPattern.LANGUAGE_406, DetectionTrie.LANGUAGE_406);
+        Object2BooleanMap<String> options = new Object2BooleanOpenHashMap<>();
+        for (String text : texts) {
+            List<DetectionLanguage> languages = new ArrayList<>(detector.detectLanguages(text, options));
+            for (int number : new int[] { 1, 3, 10 }) {
+                Assertions.assertEquals(languages.subList(0, Math.min(number, languages.size())), new ArrayList<>(detector.detectLanguages(text, options, number)));
+            }
+        }
+    }
+
+    /**
+     * 测试检测片段
+     */
+    @Test
+    public void testDetectSegments() {
+        String text = "The goal is to provide a general Java core programming framework. Цель заключается в том, чтобы создать общую базу программирования Java. Das Ziel ist es, einen allgemeinen Java-Core-Programmrahmen bereitzustellen.";
+        Object2BooleanMap<String> options = new Object2BooleanOpenHashMap<>();
+        // 增量滑动与逐个窗口检测一致
+        LanguageDetector slider = new LanguageDetector(DetectionModel.getLanguage187());
+        LanguageDetector window = new LanguageDetector(DetectionPattern.LANGUAGE_187, DetectionTrie.LANGUAGE_187);
+        List<DetectionSegment> segments = slider.detectSegments(text, options);
+        Assertions.assertEquals(segments, window.detectSegments(text, options));
+        // 片段覆盖整个文本
+        int position = 0;
+        for (DetectionSegment segment : segments) {
+            Assertions.assertEquals(position, segment.getBegin());
+            position = segment.getEnd();
+        }
+        Assertions.assertEquals(text.length(), position);
+        Assertions.assertEquals("eng", segments.get(0).getLocale().toLanguageTag());
+        Assertions.assertEquals("deu", segments.get(segments.size() - 1).getLocale().toLanguageTag());
+        Assertions.assertTrue(segments.stream().anyMatch((segment) -> "rus".equals(segment.getLocale().toLanguageTag())));
+        // 得分为窗口置信度的平均值
+        Set<Double> scores = new HashSet<>();
+        for (DetectionSegment segment : segments) {
+            Assertions.assertTrue(segment.getScore() >= 0D && segment.getScore() <= 1D);
+            scores.add(segment.getScore());
+        }
+        Assertions.assertTrue(scores.size() > 1);
+    }
+
+    /**
+     * 测试批量检测与逐个检测一致
+     */
+    @Test
+    public void testDetectBatch() {
+        List<String> texts = Arrays.asList("The goal is to provide a general Java core programming framework", "目标是提供一个通用的Java核心编程框架", "目標は汎用Javaコアプログラミングフレームを提供することです。", "Цель заключается в том, чтобы создать общую базу программирования Java", "L'objectif est de fournir un cadre de programmation de base commun pour Java", "Das Ziel ist es, einen allgemeinen Java-Core-Programmrahmen bereitzustellen", "الهدف هو توفير إطار البرمجة جافا الأساسية المشتركة", "1234567890", "");
+        LanguageDetector detector = new LanguageDetector(DetectionModel.getLanguage187());
+        Locale[] locales = detector.getLocales();
+        Object2BooleanMap<String> options = new Object2BooleanOpenHashMap<>();
+        int[] languages = new int[texts.size()];
+        double[] scores = new double[texts.size()];
+        detector.detectLanguages(texts, options, languages, scores);
+        List<DetectionLanguage> streams = detector.detectLanguages(texts.parallelStream(), options).collect(Collectors.toList());
+        Set<Double> confidences = new HashSet<>();
+        for (int index = 0; index < texts.size(); index++) {
+            DetectionLanguage language = detector.detectLanguage(texts.get(index), options);
+            if (language == null) {
+                Assertions.assertEquals(-1, languages[index]);
+                Assertions.assertEquals(0D, scores[index], 0D);
+                Assertions.assertNull(streams.get(index));
+            } else {
+                Assertions.assertEquals(language.getLocale(), locales[languages[index]]);
+                Assertions.assertEquals(language.getLocale(), streams.get(index).getLocale());
+                // 置信度为最好语言与第二名语言的归一化得分之差
+                List<DetectionLanguage> tops = new ArrayList<>(detector.detectLanguages(texts.get(index), options, 2));
+                Assertions.assertEquals(tops.size() < 2 ? 1D : 1D - tops.get(1).getScore(), scores[index], 0D);
+                Assertions.assertTrue(scores[index] >= 0D && scores[index] <= 1D);
+                confidences.add(scores[index]);
+            }
+        }
+        Assertions.assertTrue(confidences.size() > 1);
+    }
+
     /**
      * 测试已知语种
      */
@@ -88,4 +261,84 @@ public class DetectionTestCase {
         }
     }
 
+    /**
+     * 测试级联检测与检测模型一致
+     */
+    @Test
+    public void testCascadeDetector() throws Exception {
+        String[] texts = new String[] { "The goal is to provide a general Java core programming framework", "目标是提供一个通用的Java核心编程框架", "目標は汎用Javaコアプログラミングフレームを提供することです。", "Цель заключается в том, чтобы создать общую базу программирования Java", "الهدف هو توفير إطار البرمجة جافا الأساسية المشتركة", "Das Ziel ist es, einen allgemeinen Java-Core-Programmrahmen bereitzustellen", "1234567890", "" };
+        LanguageDetector detector = new LanguageDetector(DetectionModel.getLanguage82());
+        CascadeLanguageDetector cascade = new CascadeLanguageDetector(DetectionModel.getLanguage82(), new LanguageProfileReader().readAllBuiltIn());
+        for (String text : texts) {
+            DetectionLanguage expect = detector.detectLanguage(text);
+            DetectionLanguage actual = cascade.detectLanguage(text);
+            if (expect == null) {
+                Assertions.assertNull(actual);
+            } else {
+                Assertions.assertEquals(expect.getLocale(), actual.getLocale());
+            }
+        }
+        // 长度限制与检测模型一致
+        LanguageDetector limit = new LanguageDetector(DetectionModel.getLanguage82(), 4, 24);
+        CascadeLanguageDetector cascadeLimit = new CascadeLanguageDetector(DetectionModel.getLanguage82(), new LanguageProfileReader().readAllBuiltIn(), 4, 24);
+        Assertions.assertNull(limit.detectLanguage("目标"));
+        Assertions.assertNull(cascadeLimit.detectLanguage("目标"));
+        // 超过最大长度时只检测前面的中文
+        String text = texts[1] + texts[0] + texts[0] + texts[0];
+        Assertions.assertEquals("cmn", limit.detectLanguage(text).getLocale().toLanguageTag());
+        Assertions.assertEquals("cmn", cascadeLimit.detectLanguage(text).getLocale().toLanguageTag());
+    }
+
+    private static DetectionIndex loadIndex(String path) {
+        try (InputStream stream = DetectionIndex.class.getResourceAsStream(path)) {
+            return DetectionIndex.loadIndex(stream);
+        } catch (Exception exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    /**
+     * 测试检测缓存与检测器一致
+     */
+    @Test
+    public void testDetectionCache() {
+        String[] texts = new String[] { "The goal is to provide a general Java core programming framework", "目标是提供一个通用的Java核心编程框架", "Цель заключается в том, чтобы создать общую базу программирования Java", "1234567890" };
+        LanguageDetector detector = new LanguageDetector(DetectionModel.getLanguage82());
+        DetectionCache<DetectionLanguage> cache = new DetectionCache<>(detector::detectLanguage, 16, 64);
+        for (int times = 0; times < 3; times++) {
+            for (String text : texts) {
+                Assertions.assertEquals(detector.detectLanguage(text), cache.detect(text));
+            }
+        }
+        // 超过长度上限的文本不缓存
+        Assertions.assertEquals(3, cache.getSize());
+        Assertions.assertEquals(6, cache.getHits());
+        Assertions.assertEquals(6, cache.getMisses());
+        Assertions.assertEquals(0, cache.getEvictions());
+        cache.invalidate();
+        Assertions.assertEquals(0, cache.getSize());
+
+        // 归一化之后的文本共用一个条目
+        cache = new DetectionCache<>(detector::detectLanguage, DetectionCache.NORMALIZER, 16, 64);
+        Assertions.assertEquals(detector.detectLanguage("hello world"), cache.detect("Hello World"));
+        cache.detect("hello world");
+        cache.detect("  HELLO \t world ");
+        Assertions.assertEquals(1, cache.getSize());
+        Assertions.assertEquals(2, cache.getHits());
+        // 默认不归一化
+        DetectionCache<String> identity = new DetectionCache<>(String::toUpperCase, 16, 64);
+        Assertions.assertEquals("FOO ", identity.detect("foo "));
+        identity.detect("Foo");
+        identity.detect("foo");
+        Assertions.assertEquals(3, identity.getSize());
+        Assertions.assertEquals(0, identity.getHits());
+
+        // 很长的过期时间不会溢出
+        for (DetectionCache<DetectionLanguage> expiration : Arrays.asList(new DetectionCache<>(detector::detectLanguage, 16, 64, Long.MAX_VALUE, TimeUnit.NANOSECONDS), new DetectionCache<>(detector::detectLanguage, 16, 64, Long.MAX_VALUE, TimeUnit.DAYS), new DetectionCache<>(detector::detectLanguage, 16, 64, 365, TimeUnit.DAYS))) {
+            expiration.detect(texts[1]);
+            expiration.detect(texts[1]);
+            Assertions.assertEquals(1, expiration.getHits());
+        }
+    }
+
 }
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.List;
 
 import org.junit.Assert;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -58,8 +59,45 @@ public class LanguageDetectorImplTest {
                 { "de", CommonTextObjectFactories.forDetectingOnLargeText().create().append("deutsche Text").append(" ").append("http://www.github.com/") }, };
     }
 
+    /**
+     * The packed probabilities grow instead of shrink, they must stay in range and be normalized in the end.
+     */
+    @Test
+    public void packedLongText() throws Exception {
+        // long texts repeat the same n-grams many times
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Dies ist eine deutsche Text. ");
+        }
+        List<DetectedLanguage> counted = makeNewDetector(100000, true).getProbabilities(text);
+        Assert.assertEquals(counted.get(0).getLocale().getLanguage(), "de");
+        Assert.assertTrue(counted.get(0).getProbability() >= 0.9999d);
+
+        // two identical profiles never converge, so every trial runs to the iteration limit
+        List<DetectedLanguage> sampled = makeTwinDetector().getProbabilities(text);
+        Assert.assertEquals(sampled.size(), 2);
+        for (DetectedLanguage language : sampled) {
+            Assert.assertEquals(language.getProbability(), 0.5d, 1E-6);
+        }
+    }
+
+    private LanguageDetector makeTwinDetector() throws IOException {
+        LanguageDetectorBuilder builder = LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(0).packed(true);
+        LangProfileReader langProfileReader = new LangProfileReader();
+        for (String language : ImmutableList.of("de", "nl")) {
+            LangProfile langProfile = langProfileReader.read(LanguageDetectorImplTest.class.getResourceAsStream("/languages/de"));
+            langProfile.setName(language);
+            builder.withProfile(OldLangProfileConverter.convert(langProfile));
+        }
+        return builder.build();
+    }
+
     private LanguageDetector makeNewDetector() throws IOException {
-        LanguageDetectorBuilder builder = LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(50).prefixFactor(1.5).suffixFactor(2.0);
+        return makeNewDetector(50, false);
+    }
+
+    private LanguageDetector makeNewDetector(int shortTextAlgorithm, boolean packed) throws IOException {
+        LanguageDetectorBuilder builder = LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(shortTextAlgorithm).prefixFactor(1.5).suffixFactor(2.0).packed(packed);
 
         LangProfileReader langProfileReader = new LangProfileReader();
         for (String language : ImmutableList.of("en", "fr", "nl", "de")) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.optimaize.langdetect.ngram.NgramExtractors;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.TextObjectFactory;
+
+/**
+ * Compares the accuracy of the deterministic log space scoring against the original random sampling, using all built-in language profiles on pieces of the Wikipedia texts.
+ * The speed comparison is the ScoringBenchmark of the benchmark profile.
+ *
+ * @author Birdy
+ */
+public class LogProbabilityScorerTest {
+
+    private static final String[][] TEXTS = { { "de", "/texts/de-wikipedia-Deutschland.txt" }, { "fr", "/texts/fr-wikipedia-France.txt" }, { "it", "/texts/it-wikipedia-Italia.txt" } };
+
+    private static final int[] PIECE_LENGTHS = { 100, 300, 1000 };
+
+    @Test
+    public void accuracyAndDeterminism() throws IOException {
+        List<LanguageProfile> languageProfiles = new LanguageProfileReader().readAllBuiltIn();
+        LanguageDetector sampling = LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(0).withProfiles(languageProfiles).build();
+        LanguageDetector deterministic = LanguageDetectorBuilder.create(NgramExtractors.standard()).shortTextAlgorithm(0).deterministic(true).withProfiles(languageProfiles).build();
+
+        List<String> expectedLanguages = new ArrayList<>();
+        List<CharSequence> texts = new ArrayList<>();
+        TextObjectFactory textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
+        for (String[] languageWithPath : TEXTS) {
+            String language = languageWithPath[0];
+            String text = readText(languageWithPath[1]);
+            for (int pieceLength : PIECE_LENGTHS) {
+                for (int begin = 0; begin + pieceLength <= text.length(); begin += pieceLength) {
+                    expectedLanguages.add(language);
+                    texts.add(textObjectFactory.forText(text.substring(begin, begin + pieceLength)));
+                }
+            }
+        }
+
+        int samplingHits = 0, deterministicHits = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            List<DetectedLanguage> samplingResult = sampling.getProbabilities(texts.get(i));
+            List<DetectedLanguage> deterministicResult = deterministic.getProbabilities(texts.get(i));
+            if (!samplingResult.isEmpty() && samplingResult.get(0).getLocale().getLanguage().equals(expectedLanguages.get(i))) {
+                samplingHits++;
+            }
+            if (!deterministicResult.isEmpty() && deterministicResult.get(0).getLocale().getLanguage().equals(expectedLanguages.get(i))) {
+                deterministicHits++;
+            }
+        }
+        assertTrue(deterministicHits >= samplingHits);
+
+        // same result on every call, regardless of the seed
+        for (CharSequence text : texts) {
+            assertEquals(deterministic.getProbabilities(text).toString(), deterministic.getProbabilities(text).toString());
+        }
+    }
+
+    private static String readText(String path) {
+        try (InputStream inputStream = LogProbabilityScorerTest.class.getResourceAsStream(path)) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                StringBuilder sb = new StringBuilder();
+                String str;
+                while ((str = in.readLine()) != null) {
+                    sb.append(str);
+                }
+                return sb.toString();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -39,9 +39,12 @@ public class NgramFrequencyDataTest {
 
     private static NgramFrequencyData allThreeGrams;
 
+    private static NgramFrequencyData allPackedGrams;
+
     @BeforeAll
     public static void init() throws IOException {
         allThreeGrams = forAll(3);
+        allPackedGrams = NgramFrequencyData.createPacked(new LanguageProfileReader().readAllBuiltIn(), ImmutableSet.of(1, 2, 3));
     }
 
     private static NgramFrequencyData forAll(int gramSize) throws IOException {
@@ -79,4 +82,41 @@ public class NgramFrequencyDataTest {
         assertEquals(allThreeGrams.getProbabilities("da"), null);
     }
 
+    @Test
+    public void packedEqualsDense() throws Exception {
+        NgramFrequencyData dense = NgramFrequencyData.create(new LanguageProfileReader().readAllBuiltIn(), ImmutableSet.of(1, 2, 3));
+        assertEquals(dense.getLanguageList(), allPackedGrams.getLanguageList());
+        assertEquals(dense.getNgrams(), allPackedGrams.getNgrams());
+        for (String ngram : dense.getNgrams()) {
+            double[] expected = dense.getProbabilities(ngram);
+            double[] actual = allPackedGrams.getProbabilities(ngram);
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                // stored as float
+                assertEquals(expected[i], actual[i], expected[i] * 1E-6);
+            }
+        }
+        assertEquals(allPackedGrams.getProbabilities("xyzq"), null);
+    }
+
+    @Test
+    public void packedQuantized() throws Exception {
+        List<LanguageProfile> languageProfiles = new LanguageProfileReader().readAllBuiltIn();
+        NgramFrequencyData bytes = NgramFrequencyData.createPacked(languageProfiles, ImmutableSet.of(1, 2, 3), 8);
+        NgramFrequencyData chars = NgramFrequencyData.createPacked(languageProfiles, ImmutableSet.of(1, 2, 3), 16);
+        for (String ngram : allPackedGrams.getNgrams()) {
+            double[] expected = allPackedGrams.getProbabilities(ngram);
+            double[] actualBytes = bytes.getProbabilities(ngram);
+            double[] actualChars = chars.getProbabilities(ngram);
+            for (int i = 0; i < expected.length; i++) {
+                // the logarithm is rounded to one of 256 or 65536 levels
+                assertEquals(expected[i], actualBytes[i], expected[i] * 0.05);
+                assertEquals(expected[i], actualChars[i], expected[i] * 0.0005);
+            }
+        }
+        assertTrue(bytes.getMemorySize() < chars.getMemorySize());
+        assertTrue(chars.getMemorySize() < allPackedGrams.getMemorySize());
+        assertTrue(allPackedGrams.getMemorySize() < NgramFrequencyData.create(languageProfiles, ImmutableSet.of(1, 2, 3)).getMemorySize());
+    }
+
 }
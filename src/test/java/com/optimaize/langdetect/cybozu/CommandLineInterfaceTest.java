@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011 Nakatani Shuyo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.cybozu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+import com.optimaize.langdetect.profiles.LanguageProfileWriter;
+
+/**
+ * Tests the streaming batch test (--batchstream) of {@link CommandLineInterface}.
+ *
+ * @author Birdy
+ */
+public class CommandLineInterfaceTest {
+
+    private static final String[][] SENTENCES = { { "en", "This is a sentence written in English, number " }, { "de", "Das ist ein deutscher Satz mit der Nummer " }, { "fr", "Ceci est une phrase écrite en français, numéro " } };
+
+    /** more than one batch */
+    private static final int LINE_COUNT = 3000;
+
+    @Test
+    public void bucket() {
+        // exact below 8ns
+        for (long nanos = 0; nanos < 8; nanos++) {
+            assertEquals(nanos, CommandLineInterface.BatchStream.lowest(CommandLineInterface.BatchStream.bucket(nanos)));
+        }
+        assertEquals(0, CommandLineInterface.BatchStream.bucket(-1L));
+        int previous = 0;
+        for (long nanos = 8; nanos > 0; nanos += nanos / 2 + 1) {
+            int bucket = CommandLineInterface.BatchStream.bucket(nanos);
+            long lowest = CommandLineInterface.BatchStream.lowest(bucket);
+            assertTrue(bucket >= previous);
+            assertTrue(lowest <= nanos);
+            assertTrue(nanos - lowest <= nanos / 8);
+            if (nanos < Long.MAX_VALUE / 2) {
+                // the next bucket starts above
+                assertTrue(CommandLineInterface.BatchStream.lowest(bucket + 1) > nanos);
+            }
+            previous = bucket;
+        }
+        long lowest = CommandLineInterface.BatchStream.lowest(CommandLineInterface.BatchStream.bucket(Long.MAX_VALUE));
+        assertTrue(Long.MAX_VALUE - lowest <= Long.MAX_VALUE / 8);
+    }
+
+    @Test
+    public void percentile() {
+        CommandLineInterface.BatchStream stream = new CommandLineInterface.BatchStream(Collections.singletonList("unknown"));
+        assertEquals(0L, stream.percentile(0.5));
+        List<Long> nanos = new ArrayList<>();
+        for (long value = 1; value <= 1000; value++) {
+            nanos.add(value * 1000);
+        }
+        Collections.shuffle(nanos);
+        for (long value : nanos) {
+            stream.record(value);
+        }
+        assertEquals(CommandLineInterface.BatchStream.lowest(CommandLineInterface.BatchStream.bucket(500000)), stream.percentile(0.5));
+        assertEquals(CommandLineInterface.BatchStream.lowest(CommandLineInterface.BatchStream.bucket(990000)), stream.percentile(0.99));
+        assertEquals(CommandLineInterface.BatchStream.lowest(CommandLineInterface.BatchStream.bucket(1000000)), stream.percentile(1.0));
+        assertTrue(stream.percentile(0.5) > 500000 * 7 / 8 && stream.percentile(0.5) <= 500000);
+    }
+
+    @Test
+    public void batchStream() throws IOException {
+        File directory = Files.createTempDirectory("profiles").toFile();
+        File input = File.createTempFile("batchStream", ".txt");
+        File output = File.createTempFile("batchStream", ".txt");
+        PrintStream stdout = System.out;
+        try {
+            LanguageProfileWriter writer = new LanguageProfileWriter();
+            for (LanguageProfile languageProfile : new LanguageProfileReader().readBuiltIn(Arrays.asList(Locale.ENGLISH, Locale.GERMAN, Locale.FRENCH))) {
+                writer.writeToDirectory(languageProfile, directory);
+            }
+            List<String> lines = new ArrayList<>(LINE_COUNT);
+            for (int index = 0; index < LINE_COUNT; index++) {
+                String[] sentence = SENTENCES[index % SENTENCES.length];
+                lines.add(sentence[0] + "\t" + sentence[1] + index);
+            }
+            Files.write(input.toPath(), lines, StandardCharsets.UTF_8);
+
+            // to a file, in the original order
+            CommandLineInterface.main(new String[] { "--batchstream", "-d", directory.getPath(), "-s", "0", "-t", "3", "-o", output.getPath(), input.getPath() });
+            assertLines(lines, Files.readAllLines(output.toPath(), StandardCharsets.UTF_8));
+
+            // to stdout, which stays open
+            TrackingOutputStream buffer = new TrackingOutputStream();
+            System.setOut(new PrintStream(buffer, false, "UTF-8"));
+            CommandLineInterface.main(new String[] { "--batchstream", "-d", directory.getPath(), "-s", "0", "-t", "2", input.getPath() });
+            assertFalse(buffer.closed);
+            assertLines(lines, Arrays.asList(new String(buffer.toByteArray(), StandardCharsets.UTF_8).split("\n")));
+        } finally {
+            System.setOut(stdout);
+            for (File file : directory.listFiles()) {
+                // noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+            // noinspection ResultOfMethodCallIgnored
+            directory.delete();
+            // noinspection ResultOfMethodCallIgnored
+            input.delete();
+            // noinspection ResultOfMethodCallIgnored
+            output.delete();
+        }
+    }
+
+    @Test
+    public void invalidThreads() {
+        for (String threads : new String[] { "0", "-1", "1000000000000" }) {
+            RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> {
+                CommandLineInterface.main(new String[] { "--batchstream", "-t", threads });
+            });
+            assertTrue(exception.getMessage().startsWith("Invalid threads value"));
+        }
+    }
+
+    /**
+     * Each output line is the detected language, a tab and the input line.
+     */
+    private static void assertLines(List<String> expected, List<String> actual) {
+        assertEquals(expected.size(), actual.size());
+        int correct = 0;
+        for (int index = 0; index < expected.size(); index++) {
+            String line = actual.get(index);
+            int idx = line.indexOf('\t');
+            assertEquals(expected.get(index), line.substring(idx + 1));
+            if (line.substring(0, idx).equals(SENTENCES[index % SENTENCES.length][0])) {
+                correct++;
+            }
+        }
+        assertTrue(correct > expected.size() * 9 / 10);
+    }
+
+    private static final class TrackingOutputStream extends ByteArrayOutputStream {
+
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+}
@@ -86,6 +86,24 @@ public class CharNormalizerTest {
         assertEquals(CharNormalizer.normalize('\u4E30'), '\u4E30');
     }
 
+    @Test
+    public void testNormalizeBulk() {
+        char[] src = "xHello, 世界! \u4E24\u06ccx".toCharArray();
+        char[] dst = new char[src.length];
+        CharNormalizer.normalize(src, 1, src.length - 2, dst);
+        assertEquals(0, dst[0]);
+        assertEquals(0, dst[src.length - 1]);
+        for (int i = 1; i < src.length - 1; i++) {
+            assertEquals(CharNormalizer.normalize(src[i]), dst[i]);
+        }
+
+        // in place
+        CharNormalizer.normalize(src, 0, src.length, src);
+        for (int i = 1; i < src.length - 1; i++) {
+            assertEquals(dst[i], src[i]);
+        }
+    }
+
     /**
      * This test is not part of the automated tests, enable and run it manually to debug.
      */
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.frma;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.optimaize.langdetect.cybozu.util.LangProfile;
+import com.optimaize.langdetect.profiles.LanguageProfile;
+
+/**
+ * @author Birdy
+ */
+public class ParallelGenProfileTest {
+
+    private static final String TEXT = "Salut tout le monde.\nBonjour toi tout seul.\r\nCa va ?\rOui ça va. Et toi ?\n\nhttp://example.com Привет МИР\nsans fin de ligne";
+
+    private static void write(OutputStream out) throws IOException {
+        try (Writer writer = new OutputStreamWriter(out, Charset.forName("utf-8"))) {
+            writer.write(TEXT);
+        }
+    }
+
+    private static void assertSameAsGenProfile(File inputFile) {
+        LangProfile expected = GenProfile.generate("truc", inputFile);
+        LangProfile actual = new ParallelGenProfile().generate("truc", inputFile);
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getFreq(), actual.getFreq());
+        assertArrayEquals(expected.getNWords(), actual.getNWords());
+
+        LanguageProfile languageProfile = new ParallelGenProfile().generate(Locale.FRENCH, inputFile);
+        assertEquals(expected.getFreq().get("tou").intValue(), languageProfile.getFrequency("tou"));
+    }
+
+    @Test
+    public void generatePlain() throws IOException {
+        File inputFile = File.createTempFile("profileInput", ".txt");
+        try {
+            write(new FileOutputStream(inputFile));
+            assertSameAsGenProfile(inputFile);
+        } finally {
+            // noinspection ResultOfMethodCallIgnored
+            inputFile.delete();
+        }
+    }
+
+    @Test
+    public void generateGzipped() throws IOException {
+        File inputFile = File.createTempFile("profileInput", ".txt.gz");
+        try {
+            write(new GZIPOutputStream(new FileOutputStream(inputFile)));
+            assertSameAsGenProfile(inputFile);
+        } finally {
+            // noinspection ResultOfMethodCallIgnored
+            inputFile.delete();
+        }
+    }
+
+}
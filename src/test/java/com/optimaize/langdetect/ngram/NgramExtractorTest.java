@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -169,4 +170,40 @@ public class NgramExtractorTest {
         assertEquals(ngrams, Arrays.asList(" F", "Fo", "oo", "o ", " b", "ba", "ar", "r "));
     }
 
+    @Test
+    public void packedRoundTrip() {
+        for (String ngram : new String[] { "a", " d", "dam", "\u4e2d\u6587 ", "\uffff\uffff\uffff" }) {
+            long code = PackedNgrams.pack(ngram);
+            assertEquals(ngram, PackedNgrams.unpack(code));
+            assertEquals(ngram.length(), PackedNgrams.getLength(code));
+            assertEquals(ngram.charAt(ngram.length() - 1), PackedNgrams.getChar(code, ngram.length(), ngram.length() - 1));
+        }
+        assertEquals(PackedNgrams.pack("abcd"), -1L);
+    }
+
+    @Test
+    public void extractPackedGrams_sameAsStrings() {
+        String text = "Foo bar dies ist ein längerer deutscher Text, und TEXTE sind üblicherweise auch gerne gross geschrieben und so nämlich. ";
+        for (NgramExtractor ngramExtractor : Arrays.asList(NgramExtractors.standard(), NgramExtractors.backwards(), NgramExtractor.gramLengths(1, 2, 3), NgramExtractor.gramLength(2).textPadding('x'))) {
+            for (String part : Arrays.asList("", "a", " a", text)) {
+                long[] grams = new long[ngramExtractor.getMaxNumGrams(part.length())];
+                int size = ngramExtractor.extractPackedGrams(part, grams);
+                List<String> unpacked = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    unpacked.add(PackedNgrams.unpack(grams[i]));
+                }
+                assertEquals(ngramExtractor.extractGrams(part), unpacked);
+
+                PackedNgramCounter counter = new PackedNgramCounter(4);
+                ngramExtractor.extractPackedGrams(part, counter);
+                Map<String, Integer> counted = new LinkedHashMap<>();
+                for (int i = 0; i < counter.size(); i++) {
+                    counted.put(PackedNgrams.unpack(counter.getNgram(i)), counter.getCount(i));
+                }
+                // same order, too
+                assertEquals(new ArrayList<>(ngramExtractor.extractCountedGrams(part).entrySet()), new ArrayList<>(counted.entrySet()));
+            }
+        }
+    }
+
 }
@@ -20,7 +20,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -47,6 +49,24 @@ public class OldNgramExtractorTest {
         System.out.println(ngrams);
     }
 
+    @Test
+    public void extractPackedNGrams_sameAsStrings() {
+        String[] texts = { "Foo bar", "Hallo DAA.", " Hello  WORLD, hEllo World! ", "Ça va ? Oui ça va.", "Привет МИР мир", "中文 日本語、テスト", "", " ", "a" };
+        for (String text : texts) {
+            Map<String, Integer> expected = new HashMap<>();
+            for (String ngram : OldNgramExtractor.extractNGrams(text, null)) {
+                expected.merge(ngram, 1, Integer::sum);
+            }
+            PackedNgramCounter counter = new PackedNgramCounter();
+            OldNgramExtractor.extractPackedNGrams(text, counter);
+            Map<String, Integer> actual = new HashMap<>();
+            for (int index = 0; index < counter.size(); index++) {
+                actual.put(PackedNgrams.unpack(counter.getNgram(index)), counter.getCount(index));
+            }
+            assertEquals(text, expected, actual);
+        }
+    }
+
     @Test
     public void stressTestAlgo1() {
         String text = "Foo bar hello world and so on nana nunu dada dudu asdf asdf akewf köjvnawer aisdfj awejfr iajdsöfj ewi adjsköfjwei ajsdökfj ief asd";
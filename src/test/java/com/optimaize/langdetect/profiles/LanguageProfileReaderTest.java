@@ -21,11 +21,20 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import org.hamcrest.CoreMatchers;
@@ -138,4 +147,60 @@ public class LanguageProfileReaderTest {
         assertEquals(result.size(), 71); // adjust this number when adding more languages
     }
 
+    @Test
+    public void readBinary() throws IOException {
+        List<LanguageProfile> text = new LanguageProfileReader().readAll(PROFILE_DIR);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new LanguageProfileWriter().writeBinary(text, output);
+        List<LanguageProfile> binary = new LanguageProfileReader().readBinary(ByteBuffer.wrap(output.toByteArray()));
+        assertEquals(binary.size(), text.size());
+        for (int i = 0; i < text.size(); i++) {
+            LanguageProfile expected = text.get(i);
+            LanguageProfile actual = binary.get(i);
+            assertEquals(expected.getLocale(), actual.getLocale());
+            assertEquals(expected.getGramLengths(), actual.getGramLengths());
+            assertEquals(expected.getNumGrams(), actual.getNumGrams());
+            for (Map.Entry<String, Integer> entry : expected.iterateGrams()) {
+                assertEquals(entry.getValue().intValue(), actual.getFrequency(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void readBinaryWithTextFallback() throws IOException {
+        File root = Files.createTempDirectory("profiles").toFile();
+        File directory = new File(root, "languages");
+        File binary = new File(root, "languages" + LanguageProfileReader.BINARY_SUFFIX);
+        try {
+            LanguageProfileReader reader = new LanguageProfileReader();
+            try (OutputStream output = new FileOutputStream(binary)) {
+                new LanguageProfileWriter().writeBinary(Arrays.asList(reader.read(new File(PROFILE_DIR, "de")), reader.read(new File(PROFILE_DIR, "fr"))), output);
+            }
+            // not in the binary file
+            assertTrue(directory.mkdir());
+            new LanguageProfileWriter().writeToDirectory(reader.read(new File(PROFILE_DIR, "nl")), directory);
+
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toURI().toURL() }, null)) {
+                for (int i = 0; i < 2; i++) {
+                    List<LanguageProfile> read = reader.read(classLoader, "languages", ImmutableList.of("de", "nl", "fr"));
+                    assertEquals(read.size(), 3);
+                    assertEquals(read.get(0).getLocale(), Locale.forLanguageTag("de"));
+                    assertEquals(read.get(1).getLocale(), Locale.forLanguageTag("nl"));
+                    assertEquals(read.get(2).getLocale(), Locale.forLanguageTag("fr"));
+                }
+            }
+        } finally {
+            for (File file : directory.listFiles()) {
+                // noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+            // noinspection ResultOfMethodCallIgnored
+            directory.delete();
+            // noinspection ResultOfMethodCallIgnored
+            binary.delete();
+            // noinspection ResultOfMethodCallIgnored
+            root.delete();
+        }
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.profiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import com.optimaize.langdetect.ngram.NgramExtractors;
+import com.optimaize.langdetect.profiles.util.LanguageProfileValidator;
+import com.optimaize.langdetect.profiles.util.ParallelLanguageProfileValidator;
+import com.optimaize.langdetect.text.CommonTextObjectFactories;
+import com.optimaize.langdetect.text.TextObject;
+
+/**
+ * @author Birdy
+ */
+public class ParallelLanguageProfileValidatorTest {
+
+    private static String readText(String path) throws IOException {
+        try (InputStream inputStream = ParallelLanguageProfileValidatorTest.class.getResourceAsStream(path)) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                StringBuilder sb = new StringBuilder();
+                String str;
+                while ((str = in.readLine()) != null) {
+                    sb.append(str).append(' ');
+                }
+                return sb.toString();
+            }
+        }
+    }
+
+    private static LanguageProfileBuilder builder(String language) {
+        return new LanguageProfileBuilder(Locale.forLanguageTag(language)).ngramExtractor(NgramExtractors.standard()).minimalFrequency(2);
+    }
+
+    @Test
+    public void sameAsSerial() throws IOException {
+        String german = readText("/texts/de-wikipedia-Deutschland.txt");
+        String french = readText("/texts/fr-wikipedia-France.txt");
+
+        TextObject germanText = CommonTextObjectFactories.forIndexingCleanText().forText(german);
+        double expected = new LanguageProfileValidator().loadAllBuiltInLanguageProfiles().setK(4).loadInputSample(germanText).setLanguageProfileBuilder(builder("de")).validate();
+
+        List<ParallelLanguageProfileValidator.Result> results = new ParallelLanguageProfileValidator().loadAllBuiltInLanguageProfiles().setK(4).addInputSample(builder("de"), germanText).addInputSample(builder("fr"), french).validate();
+
+        assertEquals(2, results.size());
+        assertEquals(Locale.GERMAN, results.get(0).getLocale());
+        assertEquals(expected, results.get(0).getAverageProbability(), 0.0000001);
+        assertEquals(1D, results.get(0).getAccuracy(), 0D);
+        assertEquals(Locale.FRENCH, results.get(1).getLocale());
+        assertEquals(1D, results.get(1).getAccuracy(), 0D);
+    }
+
+    @Test
+    public void compare() throws IOException {
+        String german = readText("/texts/de-wikipedia-Deutschland.txt");
+        String french = readText("/texts/fr-wikipedia-France.txt");
+
+        ParallelLanguageProfileValidator validator = new ParallelLanguageProfileValidator().loadAllBuiltInLanguageProfiles().setK(4).addInputSample(builder("de"), german).addInputSample(builder("fr"), french);
+        List<ParallelLanguageProfileValidator.TradeOff> tradeOffs = validator.compare(new int[] { 0, 1000 }, new int[] { 0, 8 });
+
+        assertEquals(4, tradeOffs.size());
+        for (ParallelLanguageProfileValidator.TradeOff tradeOff : tradeOffs) {
+            assertEquals(1D, tradeOff.getAccuracy(), 0D);
+        }
+        // pruned and quantized is the smallest
+        assertEquals(1000, tradeOffs.get(3).getMaxGramsPerLength());
+        assertEquals(8, tradeOffs.get(3).getQuantizationBits());
+        for (int index = 0; index < 3; index++) {
+            assertTrue(tradeOffs.get(3).getMemorySize() < tradeOffs.get(index).getMemorySize());
+        }
+    }
+
+}
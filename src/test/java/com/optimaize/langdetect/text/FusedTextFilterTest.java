@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011 Fabian Kessler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.optimaize.langdetect.text;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Birdy
+ */
+public class FusedTextFilterTest {
+
+    private static final String[] TEXTS = {
+            // urls and mail addresses
+            "see http://www.example.com/a?b=c#d and https://x.y, or mail john.doe@example.org or a@b or x@y.z@w now", "xhttp://a.com@b.de a@bhttp://x http:// https:/x @@ a@-b.c",
+            // scripts, with combining marks
+            "Hu Jintao (in Chinese 胡錦濤) and Leo Tolstoy (in Russian Лев Николаевич Толстой) are two well known people.", "Привет мир! Hello wörld ̀ é́ 日本語 😀", "", " ", "Hu Jintao is a well known person." };
+
+    @Test
+    public void sameAsFilters() {
+        TextFilter classic = new MultiTextFilter(Arrays.asList(UrlTextFilter.getInstance(), RemoveMinorityScriptsTextFilter.forThreshold(0.3)));
+        FusedTextFilter fused = new FusedTextFilter(true, 0.3);
+        FusedTextFilter fusedUrls = new FusedTextFilter(true, -1d);
+        FusedTextFilter fusedScripts = new FusedTextFilter(false, 0.3);
+        for (String text : TEXTS) {
+            assertEquals(classic.filter(text), fused.filter(text));
+            assertEquals(UrlTextFilter.getInstance().filter(text), fusedUrls.filter(text));
+            assertEquals(RemoveMinorityScriptsTextFilter.forThreshold(0.3).filter(text), fusedScripts.filter(text));
+        }
+    }
+
+    @Test
+    public void sameTextObject() {
+        for (int maxTextLength : new int[] { 0, 30 }) {
+            TextObjectFactory classic = new TextObjectFactoryBuilder().maxTextLength(maxTextLength).withTextFilter(UrlTextFilter.getInstance()).withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3)).build();
+            TextObjectFactory fused = new TextObjectFactoryBuilder().maxTextLength(maxTextLength).withTextFilter(UrlTextFilter.getInstance()).withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3)).fused(true).build();
+            for (String text : TEXTS) {
+                assertEquals(classic.create().append(text).append(text).toString(), fused.create().append(text).append(text).toString());
+            }
+        }
+    }
+
+    @Test
+    public void unsupportedFilter() {
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            new TextObjectFactoryBuilder().withTextFilter(RemoveMinorityScriptsTextFilter.forThreshold(0.3)).withTextFilter(UrlTextFilter.getInstance()).fused(true).build();
+        });
+    }
+
+}